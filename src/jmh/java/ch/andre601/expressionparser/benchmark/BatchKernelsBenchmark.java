@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser.benchmark;
+
+import ch.andre601.expressionparser.internal.BatchKernels;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the {@link BatchKernels} returned by {@link BatchKernels#get()}, which use the Vector API if the
+ * {@code jdk.incubator.vector} module is available, with the scalar ones of {@link BatchKernels#scalar()}.
+ * <br>Only the kernels the Vector API implements differently are benchmarked. Arithmetic and comparisons use the same
+ * scalar loops in both.
+ * <br>Run through {@code mvn -P vector,benchmark test-compile exec:exec}, which adds the module to the JVM. Without the
+ * {@code vector} profile are both kernels the scalar ones.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class BatchKernelsBenchmark{
+    
+    @Param({"vector", "scalar"})
+    private String kernels;
+    
+    @Param({"4096"})
+    private int size;
+    
+    private BatchKernels selected;
+    private double[] first;
+    private double[] second;
+    private boolean[] values;
+    private boolean[] undecided;
+    private boolean[] out;
+    
+    @Setup(Level.Trial)
+    public void setup(){
+        selected = kernels.equals("vector") ? BatchKernels.get() : BatchKernels.scalar();
+        
+        Random random = new Random(42);
+        first = new double[size];
+        second = new double[size];
+        values = new boolean[size];
+        undecided = new boolean[size];
+        out = new boolean[size];
+        for(int i = 0; i < size; i++){
+            first[i] = random.nextInt(100);
+            second[i] = random.nextBoolean() ? first[i] : random.nextInt(100);
+            values[i] = random.nextBoolean();
+        }
+    }
+    
+    // The undecided rows are reset for every invocation, as junction marks the decided ones.
+    @Benchmark
+    public boolean[] junction(){
+        for(int i = 0; i < size; i++){
+            undecided[i] = (i & 3) != 0;
+        }
+        selected.junction(values, undecided, out, false, size);
+        return out;
+    }
+    
+    @Benchmark
+    public boolean[] sameString(){
+        selected.sameString(first, second, out, false, size);
+        return out;
+    }
+}
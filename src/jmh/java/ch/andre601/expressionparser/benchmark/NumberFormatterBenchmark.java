@@ -0,0 +1,123 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser.benchmark;
+
+import ch.andre601.expressionparser.internal.NumberFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link NumberFormatter} with the {@link Integer#toString(int)} and {@link Double#toString(double)} path it
+ * replaces, both for creating Strings and for appending to a {@link StringBuilder} the way concatenation does.
+ * <br>Run through {@code mvn -P benchmark test-compile exec:exec}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@OperationsPerInvocation(NumberFormatterBenchmark.SIZE)
+public class NumberFormatterBenchmark{
+    
+    static final int SIZE = 4096;
+    
+    /*
+     * integers:  Whole numbers, partially within the cached range.
+     * decimals:  Numbers with up to three fraction digits, as typed into expressions.
+     * mixed:     Both of the above, as well as arbitrary doubles.
+     */
+    @Param({"integers", "decimals", "mixed"})
+    private String values;
+    
+    private double[] numbers;
+    private StringBuilder builder;
+    
+    @Setup(Level.Trial)
+    public void setup(){
+        Random random = new Random(42);
+        numbers = new double[SIZE];
+        for(int i = 0; i < SIZE; i++){
+            int kind = switch(values){
+                case "integers" -> 0;
+                case "decimals" -> 1;
+                default -> random.nextInt(3);
+            };
+            numbers[i] = switch(kind){
+                case 0 -> random.nextInt(4000) - 1000;
+                case 1 -> (random.nextInt(200_000) - 100_000) / 1000.0;
+                default -> Double.longBitsToDouble(random.nextLong() >>> 2);
+            };
+        }
+        builder = new StringBuilder();
+    }
+    
+    // The conversion previously used by Conversions.toString(ToDoubleExpression).
+    private static String legacy(double value){
+        return (int)value == value ? Integer.toString((int)value) : Double.toString(value);
+    }
+    
+    @Benchmark
+    public void legacyToString(Blackhole blackhole){
+        for(double number : numbers){
+            blackhole.consume(legacy(number));
+        }
+    }
+    
+    @Benchmark
+    public void formatterToString(Blackhole blackhole){
+        for(double number : numbers){
+            blackhole.consume(NumberFormatter.toString(number));
+        }
+    }
+    
+    @Benchmark
+    public void legacyAppend(Blackhole blackhole){
+        for(double number : numbers){
+            builder.setLength(0);
+            builder.append("Value: ").append(legacy(number));
+            blackhole.consume(builder);
+        }
+    }
+    
+    @Benchmark
+    public void formatterAppend(Blackhole blackhole){
+        for(double number : numbers){
+            builder.setLength(0);
+            NumberFormatter.appendTo(builder.append("Value: "), number);
+            blackhole.consume(builder);
+        }
+    }
+}
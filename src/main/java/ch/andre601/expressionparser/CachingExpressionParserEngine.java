@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser;
+
+import ch.andre601.expressionparser.internal.CheckUtil;
+import ch.andre601.expressionparser.templates.ExpressionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * {@link ExpressionParserEngine ExpressionParserEngine} that caches the {@link ExpressionTemplate ExpressionTemplates}
+ * compiled by another ExpressionParserEngine, using the text as key.
+ * <br>Any warnings collected while compiling a text are stored alongside the ExpressionTemplate and added to the
+ * provided {@link ParseWarnCollector} again whenever the cached ExpressionTemplate is returned.
+ * 
+ * <p>The cache holds up to a set number of texts. Once full, the least frequently requested out of a few randomly
+ * picked texts is removed, so that texts compiled only once do not push out texts compiled over and over. Newly cached
+ * texts are only picked once a tenth of the maximum size of other texts has been cached after them, giving them time
+ * to be requested again. Request counts are halved from time to time, so that texts that are no longer used
+ * eventually become removable.
+ * 
+ * <p>This class is safe to use from multiple threads at once, as long as the wrapped ExpressionParserEngine is.
+ * Should multiple threads compile the same text at once will only one of them call the wrapped ExpressionParserEngine,
+ * while the others wait for its result.
+ * <br>Texts whose compilation throws an exception are not cached.
+ * 
+ * <p>Example:
+ * <pre>{@code
+ * ExpressionParserEngine engine = new CachingExpressionParserEngine(DefaultExpressionParserEngine.createDefault(), 1024);
+ * }</pre>
+ */
+public class CachingExpressionParserEngine implements ExpressionParserEngine{
+    
+    // Request counts are halved after this many requests per cached text.
+    private static final int AGING_PERIOD = 10;
+    private static final int MAX_FREQUENCY = 0xFFFF;
+    // Amount of randomly picked texts compared to find the one to remove.
+    private static final int SAMPLE_SIZE = 8;
+    
+    private final ExpressionParserEngine delegate;
+    private final int maximumSize;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    
+    private final Object evictionLock = new Object();
+    // Entries that finished compiling, in no particular order, so that random ones can be picked. Guarded by evictionLock.
+    private final List<Entry> admitted = new ArrayList<>();
+    private long admissions = 0;
+    private long lastAging = 0;
+    
+    /**
+     * Creates a new instance of this class, caching up to the provided amount of ExpressionTemplates compiled by the
+     * provided {@link ExpressionParserEngine}.
+     * 
+     * @param  delegate
+     *         The ExpressionParserEngine to compile texts with.
+     * @param  maximumSize
+     *         The maximum amount of texts to cache.
+     * 
+     * @throws IllegalArgumentException
+     *         Should the ExpressionParserEngine be null or the maximum size be less than 1.
+     */
+    public CachingExpressionParserEngine(ExpressionParserEngine delegate, int maximumSize){
+        CheckUtil.notNull(delegate, CachingExpressionParserEngine.class, "Delegate");
+        if(maximumSize < 1)
+            throw new IllegalArgumentException("[" + CachingExpressionParserEngine.class.getSimpleName() + "] MaximumSize may not be less than 1.");
+        
+        this.delegate = delegate;
+        this.maximumSize = maximumSize;
+    }
+    
+    /**
+     * Returns the cached {@link ExpressionTemplate} for the provided text, or compiles and caches it using the wrapped
+     * {@link ExpressionParserEngine} should there be none yet.
+     * <br>Any warnings collected while the text was compiled are added to the provided {@link ParseWarnCollector}.
+     * 
+     * @param  text
+     *         The text to parse into a ExpressionTemplate.
+     * @param  collector
+     *         {@link ParseWarnCollector ParseWarnCollector instance} used to collect warnings during the parsing.
+     * 
+     * @return Possibly-null ExpressionTemplate instance.
+     */
+    @Override
+    public ExpressionTemplate compile(String text, ParseWarnCollector collector){
+        // A ParseWarnCollector can't be created for those, so leave them to the delegate.
+        if(text == null || text.isEmpty())
+            return delegate.compile(text, collector);
+        
+        while(true){
+            Entry entry = entries.get(text);
+            if(entry == null){
+                Entry created = new Entry(text);
+                entry = entries.putIfAbsent(text, created);
+                if(entry == null){
+                    misses.increment();
+                    return load(text, created).replay(collector);
+                }
+            }
+            
+            Compiled compiled;
+            try{
+                compiled = entry.result.join();
+            }catch(CompletionException ex){
+                // The thread compiling the text failed and removed the entry. Try again to get the exception ourselves.
+                continue;
+            }
+            
+            hits.increment();
+            entry.touch();
+            return compiled.replay(collector);
+        }
+    }
+    
+    /**
+     * Returns how often a cached {@link ExpressionTemplate} was returned, including by threads that waited for
+     * another thread to compile the same text.
+     * 
+     * @return The amount of cache hits.
+     */
+    public long getHitCount(){
+        return hits.sum();
+    }
+    
+    /**
+     * Returns how often a text had to be compiled by the wrapped {@link ExpressionParserEngine}.
+     * 
+     * @return The amount of cache misses.
+     */
+    public long getMissCount(){
+        return misses.sum();
+    }
+    
+    /**
+     * Returns how often a cached {@link ExpressionTemplate} was removed to make room for another one.
+     * 
+     * @return The amount of evictions.
+     */
+    public long getEvictionCount(){
+        return evictions.sum();
+    }
+    
+    /**
+     * Returns the amount of texts currently cached, including texts currently being compiled.
+     * 
+     * @return The current size of the cache.
+     */
+    public int getSize(){
+        return entries.size();
+    }
+    
+    private Compiled load(String text, Entry entry){
+        Compiled compiled;
+        try{
+            ParseWarnCollector recorder = new ParseWarnCollector(text);
+            ExpressionTemplate template = delegate.compile(text, recorder);
+            
+            compiled = new Compiled(template, List.copyOf(recorder.getWarnings()));
+        }catch(RuntimeException | Error ex){
+            entries.remove(text, entry);
+            entry.result.completeExceptionally(ex);
+            throw ex;
+        }
+        
+        entry.result.complete(compiled);
+        admit(entry);
+        
+        return compiled;
+    }
+    
+    private void admit(Entry added){
+        synchronized(evictionLock){
+            added.index = admitted.size();
+            added.admission = admissions++;
+            admitted.add(added);
+            
+            if(entries.size() <= maximumSize)
+                return;
+            
+            long requests = hits.sum() + misses.sum();
+            if(requests - lastAging >= (long)AGING_PERIOD * maximumSize){
+                lastAging = requests;
+                for(Entry entry : admitted){
+                    entry.frequency >>>= 1;
+                }
+            }
+            
+            // Entries admitted since then are only removed should every picked entry be one of them.
+            long protectedSince = admissions - Math.max(1, maximumSize / 10);
+            while(entries.size() > maximumSize){
+                // Entries still being compiled have waiting threads and aren't admitted yet, so should the added entry
+                // be the only admitted one may only those be left.
+                if(admitted.size() == 1)
+                    return;
+                
+                Entry victim = pickVictim(added, protectedSince);
+                forget(victim);
+                if(entries.remove(victim.text, victim))
+                    evictions.increment();
+            }
+        }
+    }
+    
+    // Picks an entry other than the added one, of which there has to be at least one.
+    private Entry pickVictim(Entry added, long protectedSince){
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Entry victim = null;
+        for(int i = 0; i < SAMPLE_SIZE; i++){
+            Entry candidate = admitted.get(random.nextInt(admitted.size()));
+            if(candidate == added)
+                continue;
+            
+            if(victim == null){
+                victim = candidate;
+                continue;
+            }
+            
+            boolean candidateProtected = candidate.admission >= protectedSince;
+            boolean victimProtected = victim.admission >= protectedSince;
+            if(candidateProtected != victimProtected ? victimProtected : candidate.frequency < victim.frequency)
+                victim = candidate;
+        }
+        
+        // Every picked entry was the added one, which is rare unless few entries are admitted.
+        if(victim == null)
+            victim = admitted.get((added.index + 1 + random.nextInt(admitted.size() - 1)) % admitted.size());
+        
+        return victim;
+    }
+    
+    // Removes the entry from the admitted ones by moving the last one into its place.
+    private void forget(Entry entry){
+        Entry last = admitted.remove(admitted.size() - 1);
+        if(last != entry){
+            admitted.set(entry.index, last);
+            last.index = entry.index;
+        }
+    }
+    
+    private static class Entry{
+        
+        private final String text;
+        private final CompletableFuture<Compiled> result = new CompletableFuture<>();
+        // Approximate request count. Concurrent increments may get lost, which is fine for picking eviction victims.
+        private volatile int frequency = 1;
+        // Position within the admitted entries and when it was admitted. Guarded by evictionLock.
+        private int index = -1;
+        private long admission;
+        
+        Entry(String text){
+            this.text = text;
+        }
+        
+        void touch(){
+            int current = frequency;
+            if(current < MAX_FREQUENCY)
+                frequency = current + 1;
+        }
+    }
+    
+    private record Compiled(ExpressionTemplate template, List<ParseWarnCollector.Context> warnings){
+        
+        ExpressionTemplate replay(ParseWarnCollector collector){
+            for(ParseWarnCollector.Context warning : warnings){
+                collector.appendWarning(warning.position(), warning.message());
+            }
+            
+            return template;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser;
+
+import ch.andre601.expressionparser.templates.ExpressionTemplate;
+
+/**
+ * Record holding the {@link ExpressionTemplate} compiled from a text by
+ * {@link ExpressionParserEngine#compileAll(java.util.Map) ExpressionParserEngine.compileAll}, together with the
+ * {@link ParseWarnCollector} used while compiling it.
+ * 
+ * @param template
+ *        The compiled ExpressionTemplate. May be null.
+ * @param collector
+ *        The ParseWarnCollector holding the warnings of the text.
+ */
+public record CompileResult(ExpressionTemplate template, ParseWarnCollector collector){}
@@ -19,33 +19,27 @@
 
 package ch.andre601.expressionparser;
 
+import ch.andre601.expressionparser.expressions.EvaluationContext;
 import ch.andre601.expressionparser.expressions.ToBooleanExpression;
 import ch.andre601.expressionparser.expressions.ToDoubleExpression;
 import ch.andre601.expressionparser.expressions.ToStringExpression;
 import ch.andre601.expressionparser.expressions.abstracted.AbstractUnaryToBooleanExpression;
 import ch.andre601.expressionparser.expressions.abstracted.AbstractUnaryToDoubleExpression;
 import ch.andre601.expressionparser.expressions.abstracted.AbstractUnaryToStringExpression;
+import ch.andre601.expressionparser.internal.NumberFormatter;
+import ch.andre601.expressionparser.internal.NumberParser;
 
 import java.text.NumberFormat;
-import java.text.ParseException;
 import java.util.Locale;
 
 /**
  * Class containing static methods to convert {@link ToBooleanExpression}, {@link ToDoubleExpression} and
  * {@link ToStringExpression} into their respective counterparts.
+ * <br>The returned expressions hold no state of their own and are safe to evaluate from multiple threads at once,
+ * as long as the expressions they convert are.
  */
 public class Conversions{
     
-    /**
-     * Static {@link NumberFormat} instance to parse Strings with.
-     */
-    private final static NumberFormat NUMBER_FORMAT;
-    
-    static {
-        NUMBER_FORMAT = NumberFormat.getNumberInstance(Locale.ROOT);
-        NUMBER_FORMAT.setGroupingUsed(false);
-    }
-    
     /**
      * Converts the provided {@link ToDoubleExpression} into a {@link ToBooleanExpression} with its boolean value being
      * true if the ToDoubleExpression's double value is anything but zero.
@@ -59,7 +53,12 @@ public class Conversions{
         return new AbstractUnaryToBooleanExpression<>(expression) {
             @Override
             public boolean evaluate(){
-                return expression.evaluate() != 0;
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public boolean evaluate(EvaluationContext context){
+                return expression.evaluate(context) != 0;
             }
         };
     }
@@ -77,7 +76,12 @@ public class Conversions{
         return new AbstractUnaryToBooleanExpression<>(expression) {
             @Override
             public boolean evaluate(){
-                return Boolean.parseBoolean(delegate.evaluate());
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public boolean evaluate(EvaluationContext context){
+                return Boolean.parseBoolean(delegate.evaluate(context));
             }
         };
     }
@@ -95,14 +99,20 @@ public class Conversions{
         return new AbstractUnaryToDoubleExpression<>(expression) {
             @Override
             public double evaluate(){
-                return delegate.evaluate() ? 1 : 0;
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public double evaluate(EvaluationContext context){
+                return delegate.evaluate(context) ? 1 : 0;
             }
         };
     }
     
     /**
      * Converts the provided {@link ToStringExpression} into a {@link ToDoubleExpression} with its double value being parsed
-     * from the ToStringExpression's String value using a {@link #NUMBER_FORMAT static NumberFormatter}.
+     * from the ToStringExpression's String value the same way a {@link NumberFormat#getNumberInstance(Locale) NumberFormatter}
+     * of {@link Locale#ROOT} without grouping would.
      * <br>Should the parsing fail will the String value's length be used instead.
      * 
      * @param  expression
@@ -115,12 +125,13 @@ public class Conversions{
         return new AbstractUnaryToDoubleExpression<>(expression) {
             @Override
             public double evaluate(){
-                String result = delegate.evaluate();
-                try{
-                    return NUMBER_FORMAT.parse(result).doubleValue();
-                }catch(ParseException | NumberFormatException ex){
-                    return result.length();
-                }
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public double evaluate(EvaluationContext context){
+                String result = delegate.evaluate(context);
+                return NumberParser.parseOrDefault(result, false, result.length());
             }
         };
     }
@@ -138,7 +149,12 @@ public class Conversions{
         return new AbstractUnaryToStringExpression<>(expression) {
             @Override
             public String evaluate(){
-                return Boolean.toString(delegate.evaluate());
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public String evaluate(EvaluationContext context){
+                return Boolean.toString(delegate.evaluate(context));
             }
         };
     }
@@ -158,8 +174,22 @@ public class Conversions{
         return new AbstractUnaryToStringExpression<>(expression) {
             @Override
             public String evaluate(){
-                double result = delegate.evaluate();
-                return result == (int)result ? Integer.toString((int)result) : Double.toString(result);
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public String evaluate(EvaluationContext context){
+                return NumberFormatter.toString(delegate.evaluate(context));
+            }
+            
+            @Override
+            public void appendTo(StringBuilder builder){
+                appendTo(builder, EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public void appendTo(StringBuilder builder, EvaluationContext context){
+                NumberFormatter.appendTo(builder, delegate.evaluate(context));
             }
         };
     }
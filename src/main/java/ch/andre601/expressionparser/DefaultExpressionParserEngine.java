@@ -23,11 +23,19 @@ import ch.andre601.expressionparser.expressions.ExpressionTokenizer;
 import ch.andre601.expressionparser.internal.CheckUtil;
 import ch.andre601.expressionparser.operator.Operator;
 import ch.andre601.expressionparser.parsers.*;
+import ch.andre601.expressionparser.templates.BytecodeCompiler;
+import ch.andre601.expressionparser.templates.CommonSubexpressionEliminator;
 import ch.andre601.expressionparser.templates.ExpressionTemplate;
+import ch.andre601.expressionparser.templates.MethodHandleCompiler;
+import ch.andre601.expressionparser.templates.TemplateInterner;
+import ch.andre601.expressionparser.templates.TemplateOptimizer;
 import ch.andre601.expressionparser.tokens.Token;
+import ch.andre601.expressionparser.tokens.TokenStream;
 import ch.andre601.expressionparser.tokens.readers.*;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 
 import java.util.*;
 
@@ -35,6 +43,10 @@ public class DefaultExpressionParserEngine implements ExpressionParserEngine{
     
     private final ExpressionTokenizer tokenizer;
     private final ExpressionTemplateParser parser;
+    private final EvaluationMode evaluationMode;
+    private final TemplateInterner templateInterner;
+    private final boolean eliminateCommonSubexpressions;
+    private final long configurationChecksum;
     
     /**
      * Creates a new instance of this class.
@@ -50,12 +62,95 @@ public class DefaultExpressionParserEngine implements ExpressionParserEngine{
      *        Immutable List of ValueReaders to use.
      */
     public DefaultExpressionParserEngine(List<TokenReader> tokenReaders, ImmutableMap<Token, Operator> operators, ImmutableList<ValueReader> valueReaders){
+        this(tokenReaders, operators, valueReaders, EvaluationMode.INTERPRETED);
+    }
+    
+    /**
+     * Creates a new instance of this class.
+     * <br>The provided {@link TokenReader TokenReader list} will be used to create a new {@link ExpressionTokenizer}
+     * while the provided Map of {@link Token Tokens} and {@link Operator Operators} will be used to create a new
+     * {@link ExpressionTemplateParser}.
+     * <br>The provided {@link EvaluationMode} decides how the compiled {@link ExpressionTemplate ExpressionTemplates}
+     * evaluate their values.
+     * 
+     * @param tokenReaders
+     *        List of TokenReaders to use.
+     * @param operators
+     *        Immutable Map of Token-Operator pairs to use.
+     * @param valueReaders
+     *        Immutable List of ValueReaders to use.
+     * @param evaluationMode
+     *        The EvaluationMode to use.
+     */
+    public DefaultExpressionParserEngine(List<TokenReader> tokenReaders, ImmutableMap<Token, Operator> operators, ImmutableList<ValueReader> valueReaders,
+                                         EvaluationMode evaluationMode){
+        this(tokenReaders, operators, valueReaders, evaluationMode, null);
+    }
+    
+    /**
+     * Creates a new instance of this class.
+     * <br>The provided {@link TokenReader TokenReader list} will be used to create a new {@link ExpressionTokenizer}
+     * while the provided Map of {@link Token Tokens} and {@link Operator Operators} will be used to create a new
+     * {@link ExpressionTemplateParser}.
+     * <br>The provided {@link EvaluationMode} decides how the compiled {@link ExpressionTemplate ExpressionTemplates}
+     * evaluate their values, while the provided {@link TemplateInterner} shares the parts they have in common with
+     * other ExpressionTemplates.
+     * 
+     * @param tokenReaders
+     *        List of TokenReaders to use.
+     * @param operators
+     *        Immutable Map of Token-Operator pairs to use.
+     * @param valueReaders
+     *        Immutable List of ValueReaders to use.
+     * @param evaluationMode
+     *        The EvaluationMode to use.
+     * @param templateInterner
+     *        The TemplateInterner to use, or null to not share any ExpressionTemplates.
+     */
+    public DefaultExpressionParserEngine(List<TokenReader> tokenReaders, ImmutableMap<Token, Operator> operators, ImmutableList<ValueReader> valueReaders,
+                                         EvaluationMode evaluationMode, TemplateInterner templateInterner){
+        this(tokenReaders, operators, valueReaders, evaluationMode, templateInterner, false);
+    }
+    
+    /**
+     * Creates a new instance of this class.
+     * <br>The provided {@link TokenReader TokenReader list} will be used to create a new {@link ExpressionTokenizer}
+     * while the provided Map of {@link Token Tokens} and {@link Operator Operators} will be used to create a new
+     * {@link ExpressionTemplateParser}.
+     * <br>The provided {@link EvaluationMode} decides how the compiled {@link ExpressionTemplate ExpressionTemplates}
+     * evaluate their values, while the provided {@link TemplateInterner} shares the parts they have in common with
+     * other ExpressionTemplates.
+     * <br>Should {@code eliminateCommonSubexpressions} be true, are parts appearing multiple times within a template
+     * evaluated in {@link EvaluationMode#INTERPRETED} only evaluated once per evaluation, as done by
+     * {@link CommonSubexpressionEliminator}.
+     * 
+     * @param tokenReaders
+     *        List of TokenReaders to use.
+     * @param operators
+     *        Immutable Map of Token-Operator pairs to use.
+     * @param valueReaders
+     *        Immutable List of ValueReaders to use.
+     * @param evaluationMode
+     *        The EvaluationMode to use.
+     * @param templateInterner
+     *        The TemplateInterner to use, or null to not share any ExpressionTemplates.
+     * @param eliminateCommonSubexpressions
+     *        Whether parts appearing multiple times within a template should only be evaluated once per evaluation.
+     */
+    public DefaultExpressionParserEngine(List<TokenReader> tokenReaders, ImmutableMap<Token, Operator> operators, ImmutableList<ValueReader> valueReaders,
+                                         EvaluationMode evaluationMode, TemplateInterner templateInterner,
+                                         boolean eliminateCommonSubexpressions){
         CheckUtil.notNullOrEmpty(tokenReaders, DefaultExpressionParserEngine.class, "TokenReaders");
         CheckUtil.notNullOrEmpty(operators, DefaultExpressionParserEngine.class, "Operators");
         CheckUtil.notNullOrEmpty(valueReaders, DefaultExpressionParserEngine.class, "ValueReaders");
+        CheckUtil.notNull(evaluationMode, DefaultExpressionParserEngine.class, "EvaluationMode");
         
         this.tokenizer = new ExpressionTokenizer(tokenReaders);
         this.parser = new ExpressionTemplateParser(operators, valueReaders);
+        this.evaluationMode = evaluationMode;
+        this.templateInterner = templateInterner;
+        this.eliminateCommonSubexpressions = eliminateCommonSubexpressions;
+        this.configurationChecksum = checksum(tokenReaders, operators, valueReaders);
     }
     
     /**
@@ -71,6 +166,11 @@ public class DefaultExpressionParserEngine implements ExpressionParserEngine{
     
     /**
      * Parses the provided text into a {@link ExpressionTemplate} to use.
+     * <br>The parsed ExpressionTemplate is passed through {@link TemplateOptimizer#optimize(ExpressionTemplate)},
+     * which for example turns {@code 10 * 60} into a single constant, before being prepared for the
+     * {@link EvaluationMode} of this engine.
+     * <br>This method may be called from multiple threads at once without any external synchronization, as long as
+     * every call uses its own {@link ParseWarnCollector} and any custom readers and operators are thread-safe too.
      * 
      * @param  text
      *         The text to parse into a ExpressionTemplate.
@@ -81,10 +181,191 @@ public class DefaultExpressionParserEngine implements ExpressionParserEngine{
      */
     @Override
     public ExpressionTemplate compile(String text, ParseWarnCollector collector){
+        return applyEvaluationMode(parse(text, collector));
+    }
+    
+    /**
+     * Parses the provided text into an optimized {@link ExpressionTemplate}, without preparing it for the
+     * {@link EvaluationMode} of this engine.
+     * <br>Should this engine have a {@link TemplateInterner} is the optimized ExpressionTemplate interned through it.
+     * <br>Calling {@link #applyEvaluationMode(ExpressionTemplate)} with the returned ExpressionTemplate gives the same
+     * result as {@link #compile(String, ParseWarnCollector)}.
+     * 
+     * @param  text
+     *         The text to parse into a ExpressionTemplate.
+     * @param  collector
+     *         {@link ParseWarnCollector ParseWarnCollector instance} used to collect warnings during the parsing.
+     * 
+     * @return New ExpressionTemplate evaluated through its tree of expressions.
+     */
+    public ExpressionTemplate parse(String text, ParseWarnCollector collector){
         CheckUtil.notNull(text, DefaultExpressionParserEngine.class, "Text");
         CheckUtil.notNull(collector, DefaultExpressionParserEngine.class, "Collector");
         
-        return parser.parse(tokenizer.parse(text, collector), collector);
+        ExpressionTemplate template = TemplateOptimizer.optimize(parser.parse(TokenStream.of(tokenizer.parse(text, collector)), collector));
+        if(templateInterner != null)
+            return templateInterner.intern(template);
+        
+        return template;
+    }
+    
+    /**
+     * Prepares the provided {@link ExpressionTemplate}, as returned by {@link #parse(String, ParseWarnCollector)},
+     * for the {@link EvaluationMode} of this engine.
+     * 
+     * @param  template
+     *         The ExpressionTemplate to prepare. May be null.
+     * 
+     * @return The ExpressionTemplate to use.
+     */
+    public ExpressionTemplate applyEvaluationMode(ExpressionTemplate template){
+        return switch(evaluationMode){
+            case INTERPRETED -> eliminateCommonSubexpressions ? CommonSubexpressionEliminator.eliminate(template) : template;
+            case BYTECODE -> BytecodeCompiler.compile(template);
+            case METHOD_HANDLES -> MethodHandleCompiler.compile(template);
+        };
+    }
+    
+    /**
+     * Returns the {@link EvaluationMode} used by this engine.
+     * 
+     * @return The EvaluationMode used.
+     */
+    public EvaluationMode getEvaluationMode(){
+        return evaluationMode;
+    }
+    
+    /**
+     * Returns the {@link TemplateInterner} used by this engine to share parsed {@link ExpressionTemplate ExpressionTemplates}.
+     * 
+     * @return The TemplateInterner used, or null if this engine doesn't share ExpressionTemplates.
+     */
+    public TemplateInterner getTemplateInterner(){
+        return templateInterner;
+    }
+    
+    /**
+     * Returns whether parts appearing multiple times within an {@link ExpressionTemplate} evaluated in
+     * {@link EvaluationMode#INTERPRETED} are only evaluated once per evaluation.
+     * 
+     * @return true if this engine applies the {@link CommonSubexpressionEliminator}, else false.
+     */
+    public boolean isEliminatingCommonSubexpressions(){
+        return eliminateCommonSubexpressions;
+    }
+    
+    /**
+     * Returns a checksum of the {@link TokenReader TokenReaders}, {@link Operator Operators} and
+     * {@link ValueReader ValueReaders} of this engine, used to detect ExpressionTemplates persisted by an engine that
+     * parses texts differently.
+     * <br>The checksum covers the order and class of every TokenReader and ValueReader, the Token, class and priority of
+     * every Operator, the priority of every TokenReader, as well as the patterns, characters, Tokens and
+     * {@link ch.andre601.expressionparser.Variables Variables} of the built-in readers. It does not cover what custom
+     * readers and the functions of Operators do, nor the {@link EvaluationMode}.
+     * 
+     * @return The checksum of the configuration of this engine.
+     */
+    public long getConfigurationChecksum(){
+        return configurationChecksum;
+    }
+    
+    private static long checksum(List<TokenReader> tokenReaders, ImmutableMap<Token, Operator> operators, ImmutableList<ValueReader> valueReaders){
+        Hasher hasher = Hashing.murmur3_128().newHasher();
+        
+        hasher.putInt(tokenReaders.size());
+        for(TokenReader reader : tokenReaders){
+            putString(hasher, reader.getClass().getName());
+            hasher.putInt(reader.getPriority());
+            if(reader instanceof PatternTokenReader pattern){
+                putToken(hasher, pattern.getToken());
+                putString(hasher, pattern.getPattern());
+                hasher.putBoolean(pattern.isIgnoreCase());
+            }else
+            if(reader instanceof QuotedLiteralTokenReader quoted){
+                hasher.putChar(quoted.getCharacter());
+            }
+        }
+        
+        // Map order doesn't change how texts are parsed.
+        List<Map.Entry<Token, Operator>> entries = new ArrayList<>(operators.entrySet());
+        entries.sort(Comparator.comparing(entry -> entry.getKey().getClass().getName() + ':' + entry.getKey()));
+        hasher.putInt(entries.size());
+        for(Map.Entry<Token, Operator> entry : entries){
+            putToken(hasher, entry.getKey());
+            putString(hasher, entry.getValue().getClass().getName());
+            hasher.putInt(entry.getValue().getPriority());
+        }
+        
+        hasher.putInt(valueReaders.size());
+        for(ValueReader reader : valueReaders){
+            putString(hasher, reader.getClass().getName());
+            if(reader instanceof NegatedExpressionReader negated){
+                putToken(hasher, negated.getNegationToken());
+            }else
+            if(reader instanceof NegatedNumberReader negated){
+                putToken(hasher, negated.getNegationToken());
+            }else
+            if(reader instanceof ParenthesisedExpressionReader parenthesised){
+                putToken(hasher, parenthesised.getOpeningParenthesis());
+                putToken(hasher, parenthesised.getClosingParenthesis());
+            }else
+            if(reader instanceof VariableReader variableReader){
+                Variables variables = variableReader.getVariables();
+                hasher.putInt(variables.getNames().size());
+                for(String name : variables.getNames()){
+                    putString(hasher, name);
+                    hasher.putInt(variables.getType(name).ordinal());
+                    hasher.putInt(variables.getSlot(name));
+                }
+            }
+        }
+        
+        return hasher.hash().asLong();
+    }
+    
+    private static void putToken(Hasher hasher, Token token){
+        putString(hasher, token.getClass().getName());
+        putString(hasher, String.valueOf(token));
+    }
+    
+    private static void putString(Hasher hasher, String value){
+        hasher.putInt(value.length());
+        hasher.putUnencodedChars(value);
+    }
+    
+    /**
+     * The ways {@link ExpressionTemplate ExpressionTemplates} compiled by the {@link DefaultExpressionParserEngine} can
+     * evaluate their values.
+     * <br>The values are the same for every mode. Only the time taken to compile and to evaluate differs.
+     */
+    public enum EvaluationMode{
+        
+        /**
+         * Templates evaluate their values through the tree of expressions created by
+         * {@link ch.andre601.expressionparser.expressions.Expressions Expressions} and {@link Conversions}.
+         * <br>Parts appearing multiple times within a template are only evaluated once per evaluation, as done by
+         * {@link CommonSubexpressionEliminator}, if enabled through
+         * {@link DefaultBuilder#setEliminateCommonSubexpressions(boolean)}.
+         * <br>This is the default mode.
+         */
+        INTERPRETED,
+        
+        /**
+         * Templates are compiled into a class through {@link BytecodeCompiler}, evaluating their values in a single
+         * method.
+         * <br>Compiling takes longer, but evaluating the same template many times is faster, especially when many
+         * differently shaped templates are in use.
+         */
+        BYTECODE,
+        
+        /**
+         * Templates are compiled into a tree of MethodHandles through {@link MethodHandleCompiler}, without creating
+         * any classes.
+         * <br>Expressions kept in {@code static final} fields are inlined by the JIT compiler as a whole and evaluate
+         * as fast as with {@link #BYTECODE}. Expressions held anywhere else are slower to evaluate than with
+         * {@link #INTERPRETED}.
+         */
+        METHOD_HANDLES
     }
     
     /**
@@ -93,9 +374,63 @@ public class DefaultExpressionParserEngine implements ExpressionParserEngine{
      * <p>This class can be used to more easily create a new instance of the DefaultExpressionParserEngine.
      */
     public static class DefaultBuilder extends ExpressionParserEngine.Builder<DefaultExpressionParserEngine>{
+        
+        private EvaluationMode evaluationMode = EvaluationMode.INTERPRETED;
+        private TemplateInterner templateInterner = null;
+        private boolean eliminateCommonSubexpressions = false;
+        
+        /**
+         * Sets the {@link EvaluationMode} for the {@link DefaultExpressionParserEngine} to use.
+         * <br>Defaults to {@link EvaluationMode#INTERPRETED}.
+         * 
+         * @param  evaluationMode
+         *         The EvaluationMode to use.
+         * 
+         * @return This builder instance after setting the EvaluationMode. Useful for chaining.
+         */
+        public DefaultBuilder setEvaluationMode(EvaluationMode evaluationMode){
+            CheckUtil.notNull(evaluationMode, this.getClass(), "EvaluationMode");
+            
+            this.evaluationMode = evaluationMode;
+            return this;
+        }
+        
+        /**
+         * Sets the {@link TemplateInterner} for the {@link DefaultExpressionParserEngine} to share the parts parsed
+         * {@link ExpressionTemplate ExpressionTemplates} have in common through.
+         * <br>Using the same TemplateInterner for multiple engines shares the parts between all of them. Defaults to
+         * null, sharing nothing.
+         * 
+         * @param  templateInterner
+         *         The TemplateInterner to use, or null to not share any ExpressionTemplates.
+         * 
+         * @return This builder instance after setting the TemplateInterner. Useful for chaining.
+         */
+        public DefaultBuilder setTemplateInterner(TemplateInterner templateInterner){
+            this.templateInterner = templateInterner;
+            return this;
+        }
+        
+        /**
+         * Sets whether the {@link DefaultExpressionParserEngine} should only evaluate parts appearing multiple times
+         * within an {@link ExpressionTemplate} once per evaluation, using the {@link CommonSubexpressionEliminator}.
+         * <br>This only applies to {@link EvaluationMode#INTERPRETED}. Custom templates are only shared with
+         * {@link Object#equals(Object) equal} ones, and never if their {@link ExpressionTemplate#isPure() isPure()}
+         * returns false. Defaults to false.
+         * 
+         * @param  eliminateCommonSubexpressions
+         *         Whether parts appearing multiple times should only be evaluated once per evaluation.
+         * 
+         * @return This builder instance after setting the option. Useful for chaining.
+         */
+        public DefaultBuilder setEliminateCommonSubexpressions(boolean eliminateCommonSubexpressions){
+            this.eliminateCommonSubexpressions = eliminateCommonSubexpressions;
+            return this;
+        }
+        
         @Override
         public DefaultExpressionParserEngine build(){
-            return new DefaultExpressionParserEngine(this.getTokenReaders(), ImmutableMap.copyOf(this.getOperators()), ImmutableList.copyOf(this.getValueReaders()));
+            return new DefaultExpressionParserEngine(this.getTokenReaders(), ImmutableMap.copyOf(this.getOperators()), ImmutableList.copyOf(this.getValueReaders()), evaluationMode, templateInterner, eliminateCommonSubexpressions);
         }
     }
 }
@@ -29,8 +29,14 @@ import ch.andre601.expressionparser.tokens.BooleanToken;
 import ch.andre601.expressionparser.tokens.DefaultTokens;
 import ch.andre601.expressionparser.tokens.Token;
 import ch.andre601.expressionparser.tokens.readers.*;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * This interface can be used to create multiple Expression parsers, all using the same core stuff.
@@ -50,6 +56,81 @@ public interface ExpressionParserEngine{
      */
     ExpressionTemplate compile(String text, ParseWarnCollector collector);
     
+    /**
+     * Compiles every text of the provided Map in parallel, using the {@link ForkJoinPool#commonPool() common pool}.
+     * <br>Calling this method is equal to calling {@link #compileAll(Map, Executor) compileAll(texts, ForkJoinPool.commonPool())}.
+     * 
+     * @param  <K>
+     *         The type of the ids of the texts.
+     * @param  texts
+     *         Map of ids and the texts to compile.
+     * 
+     * @return Immutable Map of the ids and their {@link CompileResult CompileResults}.
+     * 
+     * @throws IllegalArgumentException
+     *         Should the Map be null or contain a null id or text.
+     */
+    default <K> Map<K, CompileResult> compileAll(Map<K, String> texts){
+        return compileAll(texts, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * Compiles every text of the provided Map through {@link #compile(String, ParseWarnCollector)}, running the
+     * compilations on the provided {@link Executor}.
+     * <br>Each text is compiled with its own {@link ParseWarnCollector}, returned alongside the compiled
+     * {@link ExpressionTemplate} in a {@link CompileResult}. The returned Map has the same order as the provided one,
+     * no matter in which order the compilations finish.
+     * 
+     * <p>This ExpressionParserEngine has to be safe to use from multiple threads at once, which both the
+     * {@link DefaultExpressionParserEngine} and the {@link CachingExpressionParserEngine} are.
+     * <br>Should compiling any of the texts throw an exception will this method throw the exception of the first such
+     * text, in the order of the provided Map, once every compilation has finished.
+     * 
+     * @param  <K>
+     *         The type of the ids of the texts.
+     * @param  texts
+     *         Map of ids and the texts to compile.
+     * @param  executor
+     *         The Executor to compile the texts on.
+     * 
+     * @return Immutable Map of the ids and their {@link CompileResult CompileResults}.
+     * 
+     * @throws IllegalArgumentException
+     *         Should the Map or Executor be null, or the Map contain a null id or text.
+     */
+    default <K> Map<K, CompileResult> compileAll(Map<K, String> texts, Executor executor){
+        CheckUtil.notNull(texts, ExpressionParserEngine.class, "Texts");
+        CheckUtil.notNull(executor, ExpressionParserEngine.class, "Executor");
+        for(Map.Entry<K, String> entry : texts.entrySet()){
+            CheckUtil.notNull(entry.getKey(), ExpressionParserEngine.class, "Id");
+            CheckUtil.notNull(entry.getValue(), ExpressionParserEngine.class, "Text");
+        }
+        
+        Map<K, CompletableFuture<CompileResult>> futures = new LinkedHashMap<>();
+        for(Map.Entry<K, String> entry : texts.entrySet()){
+            String text = entry.getValue();
+            futures.put(entry.getKey(), CompletableFuture.supplyAsync(() -> {
+                ParseWarnCollector collector = new ParseWarnCollector(text);
+                return new CompileResult(compile(text, collector), collector);
+            }, executor));
+        }
+        
+        // Waits for every compilation, so that none is still running once a failure is thrown.
+        CompletableFuture.allOf(futures.values().toArray(CompletableFuture[]::new)).handle((ignored, ex) -> null).join();
+        
+        ImmutableMap.Builder<K, CompileResult> results = ImmutableMap.builderWithExpectedSize(futures.size());
+        for(Map.Entry<K, CompletableFuture<CompileResult>> entry : futures.entrySet()){
+            try{
+                results.put(entry.getKey(), entry.getValue().join());
+            }catch(CompletionException ex){
+                Throwables.throwIfUnchecked(ex.getCause());
+                throw ex;
+            }
+        }
+        
+        return results.build();
+    }
+    
     /**
      * Abstract class that can be used to create a new Builder for a {@link ExpressionParserEngine}.
      * <br>The class offers a {@link #createDefault()} method to populate the Lists and Map with default values
@@ -272,6 +353,24 @@ public interface ExpressionParserEngine{
             return this;
         }
         
+        /**
+         * Adds the provided {@link Variables} to use by the {@link DefaultExpressionParserEngine}, allowing expressions
+         * to read them as {@code {name}}.
+         * <br>This adds a {@link VariableTokenReader} and a {@link VariableReader} for the variables.
+         *
+         * @param  variables
+         *         The Variables to add.
+         *
+         * @return This builder instance after adding the Variables. Useful for chaining.
+         */
+        public Builder<T> addVariables(Variables variables){
+            CheckUtil.notNull(variables, this.getClass(), "Variables");
+            
+            return this
+                .addTokenReader(new VariableTokenReader(-20))
+                .addValueReader(new VariableReader(variables));
+        }
+        
         /**
          * Method to build a new instance of what this Builder is using.
          * 
@@ -42,10 +42,10 @@ public class ParseWarnCollector{
      *        Not-null String containing the expression this ParseWarnCollector is used for.
      * 
      * @throws IllegalArgumentException
-     *         Should the provided String be null or empty.
+     *         Should the provided String be null.
      */
     public ParseWarnCollector(String expression){
-        CheckUtil.notNullOrEmpty(expression, ParseWarnCollector.class, "Expression");
+        CheckUtil.notNull(expression, ParseWarnCollector.class, "Expression");
         
         this.expression = expression;
     }
@@ -0,0 +1,381 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser;
+
+import ch.andre601.expressionparser.internal.CheckUtil;
+import ch.andre601.expressionparser.templates.ExpressionTemplate;
+import ch.andre601.expressionparser.templates.TemplateSerializer;
+import com.google.common.hash.Hashing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.CRC32;
+
+/**
+ * {@link ExpressionParserEngine ExpressionParserEngine} keeping the {@link ExpressionTemplate ExpressionTemplates}
+ * parsed by a {@link DefaultExpressionParserEngine} in a file, so that texts compiled before don't have to be tokenized
+ * and parsed again after a restart.
+ * <br>The file is read once when this engine is created, and written again through {@link #save()}. Texts are
+ * compiled by the wrapped DefaultExpressionParserEngine the first time they are requested, while texts found in the
+ * file are only prepared for its {@link DefaultExpressionParserEngine.EvaluationMode EvaluationMode}. Any warnings
+ * collected while parsing a text are stored alongside its ExpressionTemplate and added to the provided
+ * {@link ParseWarnCollector} whenever it is returned.
+ * 
+ * <p>The file holds a version of its format and a checksum of the configuration of the engine that wrote it, as
+ * returned by {@link DefaultExpressionParserEngine#getConfigurationChecksum()}. Files of another version, of an engine
+ * with another configuration, or that are corrupted are ignored, and replaced on the next save. Changes the checksum
+ * can't see, such as a custom operator creating different ExpressionTemplates, can be covered through the version
+ * provided to {@link #PersistentExpressionParserEngine(DefaultExpressionParserEngine, Path, TemplateSerializer, String)}.
+ * <br>ExpressionTemplates are written through a {@link TemplateSerializer}. Texts whose ExpressionTemplates it can't
+ * write, such as ones containing unregistered custom templates, are only kept in memory.
+ * 
+ * <p>Every compiled text is kept until this engine is no longer used. This class is safe to use from multiple threads
+ * at once.
+ * 
+ * <p>Example:
+ * <pre>{@code
+ * PersistentExpressionParserEngine engine = new PersistentExpressionParserEngine(DefaultExpressionParserEngine.createDefault(), Path.of("templates.bin"));
+ * // Compile all texts
+ * engine.save();
+ * }</pre>
+ */
+public class PersistentExpressionParserEngine implements ExpressionParserEngine{
+    
+    private static final int MAGIC = 0x45585054;
+    private static final int FORMAT_VERSION = 3;
+    
+    private final DefaultExpressionParserEngine delegate;
+    private final Path file;
+    private final TemplateSerializer serializer;
+    private final long checksum;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final int loadedCount;
+    
+    private volatile boolean modified = false;
+    
+    /**
+     * Creates a new instance of this class, reading the ExpressionTemplates stored in the provided file, if there are
+     * any.
+     * <br>Only the ExpressionTemplates created through {@link ch.andre601.expressionparser.templates.ExpressionTemplates ExpressionTemplates}
+     * and {@link ch.andre601.expressionparser.templates.ConstantExpressionTemplate ConstantExpressionTemplate} are
+     * stored.
+     * 
+     * @param  delegate
+     *         The DefaultExpressionParserEngine to compile texts with.
+     * @param  file
+     *         The file to store the ExpressionTemplates in.
+     * 
+     * @throws IllegalArgumentException
+     *         Should the DefaultExpressionParserEngine or file be null.
+     * @throws UncheckedIOException
+     *         Should the file exist, but not be readable.
+     */
+    public PersistentExpressionParserEngine(DefaultExpressionParserEngine delegate, Path file){
+        this(delegate, file, TemplateSerializer.createDefault(), "");
+    }
+    
+    /**
+     * Creates a new instance of this class, reading the ExpressionTemplates stored in the provided file, if there are
+     * any.
+     * <br>The file is ignored if it was written with another version.
+     * 
+     * @param  delegate
+     *         The DefaultExpressionParserEngine to compile texts with.
+     * @param  file
+     *         The file to store the ExpressionTemplates in.
+     * @param  serializer
+     *         The TemplateSerializer to write and read the ExpressionTemplates with.
+     * @param  version
+     *         The version of any configuration not covered by the checksum of the DefaultExpressionParserEngine.
+     * 
+     * @throws IllegalArgumentException
+     *         Should any of the arguments be null.
+     * @throws UncheckedIOException
+     *         Should the file exist, but not be readable.
+     */
+    public PersistentExpressionParserEngine(DefaultExpressionParserEngine delegate, Path file, TemplateSerializer serializer, String version){
+        CheckUtil.notNull(delegate, PersistentExpressionParserEngine.class, "Delegate");
+        CheckUtil.notNull(file, PersistentExpressionParserEngine.class, "File");
+        CheckUtil.notNull(serializer, PersistentExpressionParserEngine.class, "Serializer");
+        CheckUtil.notNull(version, PersistentExpressionParserEngine.class, "Version");
+        
+        this.delegate = delegate;
+        this.file = file;
+        this.serializer = serializer;
+        this.checksum = Hashing.murmur3_128().newHasher()
+            .putLong(delegate.getConfigurationChecksum())
+            .putString(version, StandardCharsets.UTF_8)
+            .hash().asLong();
+        this.loadedCount = load();
+    }
+    
+    /**
+     * Returns the stored {@link ExpressionTemplate} for the provided text, or compiles and stores it using the wrapped
+     * {@link DefaultExpressionParserEngine} should there be none yet.
+     * <br>Any warnings collected while the text was parsed are added to the provided {@link ParseWarnCollector}.
+     * 
+     * @param  text
+     *         The text to parse into a ExpressionTemplate.
+     * @param  collector
+     *         {@link ParseWarnCollector ParseWarnCollector instance} used to collect warnings during the parsing.
+     * 
+     * @return Possibly-null ExpressionTemplate instance.
+     */
+    @Override
+    public ExpressionTemplate compile(String text, ParseWarnCollector collector){
+        // A ParseWarnCollector can't be created for those, so leave them to the delegate.
+        if(text == null || text.isEmpty())
+            return delegate.compile(text, collector);
+        
+        CheckUtil.notNull(collector, PersistentExpressionParserEngine.class, "Collector");
+        
+        Entry entry = entries.get(text);
+        if(entry == null){
+            ParseWarnCollector recorder = new ParseWarnCollector(text);
+            ExpressionTemplate template = delegate.parse(text, recorder);
+            
+            Entry created = new Entry(template, List.copyOf(recorder.getWarnings()));
+            entry = entries.putIfAbsent(text, created);
+            if(entry == null){
+                entry = created;
+                modified = true;
+            }
+        }
+        
+        for(ParseWarnCollector.Context warning : entry.warnings){
+            collector.appendWarning(warning.position(), warning.message());
+        }
+        
+        return entry.prepare(delegate);
+    }
+    
+    /**
+     * Writes all stored {@link ExpressionTemplate ExpressionTemplates} to the file, replacing it as a whole.
+     * <br>Nothing is written if no text has been compiled since the file was read or last written, unless the file
+     * could not be used.
+     * 
+     * @throws IOException
+     *         Should writing the file fail.
+     */
+    public synchronized void save() throws IOException{
+        if(!modified)
+            return;
+        
+        modified = false;
+        
+        List<Map.Entry<String, Entry>> snapshot = new ArrayList<>(entries.entrySet());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ByteArrayOutputStream entryBytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        DataOutputStream entryOut = new DataOutputStream(entryBytes);
+        
+        int count = 0;
+        for(Map.Entry<String, Entry> entry : snapshot){
+            entryBytes.reset();
+            try{
+                writeEntry(entryOut, entry.getKey(), entry.getValue());
+            }catch(NotSerializableException ex){
+                continue;
+            }
+            
+            entryBytes.writeTo(bytes);
+            count++;
+        }
+        
+        ByteArrayOutputStream data = new ByteArrayOutputStream(bytes.size() + 24);
+        DataOutputStream header = new DataOutputStream(data);
+        header.writeInt(MAGIC);
+        header.writeInt(FORMAT_VERSION);
+        header.writeLong(checksum);
+        header.writeInt(count);
+        bytes.writeTo(data);
+        
+        CRC32 crc = new CRC32();
+        crc.update(data.toByteArray());
+        header.writeLong(crc.getValue());
+        
+        try{
+            write(data.toByteArray());
+        }catch(IOException | RuntimeException ex){
+            modified = true;
+            throw ex;
+        }
+    }
+    
+    /**
+     * Returns the amount of texts read from the file when this engine was created.
+     * <br>This is 0 should the file not exist or have been ignored.
+     * 
+     * @return The amount of texts read from the file.
+     */
+    public int getLoadedCount(){
+        return loadedCount;
+    }
+    
+    /**
+     * Returns the amount of texts currently stored, including texts not written to the file yet.
+     * 
+     * @return The amount of texts stored.
+     */
+    public int getSize(){
+        return entries.size();
+    }
+    
+    private int load(){
+        byte[] data;
+        try{
+            data = Files.readAllBytes(file);
+        }catch(NoSuchFileException ex){
+            return 0;
+        }catch(IOException ex){
+            throw new UncheckedIOException(ex);
+        }
+        
+        try{
+            int count = read(data);
+            if(count < 0){
+                // Stale file, to be replaced on the next save.
+                modified = true;
+                return 0;
+            }
+            
+            return count;
+        }catch(IOException | RuntimeException ex){
+            // Corrupted file, to be replaced on the next save.
+            entries.clear();
+            modified = true;
+            return 0;
+        }
+    }
+    
+    // Returns the amount of texts read, or -1 if the file is of another version or configuration.
+    private int read(byte[] data) throws IOException{
+        if(data.length < 8)
+            throw new StreamCorruptedException("File is too short.");
+        
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length - 8);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        in.skipNBytes(data.length - 8);
+        if(in.readLong() != crc.getValue())
+            throw new StreamCorruptedException("Checksum of file does not match.");
+        
+        in = new DataInputStream(new ByteArrayInputStream(data, 0, data.length - 8));
+        if(in.readInt() != MAGIC)
+            throw new StreamCorruptedException("File is not a template file.");
+        if(in.readInt() != FORMAT_VERSION || in.readLong() != checksum)
+            return -1;
+        
+        int count = in.readInt();
+        for(int i = 0; i < count; i++){
+            String text = TemplateSerializer.readString(in);
+            
+            int warningCount = in.readInt();
+            List<ParseWarnCollector.Context> warnings = new ArrayList<>(Math.min(warningCount, 16));
+            for(int j = 0; j < warningCount; j++){
+                warnings.add(new ParseWarnCollector.Context(in.readInt(), TemplateSerializer.readString(in)));
+            }
+            
+            ExpressionTemplate template = serializer.read(in);
+            if(delegate.getTemplateInterner() != null)
+                template = delegate.getTemplateInterner().intern(template);
+            
+            entries.put(text, new Entry(template, List.copyOf(warnings)));
+        }
+        
+        if(in.available() != 0)
+            throw new StreamCorruptedException("File has trailing data.");
+        
+        return count;
+    }
+    
+    private void writeEntry(DataOutputStream out, String text, Entry entry) throws IOException{
+        TemplateSerializer.writeString(out, text);
+        out.writeInt(entry.warnings.size());
+        for(ParseWarnCollector.Context warning : entry.warnings){
+            out.writeInt(warning.position());
+            TemplateSerializer.writeString(out, warning.message());
+        }
+        serializer.write(entry.template, out);
+    }
+    
+    // Writes into a temporary file first, so that the file is never left half-written.
+    private void write(byte[] data) throws IOException{
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try{
+            Files.write(temp, data);
+            try{
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }catch(AtomicMoveNotSupportedException ex){
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }finally{
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    private static class Entry{
+        
+        private final ExpressionTemplate template;
+        private final List<ParseWarnCollector.Context> warnings;
+        
+        private volatile ExpressionTemplate prepared;
+        
+        Entry(ExpressionTemplate template, List<ParseWarnCollector.Context> warnings){
+            this.template = template;
+            this.warnings = warnings;
+        }
+        
+        ExpressionTemplate prepare(DefaultExpressionParserEngine engine){
+            if(template == null)
+                return null;
+            
+            ExpressionTemplate result = prepared;
+            if(result == null){
+                synchronized(this){
+                    result = prepared;
+                    if(result == null)
+                        prepared = result = engine.applyEvaluationMode(template);
+                }
+            }
+            
+            return result;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser;
+
+import ch.andre601.expressionparser.expressions.EvaluationBatch;
+import ch.andre601.expressionparser.expressions.EvaluationContext;
+import ch.andre601.expressionparser.internal.CheckUtil;
+import ch.andre601.expressionparser.templates.ExpressionTemplate;
+import ch.andre601.expressionparser.templates.ExpressionTemplates;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Declares the variables expressions may use, assigning each one a slot in the {@link EvaluationContext} of its type.
+ * <br>Variables are resolved to their slot once when an expression is compiled, so a single compiled
+ * {@link ExpressionTemplate} can be evaluated with the context of any entity, such as one per player, without
+ * compiling it again.
+ * 
+ * <p>Variables are written as {@code {name}} in expressions once added to an engine through
+ * {@link ExpressionParserEngine.Builder#addVariables(Variables)}:
+ * <pre>{@code
+ * Variables variables = new Variables.Builder()
+ *     .addDouble("health")
+ *     .addString("name")
+ *     .build();
+ * 
+ * ExpressionParserEngine engine = new DefaultExpressionParserEngine.DefaultBuilder()
+ *     .createDefault()
+ *     .addVariables(variables)
+ *     .build();
+ * 
+ * ToBooleanExpression expression = engine.compile("{health} < 5", collector).returnBooleanExpression();
+ * 
+ * EvaluationContext context = variables.createContext()
+ *     .setDouble(variables.getSlot("health"), 3);
+ * boolean lowHealth = expression.evaluate(context);
+ * }</pre>
+ */
+public class Variables{
+    
+    private final ImmutableMap<String, Variable> variables;
+    private final int booleanSlots;
+    private final int doubleSlots;
+    private final int stringSlots;
+    
+    private Variables(Map<String, Variable> variables, int booleanSlots, int doubleSlots, int stringSlots){
+        this.variables = ImmutableMap.copyOf(variables);
+        this.booleanSlots = booleanSlots;
+        this.doubleSlots = doubleSlots;
+        this.stringSlots = stringSlots;
+    }
+    
+    /**
+     * Creates a new {@link EvaluationContext} with a slot for every variable declared here.
+     * 
+     * @return New EvaluationContext for these variables.
+     */
+    public EvaluationContext createContext(){
+        return new EvaluationContext(booleanSlots, doubleSlots, stringSlots);
+    }
+    
+    /**
+     * Creates a new {@link EvaluationBatch} with the provided amount of rows and a column for every variable declared
+     * here.
+     * 
+     * @param  size
+     *         The amount of rows.
+     * 
+     * @return New EvaluationBatch for these variables.
+     */
+    public EvaluationBatch createBatch(int size){
+        return new EvaluationBatch(size, booleanSlots, doubleSlots, stringSlots);
+    }
+    
+    /**
+     * Returns the names of all declared variables, in the order they were declared in.
+     * 
+     * @return Immutable Set of the names of all variables.
+     */
+    public Set<String> getNames(){
+        return variables.keySet();
+    }
+    
+    /**
+     * Returns whether a variable with the provided name has been declared.
+     * 
+     * @param  name
+     *         The name of the variable.
+     * 
+     * @return true if the variable has been declared, else false.
+     */
+    public boolean contains(String name){
+        return variables.containsKey(name);
+    }
+    
+    /**
+     * Returns the {@link Type} of the variable with the provided name.
+     * 
+     * @param  name
+     *         The name of the variable.
+     * 
+     * @return The Type of the variable.
+     * 
+     * @throws IllegalArgumentException
+     *         Should no variable with the provided name have been declared.
+     */
+    public Type getType(String name){
+        return get(name).type();
+    }
+    
+    /**
+     * Returns the slot of the variable with the provided name, which is used to set its value in an
+     * {@link EvaluationContext}.
+     * 
+     * @param  name
+     *         The name of the variable.
+     * 
+     * @return The slot of the variable.
+     * 
+     * @throws IllegalArgumentException
+     *         Should no variable with the provided name have been declared.
+     */
+    public int getSlot(String name){
+        return get(name).slot();
+    }
+    
+    /**
+     * Creates a new {@link ExpressionTemplate} reading the variable with the provided name from the
+     * {@link EvaluationContext} it is evaluated with.
+     * 
+     * @param  name
+     *         The name of the variable.
+     * 
+     * @return New ExpressionTemplate reading the variable.
+     * 
+     * @throws IllegalArgumentException
+     *         Should no variable with the provided name have been declared.
+     */
+    public ExpressionTemplate createTemplate(String name){
+        Variable variable = get(name);
+        
+        return switch(variable.type()){
+            case BOOLEAN -> ExpressionTemplates.booleanVariable(variable.slot());
+            case DOUBLE -> ExpressionTemplates.doubleVariable(variable.slot());
+            case STRING -> ExpressionTemplates.stringVariable(variable.slot());
+        };
+    }
+    
+    private Variable get(String name){
+        CheckUtil.notNull(name, Variables.class, "Name");
+        
+        Variable variable = variables.get(name);
+        if(variable == null)
+            throw new IllegalArgumentException("[" + Variables.class.getSimpleName() + "] Unknown variable \"" + name + "\".");
+        
+        return variable;
+    }
+    
+    /**
+     * The types a variable can have, deciding which values of an {@link EvaluationContext} it is read from.
+     * <br>The other values of a variable are converted the same way {@link Conversions} does.
+     */
+    public enum Type{
+        BOOLEAN,
+        DOUBLE,
+        STRING
+    }
+    
+    private record Variable(Type type, int slot){}
+    
+    /**
+     * Builder class used to declare the variables of a new {@link Variables} instance.
+     * <br>Slots are assigned in the order variables are added, starting at 0 for every type.
+     */
+    public static class Builder{
+        
+        private final Map<String, Variable> variables = new LinkedHashMap<>();
+        private final int[] slots = new int[Type.values().length];
+        
+        public Builder(){}
+        
+        /**
+         * Adds a boolean variable with the provided name.
+         * 
+         * @param  name
+         *         The name of the variable.
+         * 
+         * @return This Builder instance after adding the variable. Useful for chaining.
+         */
+        public Builder addBoolean(String name){
+            return add(name, Type.BOOLEAN);
+        }
+        
+        /**
+         * Adds a double variable with the provided name.
+         * 
+         * @param  name
+         *         The name of the variable.
+         * 
+         * @return This Builder instance after adding the variable. Useful for chaining.
+         */
+        public Builder addDouble(String name){
+            return add(name, Type.DOUBLE);
+        }
+        
+        /**
+         * Adds a String variable with the provided name.
+         * 
+         * @param  name
+         *         The name of the variable.
+         * 
+         * @return This Builder instance after adding the variable. Useful for chaining.
+         */
+        public Builder addString(String name){
+            return add(name, Type.STRING);
+        }
+        
+        /**
+         * Creates a new {@link Variables} instance holding the added variables.
+         * 
+         * @return New Variables instance.
+         */
+        public Variables build(){
+            return new Variables(variables, slots[Type.BOOLEAN.ordinal()], slots[Type.DOUBLE.ordinal()], slots[Type.STRING.ordinal()]);
+        }
+        
+        private Builder add(String name, Type type){
+            CheckUtil.notNullOrEmpty(name, this.getClass(), "Name");
+            if(variables.containsKey(name))
+                throw new IllegalArgumentException("[" + this.getClass().getSimpleName() + "] Variable \"" + name + "\" has already been added.");
+            
+            variables.put(name, new Variable(type, slots[type.ordinal()]++));
+            return this;
+        }
+    }
+}
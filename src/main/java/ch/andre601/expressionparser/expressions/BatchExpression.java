@@ -0,0 +1,73 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser.expressions;
+
+import java.util.BitSet;
+
+/**
+ * Evaluates an expression for every row of an {@link EvaluationBatch} at once, writing the values into the provided
+ * output.
+ * <br>The value of each row is the same as the one of the single expression evaluated with an
+ * {@link EvaluationContext} holding the values of that row.
+ * 
+ * @see ch.andre601.expressionparser.templates.BatchCompiler BatchCompiler
+ */
+public interface BatchExpression{
+    
+    /**
+     * Writes the boolean value of every row into the provided array, at the index of the row.
+     * 
+     * @param  batch
+     *         The EvaluationBatch to evaluate.
+     * @param  out
+     *         The array to write into. Must have at least {@link EvaluationBatch#size() batch.size()} elements.
+     */
+    void evaluateBooleans(EvaluationBatch batch, boolean[] out);
+    
+    /**
+     * Sets the bit of every row with a true boolean value in the provided BitSet and clears the others.
+     * 
+     * @param  batch
+     *         The EvaluationBatch to evaluate.
+     * @param  out
+     *         The BitSet to write into.
+     */
+    void evaluateBooleans(EvaluationBatch batch, BitSet out);
+    
+    /**
+     * Writes the double value of every row into the provided array, at the index of the row.
+     * 
+     * @param  batch
+     *         The EvaluationBatch to evaluate.
+     * @param  out
+     *         The array to write into. Must have at least {@link EvaluationBatch#size() batch.size()} elements.
+     */
+    void evaluateDoubles(EvaluationBatch batch, double[] out);
+    
+    /**
+     * Writes the String value of every row into the provided array, at the index of the row.
+     * 
+     * @param  batch
+     *         The EvaluationBatch to evaluate.
+     * @param  out
+     *         The array to write into. Must have at least {@link EvaluationBatch#size() batch.size()} elements.
+     */
+    void evaluateStrings(EvaluationBatch batch, String[] out);
+}
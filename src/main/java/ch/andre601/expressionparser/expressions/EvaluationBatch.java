@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser.expressions;
+
+import java.util.Arrays;
+
+/**
+ * Holds the values of variables for many rows at once, such as one row per player, for a {@link BatchExpression} to
+ * evaluate in one go.
+ * <br>Values are stored in columns, one array per variable, which are returned by the getters and can be filled
+ * directly. Variables are identified by the same slots as in an {@link EvaluationContext}.
+ * 
+ * <p>Columns of Strings start out filled with empty Strings and may not contain null.
+ */
+public class EvaluationBatch{
+    
+    private final int size;
+    private final boolean[][] booleans;
+    private final double[][] doubles;
+    private final String[][] strings;
+    
+    /**
+     * Creates a new EvaluationBatch with the provided amount of rows and slots per type.
+     * 
+     * @param size
+     *        Amount of rows.
+     * @param booleanSlots
+     *        Amount of boolean variables.
+     * @param doubleSlots
+     *        Amount of double variables.
+     * @param stringSlots
+     *        Amount of String variables.
+     */
+    public EvaluationBatch(int size, int booleanSlots, int doubleSlots, int stringSlots){
+        if(size < 0 || booleanSlots < 0 || doubleSlots < 0 || stringSlots < 0)
+            throw new IllegalArgumentException("[EvaluationBatch] Size and slot amounts may not be negative.");
+        
+        this.size = size;
+        this.booleans = new boolean[booleanSlots][size];
+        this.doubles = new double[doubleSlots][size];
+        this.strings = new String[stringSlots][size];
+        for(String[] column : strings){
+            Arrays.fill(column, "");
+        }
+    }
+    
+    /**
+     * Returns the amount of rows in this batch.
+     * 
+     * @return The amount of rows.
+     */
+    public int size(){
+        return size;
+    }
+    
+    /**
+     * Returns the column of the boolean variable in the provided slot, holding its value for every row.
+     * 
+     * @param  slot
+     *         The slot of the variable.
+     * 
+     * @return The column of the variable.
+     * 
+     * @throws IllegalStateException
+     *         Should this batch not have the provided slot.
+     */
+    public boolean[] getBooleans(int slot){
+        if(slot >= booleans.length)
+            throw missing("boolean", slot);
+        
+        return booleans[slot];
+    }
+    
+    /**
+     * Returns the column of the double variable in the provided slot, holding its value for every row.
+     * 
+     * @param  slot
+     *         The slot of the variable.
+     * 
+     * @return The column of the variable.
+     * 
+     * @throws IllegalStateException
+     *         Should this batch not have the provided slot.
+     */
+    public double[] getDoubles(int slot){
+        if(slot >= doubles.length)
+            throw missing("double", slot);
+        
+        return doubles[slot];
+    }
+    
+    /**
+     * Returns the column of the String variable in the provided slot, holding its value for every row.
+     * 
+     * @param  slot
+     *         The slot of the variable.
+     * 
+     * @return The column of the variable.
+     * 
+     * @throws IllegalStateException
+     *         Should this batch not have the provided slot.
+     */
+    public String[] getStrings(int slot){
+        if(slot >= strings.length)
+            throw missing("String", slot);
+        
+        return strings[slot];
+    }
+    
+    /**
+     * Creates a new {@link EvaluationContext} with the same slots as this batch, which can be filled with the values
+     * of a row through {@link #loadRow(int, EvaluationContext)}.
+     * 
+     * @return New EvaluationContext for the rows of this batch.
+     */
+    public EvaluationContext createContext(){
+        return new EvaluationContext(booleans.length, doubles.length, strings.length);
+    }
+    
+    /**
+     * Copies the values of all variables in the provided row into the provided {@link EvaluationContext}.
+     * 
+     * @param  row
+     *         The row to copy.
+     * @param  context
+     *         The EvaluationContext to copy the values into. Must have at least the slots of this batch.
+     */
+    public void loadRow(int row, EvaluationContext context){
+        for(int slot = 0; slot < booleans.length; slot++){
+            context.setBoolean(slot, booleans[slot][row]);
+        }
+        for(int slot = 0; slot < doubles.length; slot++){
+            context.setDouble(slot, doubles[slot][row]);
+        }
+        for(int slot = 0; slot < strings.length; slot++){
+            context.setString(slot, strings[slot][row]);
+        }
+    }
+    
+    private static IllegalStateException missing(String type, int slot){
+        return new IllegalStateException("[EvaluationBatch] No " + type + " variable in slot " + slot + ".");
+    }
+}
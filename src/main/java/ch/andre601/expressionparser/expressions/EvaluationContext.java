@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser.expressions;
+
+import ch.andre601.expressionparser.internal.CheckUtil;
+
+import java.util.Arrays;
+
+/**
+ * Holds the values of variables for expressions to read while being evaluated.
+ * <br>Variables are identified by their slot, which is the index in the array of their type. Slots are assigned by
+ * {@link ch.andre601.expressionparser.Variables Variables} when compiling an expression, allowing a single compiled
+ * expression to be evaluated with any number of EvaluationContexts.
+ * 
+ * <p>Values are read without any synchronization, so a context should not be changed while another thread evaluates
+ * an expression with it.
+ */
+public class EvaluationContext{
+    
+    /**
+     * EvaluationContext without any variables, used by the {@code evaluate()} methods without a context.
+     */
+    public static final EvaluationContext EMPTY = new EvaluationContext(0, 0, 0);
+    
+    private final boolean[] booleans;
+    private final double[] doubles;
+    private final String[] strings;
+    
+    /**
+     * Creates a new EvaluationContext with the provided amount of slots per type.
+     * <br>Booleans start as {@code false}, doubles as {@code 0} and Strings as empty Strings.
+     * 
+     * @param booleanSlots
+     *        Amount of boolean variables.
+     * @param doubleSlots
+     *        Amount of double variables.
+     * @param stringSlots
+     *        Amount of String variables.
+     */
+    public EvaluationContext(int booleanSlots, int doubleSlots, int stringSlots){
+        if(booleanSlots < 0 || doubleSlots < 0 || stringSlots < 0)
+            throw new IllegalArgumentException("[EvaluationContext] Slot amounts may not be negative.");
+        
+        this.booleans = new boolean[booleanSlots];
+        this.doubles = new double[doubleSlots];
+        this.strings = new String[stringSlots];
+        Arrays.fill(strings, "");
+    }
+    
+    /**
+     * Creates a new EvaluationContext holding the same variables as the provided one.
+     * <br>The variables are not copied, so changing them in either context changes them in both. This is meant for
+     * subclasses holding additional values that only live for a single evaluation.
+     * 
+     * @param context
+     *        The EvaluationContext to share the variables of.
+     */
+    protected EvaluationContext(EvaluationContext context){
+        CheckUtil.notNull(context, EvaluationContext.class, "Context");
+        
+        this.booleans = context.booleans;
+        this.doubles = context.doubles;
+        this.strings = context.strings;
+    }
+    
+    /**
+     * Returns the value of the boolean variable in the provided slot.
+     * 
+     * @param  slot
+     *         The slot of the variable.
+     * 
+     * @return The boolean value of the variable.
+     * 
+     * @throws IllegalStateException
+     *         Should this context not have the provided slot.
+     */
+    public boolean getBoolean(int slot){
+        if(slot >= booleans.length)
+            throw missing("boolean", slot);
+        
+        return booleans[slot];
+    }
+    
+    /**
+     * Returns the value of the double variable in the provided slot.
+     * 
+     * @param  slot
+     *         The slot of the variable.
+     * 
+     * @return The double value of the variable.
+     * 
+     * @throws IllegalStateException
+     *         Should this context not have the provided slot.
+     */
+    public double getDouble(int slot){
+        if(slot >= doubles.length)
+            throw missing("double", slot);
+        
+        return doubles[slot];
+    }
+    
+    /**
+     * Returns the value of the String variable in the provided slot.
+     * 
+     * @param  slot
+     *         The slot of the variable.
+     * 
+     * @return The String value of the variable.
+     * 
+     * @throws IllegalStateException
+     *         Should this context not have the provided slot.
+     */
+    public String getString(int slot){
+        if(slot >= strings.length)
+            throw missing("String", slot);
+        
+        return strings[slot];
+    }
+    
+    /**
+     * Sets the value of the boolean variable in the provided slot.
+     * 
+     * @param  slot
+     *         The slot of the variable.
+     * @param  value
+     *         The boolean value to set.
+     * 
+     * @return This EvaluationContext instance. Useful for chaining.
+     */
+    public EvaluationContext setBoolean(int slot, boolean value){
+        booleans[slot] = value;
+        return this;
+    }
+    
+    /**
+     * Sets the value of the double variable in the provided slot.
+     * 
+     * @param  slot
+     *         The slot of the variable.
+     * @param  value
+     *         The double value to set.
+     * 
+     * @return This EvaluationContext instance. Useful for chaining.
+     */
+    public EvaluationContext setDouble(int slot, double value){
+        doubles[slot] = value;
+        return this;
+    }
+    
+    /**
+     * Sets the value of the String variable in the provided slot.
+     * 
+     * @param  slot
+     *         The slot of the variable.
+     * @param  value
+     *         The String value to set.
+     * 
+     * @return This EvaluationContext instance. Useful for chaining.
+     * 
+     * @throws IllegalArgumentException
+     *         Should the provided String be null.
+     */
+    public EvaluationContext setString(int slot, String value){
+        CheckUtil.notNull(value, EvaluationContext.class, "Value");
+        
+        strings[slot] = value;
+        return this;
+    }
+    
+    private static IllegalStateException missing(String type, int slot){
+        return new IllegalStateException("[EvaluationContext] No " + type + " variable in slot " + slot + ". Was the expression evaluated without its context?");
+    }
+}
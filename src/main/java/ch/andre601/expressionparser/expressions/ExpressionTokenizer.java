@@ -22,27 +22,87 @@ package ch.andre601.expressionparser.expressions;
 import ch.andre601.expressionparser.ParseWarnCollector;
 import ch.andre601.expressionparser.internal.CheckUtil;
 import ch.andre601.expressionparser.tokens.Token;
+import ch.andre601.expressionparser.tokens.readers.PatternTokenReader;
+import ch.andre601.expressionparser.tokens.readers.PatternTrieTokenReader;
 import ch.andre601.expressionparser.tokens.readers.TokenReader;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Ordering;
 
 import java.text.ParsePosition;
+import java.util.ArrayList;
 import java.util.Comparator;
-import java.util.LinkedList;
 import java.util.List;
 
 /**
  * The ExpressionTokenizer is responsible for turning a String into a collection of {@link Token Token instances}
  * using a provided list of {@link TokenReader TokenReader instances}.
  * <br>The order of the TokenReaders in the list is based on their {@link TokenReader#getPriority() priority}.
+ * 
+ * <p>Consecutive {@link PatternTokenReader PatternTokenReaders} are merged into a single {@link PatternTrieTokenReader},
+ * which finds the longest matching pattern in one pass instead of trying every pattern on its own.
+ * <br>For ASCII characters, a table of the TokenReaders that {@link TokenReader#canStartWith(char) can start with} the
+ * character is built once, so that only those TokenReaders are tried when a token starts with it.
  */
 public class ExpressionTokenizer{
     
     private static final Ordering<TokenReader> TOKEN_READER_ORDERING = Ordering.from(Comparator.comparingInt(TokenReader::getPriority)).reverse();
     
+    /**
+     * Characters below this value get their own precomputed list of {@link TokenReader TokenReaders}.
+     */
+    private static final int DISPATCH_TABLE_SIZE = 128;
+    
     private final List<TokenReader> tokenReaders;
+    private final List<List<TokenReader>> dispatchTable;
     
     public ExpressionTokenizer(Iterable<TokenReader> tokenReaders){
-        this.tokenReaders = TOKEN_READER_ORDERING.immutableSortedCopy(tokenReaders);
+        this.tokenReaders = mergePatternTokenReaders(TOKEN_READER_ORDERING.immutableSortedCopy(tokenReaders));
+        
+        ImmutableList.Builder<List<TokenReader>> dispatchTable = ImmutableList.builderWithExpectedSize(DISPATCH_TABLE_SIZE);
+        for(char c = 0; c < DISPATCH_TABLE_SIZE; c++){
+            ImmutableList.Builder<TokenReader> candidates = ImmutableList.builder();
+            for(TokenReader tokenReader : this.tokenReaders){
+                if(tokenReader.canStartWith(c))
+                    candidates.add(tokenReader);
+            }
+            
+            dispatchTable.add(candidates.build());
+        }
+        
+        this.dispatchTable = dispatchTable.build();
+    }
+    
+    /*
+     * Replaces every run of at least two PatternTokenReaders in the sorted list with a single PatternTrieTokenReader.
+     * Runs are cut by any other TokenReader, so that the order in which patterns and other TokenReaders are tried
+     * stays the same.
+     */
+    private static List<TokenReader> mergePatternTokenReaders(List<TokenReader> tokenReaders){
+        ImmutableList.Builder<TokenReader> merged = ImmutableList.builder();
+        List<PatternTokenReader> run = new ArrayList<>();
+        
+        for(TokenReader tokenReader : tokenReaders){
+            if(tokenReader.getClass() == PatternTokenReader.class && PatternTrieTokenReader.isSupported((PatternTokenReader)tokenReader)){
+                run.add((PatternTokenReader)tokenReader);
+                continue;
+            }
+            
+            flushRun(run, merged);
+            merged.add(tokenReader);
+        }
+        
+        flushRun(run, merged);
+        return merged.build();
+    }
+    
+    private static void flushRun(List<PatternTokenReader> run, ImmutableList.Builder<TokenReader> merged){
+        if(run.size() > 1){
+            merged.add(new PatternTrieTokenReader(run));
+        }else{
+            merged.addAll(run);
+        }
+        
+        run.clear();
     }
     
     /**
@@ -61,7 +121,7 @@ public class ExpressionTokenizer{
         
         ParsePosition position = new ParsePosition(0);
         
-        List<Token> tokens = new LinkedList<>();
+        List<Token> tokens = new ArrayList<>();
         
         next_token:
         while(true){
@@ -71,7 +131,10 @@ public class ExpressionTokenizer{
             if(position.getIndex() >= text.length())
                 break;
             
-            for(TokenReader tokenReader : tokenReaders){
+            char c = text.charAt(position.getIndex());
+            List<TokenReader> candidates = c < DISPATCH_TABLE_SIZE ? dispatchTable.get(c) : tokenReaders;
+            
+            for(TokenReader tokenReader : candidates){
                 Token token;
                 if(null != (token = tokenReader.read(text, position, collector))){
                     tokens.add(token);
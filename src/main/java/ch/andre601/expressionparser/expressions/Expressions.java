@@ -21,6 +21,7 @@ package ch.andre601.expressionparser.expressions;
 
 import ch.andre601.expressionparser.expressions.abstracted.*;
 import ch.andre601.expressionparser.internal.CheckUtil;
+import ch.andre601.expressionparser.internal.NumberFormatter;
 
 import java.util.Collection;
 
@@ -44,7 +45,12 @@ public class Expressions{
         return new AbstractUnaryToBooleanExpression<>(expression){
             @Override
             public boolean evaluate(){
-                return !delegate.evaluate();
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public boolean evaluate(EvaluationContext context){
+                return !delegate.evaluate(context);
             }
         };
     }
@@ -65,8 +71,13 @@ public class Expressions{
         return new AbstractToBooleanExpression<>(operands){
             @Override
             public boolean evaluate(){
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public boolean evaluate(EvaluationContext context){
                 for(ToBooleanExpression operand : operands){
-                    if(!operand.evaluate())
+                    if(!operand.evaluate(context))
                         return false;
                 }
                 
@@ -91,8 +102,13 @@ public class Expressions{
         return new AbstractToBooleanExpression<>(operands){
             @Override
             public boolean evaluate(){
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public boolean evaluate(EvaluationContext context){
                 for(ToBooleanExpression operand : operands){
-                    if(operand.evaluate())
+                    if(operand.evaluate(context))
                         return true;
                 }
                 
@@ -117,9 +133,14 @@ public class Expressions{
         return new AbstractToStringExpression<>(operands){
             @Override
             public String evaluate(){
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public String evaluate(EvaluationContext context){
                 StringBuilder result = new StringBuilder();
                 for(ToStringExpression operand : operands){
-                    result.append(operand.evaluate());
+                    operand.appendTo(result, context);
                 }
                 
                 return result.toString();
@@ -149,7 +170,12 @@ public class Expressions{
         return new AbstractBinaryToBooleanExpression<>(a, b){
             @Override
             public boolean evaluate(){
-                return a.evaluate().equals(b.evaluate());
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public boolean evaluate(EvaluationContext context){
+                return a.evaluate(context).equals(b.evaluate(context));
             }
         };
     }
@@ -174,7 +200,12 @@ public class Expressions{
         return new AbstractBinaryToBooleanExpression<>(a, b){
             @Override
             public boolean evaluate(){
-                return a.evaluate().equalsIgnoreCase(b.evaluate());
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public boolean evaluate(EvaluationContext context){
+                return a.evaluate(context).equalsIgnoreCase(b.evaluate(context));
             }
         };
     }
@@ -199,7 +230,12 @@ public class Expressions{
         return new AbstractBinaryToBooleanExpression<>(a, b){
             @Override
             public boolean evaluate(){
-                return !a.evaluate().equals(b.evaluate());
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public boolean evaluate(EvaluationContext context){
+                return !a.evaluate(context).equals(b.evaluate(context));
             }
         };
     }
@@ -224,7 +260,76 @@ public class Expressions{
         return new AbstractBinaryToBooleanExpression<>(a, b){
             @Override
             public boolean evaluate(){
-                return !a.evaluate().equalsIgnoreCase(b.evaluate());
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public boolean evaluate(EvaluationContext context){
+                return !a.evaluate(context).equalsIgnoreCase(b.evaluate(context));
+            }
+        };
+    }
+    
+    /**
+     * Returns a {@link ToBooleanExpression} who's boolean value is true if and only if the double values of both
+     * provided {@link ToDoubleExpression ToDoubleExpressions} would be converted into equal Strings by
+     * {@link ch.andre601.expressionparser.Conversions#toString(ToDoubleExpression) Conversions.toString}.
+     * <br>This gives the same result as {@link #equal(ToStringExpression, ToStringExpression)} on the converted
+     * ToDoubleExpressions, without creating any Strings. Unlike {@code ==} are two NaN values considered equal.
+     * 
+     * @param  a
+     *         First ToDoubleExpression to use.
+     * @param  b
+     *         Second ToDoubleExpression to compare with.
+     * 
+     * @return ToBooleanExpression who's boolean value is true if and only if the double values of both provided
+     *         ToDoubleExpressions are converted into equal Strings.
+     */
+    public static ToBooleanExpression equalNumbers(ToDoubleExpression a, ToDoubleExpression b){
+        CheckUtil.notNull(a, Expressions.class, "First ToDoubleExpression");
+        CheckUtil.notNull(b, Expressions.class, "Second ToDoubleExpression");
+        
+        return new AbstractBinaryToBooleanExpression<>(a, b){
+            @Override
+            public boolean evaluate(){
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public boolean evaluate(EvaluationContext context){
+                return NumberFormatter.isSameString(a.evaluate(context), b.evaluate(context));
+            }
+        };
+    }
+    
+    /**
+     * Returns a {@link ToBooleanExpression} who's boolean value is true if and only if the double values of both
+     * provided {@link ToDoubleExpression ToDoubleExpressions} would <b>not</b> be converted into equal Strings by
+     * {@link ch.andre601.expressionparser.Conversions#toString(ToDoubleExpression) Conversions.toString}.
+     * <br>This gives the same result as {@link #notEqual(ToStringExpression, ToStringExpression)} on the converted
+     * ToDoubleExpressions, without creating any Strings.
+     * 
+     * @param  a
+     *         First ToDoubleExpression to use.
+     * @param  b
+     *         Second ToDoubleExpression to compare with.
+     * 
+     * @return ToBooleanExpression who's boolean value is true if and only if the double values of both provided
+     *         ToDoubleExpressions are <b>not</b> converted into equal Strings.
+     */
+    public static ToBooleanExpression notEqualNumbers(ToDoubleExpression a, ToDoubleExpression b){
+        CheckUtil.notNull(a, Expressions.class, "First ToDoubleExpression");
+        CheckUtil.notNull(b, Expressions.class, "Second ToDoubleExpression");
+        
+        return new AbstractBinaryToBooleanExpression<>(a, b){
+            @Override
+            public boolean evaluate(){
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public boolean evaluate(EvaluationContext context){
+                return !NumberFormatter.isSameString(a.evaluate(context), b.evaluate(context));
             }
         };
     }
@@ -248,7 +353,12 @@ public class Expressions{
         return new AbstractBinaryToBooleanExpression<>(a, b){
             @Override
             public boolean evaluate(){
-                return a.evaluate().startsWith(b.evaluate());
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public boolean evaluate(EvaluationContext context){
+                return a.evaluate(context).startsWith(b.evaluate(context));
             }
         };
     }
@@ -272,7 +382,12 @@ public class Expressions{
         return new AbstractBinaryToBooleanExpression<>(a, b){
             @Override
             public boolean evaluate(){
-                return a.evaluate().endsWith(b.evaluate());
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public boolean evaluate(EvaluationContext context){
+                return a.evaluate(context).endsWith(b.evaluate(context));
             }
         };
     }
@@ -296,7 +411,12 @@ public class Expressions{
         return new AbstractBinaryToBooleanExpression<>(a, b){
             @Override
             public boolean evaluate(){
-                return a.evaluate().contains(b.evaluate());
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public boolean evaluate(EvaluationContext context){
+                return a.evaluate(context).contains(b.evaluate(context));
             }
         };
     }
@@ -320,7 +440,12 @@ public class Expressions{
         return new AbstractBinaryToBooleanExpression<>(a, b){
             @Override
             public boolean evaluate(){
-                return a.evaluate() > b.evaluate();
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public boolean evaluate(EvaluationContext context){
+                return a.evaluate(context) > b.evaluate(context);
             }
         };
     }
@@ -344,7 +469,12 @@ public class Expressions{
         return new AbstractBinaryToBooleanExpression<>(a, b){
             @Override
             public boolean evaluate(){
-                return a.evaluate() >= b.evaluate();
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public boolean evaluate(EvaluationContext context){
+                return a.evaluate(context) >= b.evaluate(context);
             }
         };
     }
@@ -368,7 +498,12 @@ public class Expressions{
         return new AbstractBinaryToBooleanExpression<>(a, b){
             @Override
             public boolean evaluate(){
-                return a.evaluate() < b.evaluate();
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public boolean evaluate(EvaluationContext context){
+                return a.evaluate(context) < b.evaluate(context);
             }
         };
     }
@@ -392,7 +527,12 @@ public class Expressions{
         return new AbstractBinaryToBooleanExpression<>(a, b){
             @Override
             public boolean evaluate(){
-                return a.evaluate() <= b.evaluate();
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public boolean evaluate(EvaluationContext context){
+                return a.evaluate(context) <= b.evaluate(context);
             }
         };
     }
@@ -412,9 +552,14 @@ public class Expressions{
         return new AbstractToDoubleExpression<>(operands){
             @Override
             public double evaluate(){
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public double evaluate(EvaluationContext context){
                 double result = 0;
                 for(ToDoubleExpression operand : operands){
-                    result += operand.evaluate();
+                    result += operand.evaluate(context);
                 }
                 
                 return result;
@@ -438,9 +583,14 @@ public class Expressions{
         return new AbstractToDoubleExpression<>(operands){
             @Override
             public double evaluate(){
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public double evaluate(EvaluationContext context){
                 double result = 1;
                 for(ToDoubleExpression operand : operands){
-                    result *= operand.evaluate();
+                    result *= operand.evaluate(context);
                 }
                 
                 return result;
@@ -467,7 +617,12 @@ public class Expressions{
         return new AbstractBinaryToDoubleExpression<>(a, b){
             @Override
             public double evaluate(){
-                return a.evaluate() - b.evaluate();
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public double evaluate(EvaluationContext context){
+                return a.evaluate(context) - b.evaluate(context);
             }
         };
     }
@@ -491,7 +646,12 @@ public class Expressions{
         return new AbstractBinaryToDoubleExpression<>(a, b){
             @Override
             public double evaluate(){
-                return a.evaluate() / b.evaluate();
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public double evaluate(EvaluationContext context){
+                return a.evaluate(context) / b.evaluate(context);
             }
         };
     }
@@ -510,8 +670,96 @@ public class Expressions{
         return new AbstractUnaryToDoubleExpression<>(a){
             @Override
             public double evaluate(){
-                return -delegate.evaluate();
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public double evaluate(EvaluationContext context){
+                return -delegate.evaluate(context);
+            }
+        };
+    }
+    
+    /**
+     * Returns a {@link ToBooleanExpression} who's boolean value is the boolean variable in the provided slot of the
+     * {@link EvaluationContext} it is evaluated with.
+     * <br>Evaluating the expression without a context throws an {@link IllegalStateException}.
+     * 
+     * @param  slot
+     *         The slot of the boolean variable.
+     * 
+     * @return ToBooleanExpression who's boolean value is the boolean variable in the provided slot.
+     */
+    public static ToBooleanExpression booleanVariable(int slot){
+        checkSlot(slot);
+        
+        return new ToBooleanExpression(){
+            @Override
+            public boolean evaluate(){
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public boolean evaluate(EvaluationContext context){
+                return context.getBoolean(slot);
+            }
+        };
+    }
+    
+    /**
+     * Returns a {@link ToDoubleExpression} who's double value is the double variable in the provided slot of the
+     * {@link EvaluationContext} it is evaluated with.
+     * <br>Evaluating the expression without a context throws an {@link IllegalStateException}.
+     * 
+     * @param  slot
+     *         The slot of the double variable.
+     * 
+     * @return ToDoubleExpression who's double value is the double variable in the provided slot.
+     */
+    public static ToDoubleExpression doubleVariable(int slot){
+        checkSlot(slot);
+        
+        return new ToDoubleExpression(){
+            @Override
+            public double evaluate(){
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public double evaluate(EvaluationContext context){
+                return context.getDouble(slot);
             }
         };
     }
+    
+    /**
+     * Returns a {@link ToStringExpression} who's String value is the String variable in the provided slot of the
+     * {@link EvaluationContext} it is evaluated with.
+     * <br>Evaluating the expression without a context throws an {@link IllegalStateException}.
+     * 
+     * @param  slot
+     *         The slot of the String variable.
+     * 
+     * @return ToStringExpression who's String value is the String variable in the provided slot.
+     */
+    public static ToStringExpression stringVariable(int slot){
+        checkSlot(slot);
+        
+        return new ToStringExpression(){
+            @Override
+            public String evaluate(){
+                return evaluate(EvaluationContext.EMPTY);
+            }
+            
+            @Override
+            public String evaluate(EvaluationContext context){
+                return context.getString(slot);
+            }
+        };
+    }
+    
+    private static void checkSlot(int slot){
+        if(slot < 0)
+            throw new IllegalArgumentException("[Expressions] Slot may not be negative.");
+    }
 }
@@ -31,6 +31,20 @@ public interface ToBooleanExpression extends Expression{
      */
     boolean evaluate();
     
+    /**
+     * Method used to return a boolean value using the variables of the provided {@link EvaluationContext}.
+     * <br>The default implementation ignores the context and returns {@link #evaluate()}. Expressions holding other
+     * expressions should override this method and pass the context on to them, so that variables can be read.
+     * 
+     * @param  context
+     *         The EvaluationContext holding the values of variables.
+     * 
+     * @return boolean value.
+     */
+    default boolean evaluate(EvaluationContext context){
+        return evaluate();
+    }
+    
     /**
      * Creates a new ToBooleanExpression instance containing the provided boolean value.
      * 
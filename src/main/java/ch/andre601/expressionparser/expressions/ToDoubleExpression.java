@@ -31,6 +31,20 @@ public interface ToDoubleExpression extends Expression{
      */
     double evaluate();
     
+    /**
+     * Method used to return a double value using the variables of the provided {@link EvaluationContext}.
+     * <br>The default implementation ignores the context and returns {@link #evaluate()}. Expressions holding other
+     * expressions should override this method and pass the context on to them, so that variables can be read.
+     * 
+     * @param  context
+     *         The EvaluationContext holding the values of variables.
+     * 
+     * @return double value.
+     */
+    default double evaluate(EvaluationContext context){
+        return evaluate();
+    }
+    
     /**
      * Creates a new ToDoubleExpression instance containing the provided double value.
      *
@@ -33,6 +33,46 @@ public interface ToStringExpression extends Expression{
      */
     String evaluate();
     
+    /**
+     * Method used to return a String value using the variables of the provided {@link EvaluationContext}.
+     * <br>The default implementation ignores the context and returns {@link #evaluate()}. Expressions holding other
+     * expressions should override this method and pass the context on to them, so that variables can be read.
+     * 
+     * @param  context
+     *         The EvaluationContext holding the values of variables.
+     * 
+     * @return String value.
+     */
+    default String evaluate(EvaluationContext context){
+        return evaluate();
+    }
+    
+    /**
+     * Appends the String value to the provided StringBuilder.
+     * <br>The default implementation appends the output of {@link #evaluate()}, but implementations may override this
+     * to write their value without creating a String first.
+     * 
+     * @param  builder
+     *         The StringBuilder to append the String value to.
+     */
+    default void appendTo(StringBuilder builder){
+        builder.append(evaluate());
+    }
+    
+    /**
+     * Appends the String value to the provided StringBuilder, using the variables of the provided
+     * {@link EvaluationContext}.
+     * <br>The default implementation appends the output of {@link #evaluate(EvaluationContext)}.
+     * 
+     * @param  builder
+     *         The StringBuilder to append the String value to.
+     * @param  context
+     *         The EvaluationContext holding the values of variables.
+     */
+    default void appendTo(StringBuilder builder, EvaluationContext context){
+        builder.append(evaluate(context));
+    }
+    
     /**
      * Creates a new ToStringExpression instance containing the provided String value.
      *
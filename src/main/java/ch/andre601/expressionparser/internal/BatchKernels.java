@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser.internal;
+
+/**
+ * Loops over columns of values, used by {@link ch.andre601.expressionparser.templates.BatchCompiler BatchCompiler}
+ * to evaluate templates for every row of a batch at once.
+ * <br>Each operation only processes the first {@code size} elements of the provided arrays, writing its results into
+ * the {@code out} array. Arrays may be longer than {@code size}, but elements after it are neither read nor written.
+ * Kernels don't take masks, so every one of the first {@code size} elements is computed, no matter whether its row is
+ * used. Only {@link #junction(boolean[], boolean[], boolean[], boolean, int) junction} tracks undecided rows.
+ * <br>Every kernel works element by element, so an input may be the same array as {@code out} if their types match,
+ * except for the arrays of junction, which have to be distinct.
+ * 
+ * <p>{@link #get()} returns kernels partially using the incubating Vector API if the {@code jdk.incubator.vector}
+ * module has been added to the JVM, through {@code --add-modules jdk.incubator.vector}, and the CPU supports more than
+ * one double per vector. Only scalar loops are used otherwise. Both return the exact same values.
+ * <br>The kernels using the Vector API are only compiled by the {@code vector} profile of the build, keeping the
+ * default build free of warnings about the incubating module, and are therefore loaded reflectively.
+ */
+public abstract class BatchKernels{
+    
+    private static final BatchKernels KERNELS = create();
+    
+    BatchKernels(){}
+    
+    /**
+     * Returns the kernels to use in this JVM.
+     * 
+     * @return The kernels to use.
+     */
+    public static BatchKernels get(){
+        return KERNELS;
+    }
+    
+    /**
+     * Returns the scalar kernels, available in every JVM.
+     * 
+     * @return The scalar kernels.
+     */
+    public static BatchKernels scalar(){
+        return ScalarBatchKernels.INSTANCE;
+    }
+    
+    /**
+     * Adds each value to the double at the same index of {@code out}.
+     */
+    public abstract void add(double[] out, double[] values, int size);
+    
+    /**
+     * Multiplies each double of {@code out} with the value at the same index.
+     */
+    public abstract void multiply(double[] out, double[] values, int size);
+    
+    /**
+     * Subtracts each value from the double at the same index of {@code out}.
+     */
+    public abstract void subtract(double[] out, double[] values, int size);
+    
+    /**
+     * Divides each double of {@code out} by the value at the same index, following the rules of {@code /} for doubles.
+     */
+    public abstract void divide(double[] out, double[] values, int size);
+    
+    /**
+     * Negates each double of {@code out} in place.
+     */
+    public abstract void negate(double[] out, int size);
+    
+    /**
+     * Writes whether each value is anything but 0, as done by
+     * {@link ch.andre601.expressionparser.Conversions#toBoolean(ch.andre601.expressionparser.expressions.ToDoubleExpression)
+     * Conversions.toBoolean}. NaN is not 0.
+     */
+    public abstract void notZero(double[] values, boolean[] out, int size);
+    
+    /**
+     * Writes whether each first value is greater than the second one at the same index, which is false if either is
+     * NaN.
+     */
+    public abstract void greater(double[] first, double[] second, boolean[] out, int size);
+    
+    /**
+     * Writes whether each first value is greater than or equal to the second one at the same index, which is false if
+     * either is NaN.
+     */
+    public abstract void greaterOrEqual(double[] first, double[] second, boolean[] out, int size);
+    
+    /**
+     * Writes whether each first value is less than the second one at the same index, which is false if either is NaN.
+     */
+    public abstract void less(double[] first, double[] second, boolean[] out, int size);
+    
+    /**
+     * Writes whether each first value is less than or equal to the second one at the same index, which is false if
+     * either is NaN.
+     */
+    public abstract void lessOrEqual(double[] first, double[] second, boolean[] out, int size);
+    
+    /**
+     * Writes whether each value is between both bounds, which only include the bound itself if it is inclusive. NaN
+     * is never between them.
+     */
+    public abstract void within(double[] values, double lower, boolean lowerInclusive, double upper, boolean upperInclusive, boolean[] out, int size);
+    
+    /**
+     * Writes whether both doubles are formatted into the same String, as returned by
+     * {@link NumberFormatter#isSameString(double, double)}, or the opposite if {@code negate} is true.
+     */
+    public abstract void sameString(double[] first, double[] second, boolean[] out, boolean negate, int size);
+    
+    /**
+     * Inverts each boolean of {@code out} in place.
+     */
+    public abstract void not(boolean[] out, int size);
+    
+    /**
+     * Applies an operand of an and or or to the rows marked as undecided. Rows whose value equals the deciding value
+     * become decided, with the deciding value as their result.
+     * <br>The results of undecided rows have to be the opposite of the deciding value. Values of rows no longer
+     * undecided are ignored, and {@code values}, {@code undecided} and {@code out} have to be distinct arrays.
+     */
+    public abstract void junction(boolean[] values, boolean[] undecided, boolean[] out, boolean decidingValue, int size);
+    
+    private static BatchKernels create(){
+        if(ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty())
+            return ScalarBatchKernels.INSTANCE;
+        
+        try{
+            Class<?> type = Class.forName(BatchKernels.class.getPackageName() + ".VectorBatchKernels");
+            if((boolean)type.getDeclaredMethod("isSupported").invoke(null))
+                return (BatchKernels)type.getDeclaredConstructor().newInstance();
+        }catch(ReflectiveOperationException | LinkageError ignored){}
+        
+        return ScalarBatchKernels.INSTANCE;
+    }
+}
@@ -19,6 +19,8 @@
 
 package ch.andre601.expressionparser.internal;
 
+import ch.andre601.expressionparser.tokens.TokenStream;
+
 import java.util.Collection;
 import java.util.Map;
 
@@ -45,6 +47,13 @@ public class CheckUtil{
             throw new IllegalArgumentException("[" + clazz.getSimpleName() + "] " + name + " may not be empty.");
     }
     
+    public static void notNullOrEmpty(TokenStream stream, Class<?> clazz, String name){
+        notNull(stream, clazz, name);
+        
+        if(stream.isEmpty())
+            throw new IllegalArgumentException("[" + clazz.getSimpleName() + "] " + name + " may not be empty.");
+    }
+    
     public static void noneNull(Class<?> clazz, String name, Object... objects){
         for(Object obj : objects){
             notNull(obj, clazz, name);
@@ -0,0 +1,1004 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.andre601.expressionparser.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Minimal writer for Java class files, used to generate classes at runtime.
+ * <br>Only the instructions needed by the generated classes are supported. The types on the operand stack are tracked
+ * while writing the code of a method, which allows the maximum stack size and the stack map frames required by the
+ * verifier to be computed without any analysis afterwards.
+ * 
+ * <p>Methods whose code does not fit into the limits of a class file cause an {@link IllegalStateException}.
+ */
+public class ClassFileWriter{
+    
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_PRIVATE = 0x0002;
+    public static final int ACC_FINAL = 0x0010;
+    public static final int ACC_SUPER = 0x0020;
+    
+    public static final int ICONST_0 = 0x03;
+    public static final int ICONST_1 = 0x04;
+    public static final int AALOAD = 0x32;
+    public static final int POP = 0x57;
+    public static final int POP2 = 0x58;
+    public static final int DUP = 0x59;
+    public static final int DUP_X1 = 0x5A;
+    public static final int DUP_X2 = 0x5B;
+    public static final int DUP2 = 0x5C;
+    public static final int DUP2_X2 = 0x5E;
+    public static final int SWAP = 0x5F;
+    public static final int DADD = 0x63;
+    public static final int ISUB = 0x64;
+    public static final int DSUB = 0x67;
+    public static final int DMUL = 0x6B;
+    public static final int DDIV = 0x6F;
+    public static final int INEG = 0x74;
+    public static final int DNEG = 0x77;
+    public static final int IUSHR = 0x7C;
+    public static final int IAND = 0x7E;
+    public static final int IXOR = 0x82;
+    public static final int I2D = 0x87;
+    public static final int DCMPL = 0x97;
+    public static final int DCMPG = 0x98;
+    public static final int IFEQ = 0x99;
+    public static final int IFNE = 0x9A;
+    public static final int GOTO = 0xA7;
+    public static final int IRETURN = 0xAC;
+    public static final int DRETURN = 0xAF;
+    public static final int ARETURN = 0xB0;
+    public static final int RETURN = 0xB1;
+    
+    private static final int DCONST_0 = 0x0E;
+    private static final int DCONST_1 = 0x0F;
+    private static final int BIPUSH = 0x10;
+    private static final int SIPUSH = 0x11;
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int ALOAD = 0x19;
+    private static final int GETSTATIC = 0xB2;
+    private static final int GETFIELD = 0xB4;
+    private static final int PUTFIELD = 0xB5;
+    private static final int INVOKEVIRTUAL = 0xB6;
+    private static final int INVOKESPECIAL = 0xB7;
+    private static final int INVOKESTATIC = 0xB8;
+    private static final int INVOKEINTERFACE = 0xB9;
+    private static final int NEW = 0xBB;
+    private static final int CHECKCAST = 0xC0;
+    
+    // Java 17
+    private static final int VERSION = 61;
+    // Branch offsets are signed 16-bit values, so larger methods could not jump from start to end.
+    private static final int MAX_CODE_LENGTH = Short.MAX_VALUE;
+    private static final int MAX_UTF_LENGTH = 0xFFFF;
+    
+    private static final String INTEGER = "I";
+    private static final String DOUBLE = "D";
+    
+    private final String name;
+    private final Bytes constantPool = new Bytes();
+    private final Map<String, Integer> constants = new HashMap<>();
+    private int constantCount = 1;
+    
+    private final int thisClass;
+    private final int superClass;
+    private final int[] interfaces;
+    private final List<Bytes> fields = new ArrayList<>();
+    private final List<Code> methods = new ArrayList<>();
+    
+    /**
+     * Creates a new writer for a public final class.
+     * 
+     * @param  name
+     *         Internal name of the class, such as {@code java/lang/Object}.
+     * @param  superName
+     *         Internal name of the super class.
+     * @param  interfaceNames
+     *         Internal names of the interfaces the class implements.
+     */
+    public ClassFileWriter(String name, String superName, String... interfaceNames){
+        CheckUtil.notNull(name, ClassFileWriter.class, "Name");
+        CheckUtil.notNull(superName, ClassFileWriter.class, "SuperName");
+        
+        this.name = name;
+        this.thisClass = classConstant(name);
+        this.superClass = classConstant(superName);
+        this.interfaces = Arrays.stream(interfaceNames).mapToInt(this::classConstant).toArray();
+    }
+    
+    /**
+     * Returns whether the provided String can be stored in the constant pool of a class file.
+     * 
+     * @param  value
+     *         The String to check.
+     * 
+     * @return true if the String is short enough to be stored as constant, else false.
+     */
+    public static boolean isConstant(String value){
+        return utfLength(value) <= MAX_UTF_LENGTH;
+    }
+    
+    /**
+     * Adds a field to the class.
+     * 
+     * @param access
+     *        Access flags of the field.
+     * @param name
+     *        Name of the field.
+     * @param descriptor
+     *        Type descriptor of the field, such as {@code Ljava/lang/String;}.
+     */
+    public void addField(int access, String name, String descriptor){
+        Bytes field = new Bytes();
+        field.put2(access);
+        field.put2(utf8Constant(name));
+        field.put2(utf8Constant(descriptor));
+        field.put2(0);
+        
+        fields.add(field);
+    }
+    
+    /**
+     * Adds a non-static method to the class and returns the {@link Code} to write its instructions to.
+     * 
+     * @param  access
+     *         Access flags of the method.
+     * @param  name
+     *         Name of the method.
+     * @param  descriptor
+     *         Method descriptor, such as {@code (Ljava/lang/String;)V}.
+     * 
+     * @return Code of the new method.
+     */
+    public Code addMethod(int access, String name, String descriptor){
+        List<String> locals = new ArrayList<>();
+        locals.add(this.name);
+        locals.addAll(parameterTypes(descriptor));
+        
+        Code code = new Code(access, utf8Constant(name), utf8Constant(descriptor), locals);
+        methods.add(code);
+        return code;
+    }
+    
+    /**
+     * Returns the class file containing all fields and methods added so far.
+     * 
+     * @return The bytes of the class file.
+     */
+    public byte[] toByteArray(){
+        // Methods add their attribute names and frame types to the constant pool, so they are written first.
+        Bytes body = new Bytes();
+        body.put2(fields.size());
+        fields.forEach(body::putAll);
+        body.put2(methods.size());
+        methods.forEach(method -> method.writeTo(body));
+        body.put2(0);
+        
+        Bytes result = new Bytes();
+        result.put4(0xCAFEBABE);
+        result.put2(0);
+        result.put2(VERSION);
+        result.put2(constantCount);
+        result.putAll(constantPool);
+        result.put2(ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+        result.put2(thisClass);
+        result.put2(superClass);
+        result.put2(interfaces.length);
+        for(int index : interfaces){
+            result.put2(index);
+        }
+        result.putAll(body);
+        
+        return result.toByteArray();
+    }
+    
+    private int utf8Constant(String value){
+        Integer index = constants.get("U" + value);
+        if(index != null)
+            return index;
+        
+        if(!isConstant(value))
+            throw new IllegalStateException("[ClassFileWriter] Constant of " + utfLength(value) + " bytes exceeds the class file limit.");
+        
+        constantPool.put1(1);
+        constantPool.putUtf(value);
+        return register("U" + value, 1);
+    }
+    
+    private int classConstant(String name){
+        return constant("C" + name, 7, utf8Constant(name));
+    }
+    
+    private int stringConstant(String value){
+        return constant("S" + value, 8, utf8Constant(value));
+    }
+    
+    private int integerConstant(int value){
+        Integer index = constants.get("I" + value);
+        if(index != null)
+            return index;
+        
+        constantPool.put1(3);
+        constantPool.put4(value);
+        return register("I" + value, 1);
+    }
+    
+    private int doubleConstant(double value){
+        long bits = Double.doubleToRawLongBits(value);
+        Integer index = constants.get("D" + bits);
+        if(index != null)
+            return index;
+        
+        constantPool.put1(6);
+        constantPool.put4((int)(bits >>> 32));
+        constantPool.put4((int)bits);
+        // Doubles take up two entries in the constant pool.
+        return register("D" + bits, 2);
+    }
+    
+    private int memberConstant(int tag, String owner, String name, String descriptor){
+        int ownerIndex = classConstant(owner);
+        int nameAndType = constant("N" + name + ' ' + descriptor, 12, utf8Constant(name), utf8Constant(descriptor));
+        
+        return constant("M" + tag + owner + '.' + name + ' ' + descriptor, tag, ownerIndex, nameAndType);
+    }
+    
+    private int constant(String key, int tag, int... references){
+        Integer index = constants.get(key);
+        if(index != null)
+            return index;
+        
+        constantPool.put1(tag);
+        for(int reference : references){
+            constantPool.put2(reference);
+        }
+        return register(key, 1);
+    }
+    
+    private int register(String key, int size){
+        int index = constantCount;
+        constantCount += size;
+        if(constantCount > 0xFFFF)
+            throw new IllegalStateException("[ClassFileWriter] Constant pool exceeds the class file limit.");
+        
+        constants.put(key, index);
+        return index;
+    }
+    
+    private static int utfLength(String value){
+        int length = 0;
+        for(int i = 0; i < value.length(); i++){
+            char c = value.charAt(i);
+            if(c >= 0x01 && c <= 0x7F){
+                length++;
+            }else
+            if(c <= 0x7FF){
+                length += 2;
+            }else{
+                length += 3;
+            }
+        }
+        
+        return length;
+    }
+    
+    private static List<String> parameterTypes(String descriptor){
+        List<String> types = new ArrayList<>();
+        int index = 1;
+        while(descriptor.charAt(index) != ')'){
+            int end = typeEnd(descriptor, index);
+            types.add(verificationType(descriptor.substring(index, end)));
+            index = end;
+        }
+        
+        return types;
+    }
+    
+    private static String returnType(String descriptor){
+        return verificationType(descriptor.substring(descriptor.indexOf(')') + 1));
+    }
+    
+    private static int typeEnd(String descriptor, int index){
+        while(descriptor.charAt(index) == '[')
+            index++;
+        
+        return descriptor.charAt(index) == 'L' ? descriptor.indexOf(';', index) + 1 : index + 1;
+    }
+    
+    // Turns a type descriptor into the type tracked on the stack: I, D or the internal name of a class.
+    private static String verificationType(String descriptor){
+        return switch(descriptor.charAt(0)){
+            case 'Z', 'B', 'C', 'S', 'I' -> INTEGER;
+            case 'D' -> DOUBLE;
+            case 'V' -> null;
+            case 'L' -> descriptor.substring(1, descriptor.length() - 1);
+            case '[' -> descriptor;
+            default -> throw new IllegalArgumentException("[ClassFileWriter] Unsupported type " + descriptor);
+        };
+    }
+    
+    private static int size(String type){
+        return DOUBLE.equals(type) ? 2 : 1;
+    }
+    
+    /**
+     * Position in the code of a method that can be jumped to.
+     */
+    public static final class Label{
+        
+        private int position = -1;
+        private List<String> stack;
+        private final List<int[]> jumps = new ArrayList<>();
+    }
+    
+    /**
+     * Code of a method added through {@link #addMethod(int, String, String)}.
+     * <br>Every method pushes and pops the types of the values it works with, so that instructions have to be added
+     * in an order the verifier would accept.
+     */
+    public final class Code{
+        
+        private final int access;
+        private final int name;
+        private final int descriptor;
+        private final List<String> locals;
+        private final int maxLocals;
+        
+        private final Bytes code = new Bytes();
+        private final List<String> stack = new ArrayList<>();
+        private final Map<Integer, List<String>> frames = new TreeMap<>();
+        private final List<Label> labels = new ArrayList<>();
+        private int stackSize = 0;
+        private int maxStack = 0;
+        private boolean reachable = true;
+        
+        private Code(int access, int name, int descriptor, List<String> locals){
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.locals = locals;
+            this.maxLocals = locals.stream().mapToInt(ClassFileWriter::size).sum();
+        }
+        
+        /**
+         * Adds an instruction without any operands.
+         * 
+         * @param  opcode
+         *         One of the opcode constants of {@link ClassFileWriter}.
+         * 
+         * @return This Code instance. Useful for chaining.
+         */
+        public Code insn(int opcode){
+            switch(opcode){
+                case ICONST_0, ICONST_1 -> pushType(INTEGER);
+                case INEG -> pushType(popType(INTEGER));
+                case I2D -> {
+                    popType(INTEGER);
+                    pushType(DOUBLE);
+                }
+                case ISUB, IUSHR, IAND, IXOR -> {
+                    popType(INTEGER);
+                    popType(INTEGER);
+                    pushType(INTEGER);
+                }
+                case DADD, DSUB, DMUL, DDIV -> {
+                    popType(DOUBLE);
+                    popType(DOUBLE);
+                    pushType(DOUBLE);
+                }
+                case DNEG -> pushType(popType(DOUBLE));
+                case DCMPL, DCMPG -> {
+                    popType(DOUBLE);
+                    popType(DOUBLE);
+                    pushType(INTEGER);
+                }
+                case AALOAD -> {
+                    popType(INTEGER);
+                    String array = popType(null);
+                    pushType(verificationType(array.substring(1)));
+                }
+                case POP -> popType(null);
+                case POP2 -> {
+                    if(size(popType(null)) == 1)
+                        popType(null);
+                }
+                case DUP -> pushType(peekType());
+                case DUP_X1 -> {
+                    String first = popType(null);
+                    String second = popType(null);
+                    pushType(first);
+                    pushType(second);
+                    pushType(first);
+                }
+                case SWAP -> {
+                    String first = popType(null);
+                    String second = popType(null);
+                    pushType(first);
+                    pushType(second);
+                }
+                case DUP_X2 -> {
+                    String first = popType(null);
+                    String second = popType(null);
+                    if(size(second) == 2){
+                        pushType(first);
+                        pushType(second);
+                    }else{
+                        String third = popType(null);
+                        pushType(first);
+                        pushType(third);
+                        pushType(second);
+                    }
+                    pushType(first);
+                }
+                case DUP2 -> {
+                    String first = popType(null);
+                    if(size(first) == 2){
+                        pushType(first);
+                    }else{
+                        String second = popType(null);
+                        pushType(second);
+                        pushType(first);
+                        pushType(second);
+                    }
+                    pushType(first);
+                }
+                case DUP2_X2 -> {
+                    // Only the forms duplicating a single long or double are used.
+                    String first = popType(null);
+                    if(size(first) != 2)
+                        throw new IllegalArgumentException("[ClassFileWriter] Unsupported form of DUP2_X2.");
+                    
+                    String second = popType(null);
+                    if(size(second) == 2){
+                        pushType(first);
+                        pushType(second);
+                    }else{
+                        String third = popType(null);
+                        pushType(first);
+                        pushType(third);
+                        pushType(second);
+                    }
+                    pushType(first);
+                }
+                case IRETURN -> returnValue(INTEGER);
+                case DRETURN -> returnValue(DOUBLE);
+                case ARETURN -> returnValue(null);
+                case RETURN -> reachable = false;
+                default -> throw new IllegalArgumentException("[ClassFileWriter] Unsupported opcode " + opcode);
+            }
+            
+            code.put1(opcode);
+            return this;
+        }
+        
+        /**
+         * Pushes the provided int onto the stack.
+         * 
+         * @param  value
+         *         The int to push.
+         * 
+         * @return This Code instance. Useful for chaining.
+         */
+        public Code push(int value){
+            if(value >= -1 && value <= 5){
+                code.put1(ICONST_0 + value);
+            }else
+            if(value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE){
+                code.put1(BIPUSH);
+                code.put1(value);
+            }else
+            if(value >= Short.MIN_VALUE && value <= Short.MAX_VALUE){
+                code.put1(SIPUSH);
+                code.put2(value);
+            }else{
+                loadConstant(integerConstant(value));
+            }
+            
+            pushType(INTEGER);
+            return this;
+        }
+        
+        /**
+         * Pushes the provided double onto the stack.
+         * 
+         * @param  value
+         *         The double to push.
+         * 
+         * @return This Code instance. Useful for chaining.
+         */
+        public Code push(double value){
+            long bits = Double.doubleToRawLongBits(value);
+            if(bits == 0L){
+                code.put1(DCONST_0);
+            }else
+            if(bits == Double.doubleToRawLongBits(1.0)){
+                code.put1(DCONST_1);
+            }else{
+                code.put1(LDC2_W);
+                code.put2(doubleConstant(value));
+            }
+            
+            pushType(DOUBLE);
+            return this;
+        }
+        
+        /**
+         * Pushes the provided String onto the stack.
+         * 
+         * @param  value
+         *         The String to push. Must be short enough for {@link ClassFileWriter#isConstant(String)}.
+         * 
+         * @return This Code instance. Useful for chaining.
+         */
+        public Code push(String value){
+            loadConstant(stringConstant(value));
+            pushType("java/lang/String");
+            return this;
+        }
+        
+        /**
+         * Pushes the value of the provided local variable, which must hold a reference, onto the stack.
+         * <br>Local variable 0 holds {@code this}, followed by the parameters of the method.
+         * 
+         * @param  index
+         *         The index of the local variable.
+         * 
+         * @return This Code instance. Useful for chaining.
+         */
+        public Code load(int index){
+            if(index <= 3){
+                code.put1(0x2A + index);
+            }else{
+                code.put1(ALOAD);
+                code.put1(index);
+            }
+            
+            pushType(locals.get(index));
+            return this;
+        }
+        
+        /**
+         * Creates a new instance of the provided class through its constructor without parameters and pushes it onto
+         * the stack.
+         * 
+         * @param  type
+         *         Internal name of the class to create.
+         * 
+         * @return This Code instance. Useful for chaining.
+         */
+        public Code newInstance(String type){
+            code.put1(NEW);
+            code.put2(classConstant(type));
+            code.put1(DUP);
+            code.put1(INVOKESPECIAL);
+            code.put2(memberConstant(10, type, "<init>", "()V"));
+            
+            // Both copies are on the stack for a moment, but no frame can be placed between these instructions.
+            pushType(type);
+            pushType(type);
+            popType(type);
+            return this;
+        }
+        
+        /**
+         * Casts the reference on top of the stack to the provided class.
+         * 
+         * @param  type
+         *         Internal name of the class to cast to.
+         * 
+         * @return This Code instance. Useful for chaining.
+         */
+        public Code checkCast(String type){
+            popType(null);
+            code.put1(CHECKCAST);
+            code.put2(classConstant(type));
+            
+            pushType(type);
+            return this;
+        }
+        
+        /**
+         * Reads a static field.
+         * 
+         * @param  owner
+         *         Internal name of the class declaring the field.
+         * @param  name
+         *         Name of the field.
+         * @param  descriptor
+         *         Type descriptor of the field.
+         * 
+         * @return This Code instance. Useful for chaining.
+         */
+        public Code getStatic(String owner, String name, String descriptor){
+            code.put1(GETSTATIC);
+            code.put2(memberConstant(9, owner, name, descriptor));
+            
+            pushType(verificationType(descriptor));
+            return this;
+        }
+        
+        /**
+         * Reads a field of the object on top of the stack.
+         * 
+         * @param  owner
+         *         Internal name of the class declaring the field.
+         * @param  name
+         *         Name of the field.
+         * @param  descriptor
+         *         Type descriptor of the field.
+         * 
+         * @return This Code instance. Useful for chaining.
+         */
+        public Code getField(String owner, String name, String descriptor){
+            popType(null);
+            code.put1(GETFIELD);
+            code.put2(memberConstant(9, owner, name, descriptor));
+            
+            pushType(verificationType(descriptor));
+            return this;
+        }
+        
+        /**
+         * Writes the value on top of the stack into a field of the object below it.
+         * 
+         * @param  owner
+         *         Internal name of the class declaring the field.
+         * @param  name
+         *         Name of the field.
+         * @param  descriptor
+         *         Type descriptor of the field.
+         * 
+         * @return This Code instance. Useful for chaining.
+         */
+        public Code putField(String owner, String name, String descriptor){
+            popType(verificationType(descriptor));
+            popType(null);
+            code.put1(PUTFIELD);
+            code.put2(memberConstant(9, owner, name, descriptor));
+            
+            return this;
+        }
+        
+        /**
+         * Calls a static method.
+         * 
+         * @param  owner
+         *         Internal name of the class declaring the method.
+         * @param  name
+         *         Name of the method.
+         * @param  descriptor
+         *         Method descriptor.
+         * 
+         * @return This Code instance. Useful for chaining.
+         */
+        public Code invokeStatic(String owner, String name, String descriptor){
+            return invoke(INVOKESTATIC, memberConstant(10, owner, name, descriptor), descriptor, false);
+        }
+        
+        /**
+         * Calls a method of a class on the object below the arguments on the stack.
+         * 
+         * @param  owner
+         *         Internal name of the class declaring the method.
+         * @param  name
+         *         Name of the method.
+         * @param  descriptor
+         *         Method descriptor.
+         * 
+         * @return This Code instance. Useful for chaining.
+         */
+        public Code invokeVirtual(String owner, String name, String descriptor){
+            return invoke(INVOKEVIRTUAL, memberConstant(10, owner, name, descriptor), descriptor, true);
+        }
+        
+        /**
+         * Calls a constructor or private method on the object below the arguments on the stack, without any dynamic
+         * dispatch.
+         * 
+         * @param  owner
+         *         Internal name of the class declaring the method.
+         * @param  name
+         *         Name of the method.
+         * @param  descriptor
+         *         Method descriptor.
+         * 
+         * @return This Code instance. Useful for chaining.
+         */
+        public Code invokeSpecial(String owner, String name, String descriptor){
+            return invoke(INVOKESPECIAL, memberConstant(10, owner, name, descriptor), descriptor, true);
+        }
+        
+        /**
+         * Calls a method of an interface on the object below the arguments on the stack.
+         * 
+         * @param  owner
+         *         Internal name of the interface declaring the method.
+         * @param  name
+         *         Name of the method.
+         * @param  descriptor
+         *         Method descriptor.
+         * 
+         * @return This Code instance. Useful for chaining.
+         */
+        public Code invokeInterface(String owner, String name, String descriptor){
+            int slots = parameterTypes(descriptor).stream().mapToInt(ClassFileWriter::size).sum();
+            invoke(INVOKEINTERFACE, memberConstant(11, owner, name, descriptor), descriptor, true);
+            code.put1(slots + 1);
+            code.put1(0);
+            return this;
+        }
+        
+        /**
+         * Jumps to the provided {@link Label}, either unconditionally for {@link #GOTO}, or depending on the int on
+         * top of the stack for {@link #IFEQ} and {@link #IFNE}.
+         * 
+         * @param  opcode
+         *         The jump instruction to use.
+         * @param  label
+         *         The Label to jump to.
+         * 
+         * @return This Code instance. Useful for chaining.
+         */
+        public Code jump(int opcode, Label label){
+            if(opcode == IFEQ || opcode == IFNE){
+                popType(INTEGER);
+            }else
+            if(opcode != GOTO){
+                throw new IllegalArgumentException("[ClassFileWriter] Unsupported jump opcode " + opcode);
+            }
+            
+            mergeStack(label);
+            label.jumps.add(new int[]{code.length(), code.length() + 1});
+            if(!labels.contains(label))
+                labels.add(label);
+            
+            code.put1(opcode);
+            code.put2(0);
+            
+            if(opcode == GOTO)
+                reachable = false;
+            
+            return this;
+        }
+        
+        /**
+         * Places the provided {@link Label} at the current position.
+         * 
+         * @param  label
+         *         The Label to place.
+         * 
+         * @return This Code instance. Useful for chaining.
+         */
+        public Code mark(Label label){
+            if(reachable){
+                mergeStack(label);
+            }else{
+                stack.clear();
+                stack.addAll(label.stack);
+                stackSize = stack.stream().mapToInt(ClassFileWriter::size).sum();
+                reachable = true;
+            }
+            
+            label.position = code.length();
+            frames.put(label.position, List.copyOf(stack));
+            return this;
+        }
+        
+        private Code invoke(int opcode, int method, String descriptor, boolean hasReceiver){
+            List<String> parameters = parameterTypes(descriptor);
+            for(int i = parameters.size() - 1; i >= 0; i--){
+                popType(parameters.get(i).length() == 1 ? parameters.get(i) : null);
+            }
+            if(hasReceiver)
+                popType(null);
+            
+            String result = returnType(descriptor);
+            if(result != null)
+                pushType(result);
+            
+            code.put1(opcode);
+            code.put2(method);
+            return this;
+        }
+        
+        private void loadConstant(int index){
+            if(index <= 0xFF){
+                code.put1(LDC);
+                code.put1(index);
+            }else{
+                code.put1(LDC_W);
+                code.put2(index);
+            }
+        }
+        
+        private void returnValue(String type){
+            popType(type);
+            reachable = false;
+        }
+        
+        private void mergeStack(Label label){
+            if(label.stack == null){
+                label.stack = List.copyOf(stack);
+            }else
+            if(!label.stack.equals(stack)){
+                throw new IllegalStateException("[ClassFileWriter] Stack " + stack + " does not match " + label.stack + " at jump target.");
+            }
+        }
+        
+        private void pushType(String type){
+            stack.add(type);
+            stackSize += size(type);
+            maxStack = Math.max(maxStack, stackSize);
+        }
+        
+        private String popType(String expected){
+            if(stack.isEmpty())
+                throw new IllegalStateException("[ClassFileWriter] Stack underflow.");
+            
+            String type = stack.remove(stack.size() - 1);
+            if(expected != null && !expected.equals(type))
+                throw new IllegalStateException("[ClassFileWriter] Expected " + expected + " on the stack but got " + type + ".");
+            
+            stackSize -= size(type);
+            return type;
+        }
+        
+        private String peekType(){
+            return stack.get(stack.size() - 1);
+        }
+        
+        private void writeTo(Bytes target){
+            if(code.length() > MAX_CODE_LENGTH)
+                throw new IllegalStateException("[ClassFileWriter] Code of " + code.length() + " bytes exceeds the class file limit.");
+            
+            for(Label label : labels){
+                for(int[] jump : label.jumps){
+                    code.set2(jump[1], label.position - jump[0]);
+                }
+            }
+            
+            Bytes stackMap = new Bytes();
+            int previous = -1;
+            for(Map.Entry<Integer, List<String>> frame : frames.entrySet()){
+                // Full frames are always valid, as locals never change after the parameters are set.
+                stackMap.put1(255);
+                stackMap.put2(frame.getKey() - previous - 1);
+                writeTypes(stackMap, locals);
+                writeTypes(stackMap, frame.getValue());
+                previous = frame.getKey();
+            }
+            
+            int codeName = utf8Constant("Code");
+            int stackMapName = frames.isEmpty() ? 0 : utf8Constant("StackMapTable");
+            
+            Bytes attribute = new Bytes();
+            attribute.put2(maxStack);
+            attribute.put2(maxLocals);
+            attribute.put4(code.length());
+            attribute.putAll(code);
+            attribute.put2(0);
+            if(frames.isEmpty()){
+                attribute.put2(0);
+            }else{
+                attribute.put2(1);
+                attribute.put2(stackMapName);
+                attribute.put4(2 + stackMap.length());
+                attribute.put2(frames.size());
+                attribute.putAll(stackMap);
+            }
+            
+            target.put2(access);
+            target.put2(name);
+            target.put2(descriptor);
+            target.put2(1);
+            target.put2(codeName);
+            target.put4(attribute.length());
+            target.putAll(attribute);
+        }
+        
+        private void writeTypes(Bytes target, List<String> types){
+            target.put2(types.size());
+            for(String type : types){
+                if(INTEGER.equals(type)){
+                    target.put1(1);
+                }else
+                if(DOUBLE.equals(type)){
+                    target.put1(3);
+                }else{
+                    target.put1(7);
+                    target.put2(classConstant(type));
+                }
+            }
+        }
+    }
+    
+    // Growable byte array writing values in big-endian order, as class files use.
+    private static final class Bytes{
+        
+        private byte[] data = new byte[64];
+        private int length = 0;
+        
+        void put1(int value){
+            ensureCapacity(1);
+            data[length++] = (byte)value;
+        }
+        
+        void put2(int value){
+            ensureCapacity(2);
+            data[length++] = (byte)(value >>> 8);
+            data[length++] = (byte)value;
+        }
+        
+        void put4(int value){
+            put2(value >>> 16);
+            put2(value);
+        }
+        
+        void set2(int index, int value){
+            data[index] = (byte)(value >>> 8);
+            data[index + 1] = (byte)value;
+        }
+        
+        void putAll(Bytes bytes){
+            ensureCapacity(bytes.length);
+            System.arraycopy(bytes.data, 0, data, length, bytes.length);
+            length += bytes.length;
+        }
+        
+        // Modified UTF-8 as used by class files, where the null character takes up two bytes.
+        void putUtf(String value){
+            put2(utfLength(value));
+            for(int i = 0; i < value.length(); i++){
+                char c = value.charAt(i);
+                if(c >= 0x01 && c <= 0x7F){
+                    put1(c);
+                }else
+                if(c <= 0x7FF){
+                    put1(0xC0 | (c >> 6));
+                    put1(0x80 | (c & 0x3F));
+                }else{
+                    put1(0xE0 | (c >> 12));
+                    put1(0x80 | ((c >> 6) & 0x3F));
+                    put1(0x80 | (c & 0x3F));
+                }
+            }
+        }
+        
+        int length(){
+            return length;
+        }
+        
+        byte[] toByteArray(){
+            return Arrays.copyOf(data, length);
+        }
+        
+        private void ensureCapacity(int additional){
+            if(length + additional > data.length)
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + additional));
+        }
+    }
+}
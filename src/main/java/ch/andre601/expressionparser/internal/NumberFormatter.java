@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser.internal;
+
+/**
+ * Converts double values into Strings the same way {@link ch.andre601.expressionparser.Conversions Conversions} does:
+ * Using {@link Integer#toString(int)} for values that can be cast to an integer without loss and
+ * {@link Double#toString(double)} for any other value.
+ * 
+ * <p>Small integers are served from a cache and decimals with only a few digits are written without going through
+ * {@link Double#toString(double)}, while the output stays exactly the same.
+ */
+public class NumberFormatter{
+    
+    private static final int CACHE_LOW = -128;
+    private static final int CACHE_HIGH = 1023;
+    private static final String[] CACHE = new String[CACHE_HIGH - CACHE_LOW + 1];
+    
+    // Double.toString only uses plain notation for values within this range.
+    private static final double PLAIN_LOW = 1e-3;
+    private static final double PLAIN_HIGH = 1e7;
+    // Largest value below which every integer is exactly representable as double.
+    private static final double EXACT_HIGH = 1L << 53;
+    
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    
+    static {
+        for(int i = CACHE_LOW; i <= CACHE_HIGH; i++){
+            CACHE[i - CACHE_LOW] = Integer.toString(i);
+        }
+    }
+    
+    private NumberFormatter(){}
+    
+    /**
+     * Converts the provided double into a String.
+     * <br>The result is the same as {@code value == (int)value ? Integer.toString((int)value) : Double.toString(value)}.
+     * 
+     * @param  value
+     *         The double to convert.
+     * 
+     * @return String representation of the provided double.
+     */
+    public static String toString(double value){
+        int intValue = (int)value;
+        if(value == intValue){
+            if(intValue >= CACHE_LOW && intValue <= CACHE_HIGH)
+                return CACHE[intValue - CACHE_LOW];
+            
+            return Integer.toString(intValue);
+        }
+        
+        return appendDecimal(new StringBuilder(24), value).toString();
+    }
+    
+    /**
+     * Appends the String representation of the provided double to the provided StringBuilder.
+     * <br>What is appended is the same as what {@link #toString(double)} returns, but without creating a String in
+     * between.
+     * 
+     * @param  builder
+     *         The StringBuilder to append to.
+     * @param  value
+     *         The double to append.
+     * 
+     * @return The provided StringBuilder.
+     */
+    public static StringBuilder appendTo(StringBuilder builder, double value){
+        int intValue = (int)value;
+        if(value == intValue)
+            return builder.append(intValue);
+        
+        return appendDecimal(builder, value);
+    }
+    
+    /**
+     * Returns whether {@link #toString(double)} returns the same String for both provided doubles, without creating
+     * either String.
+     * <br>This is the case for equal values, including {@code 0.0} and {@code -0.0}, which are both written as
+     * {@code 0}, as well as for two NaN values, which are both written as {@code NaN} despite not being equal.
+     * 
+     * @param  a
+     *         The first double to compare.
+     * @param  b
+     *         The second double to compare.
+     * 
+     * @return true if both doubles are converted into the same String, else false.
+     */
+    public static boolean isSameString(double a, double b){
+        // Any other two values differ in their Strings, as Double.toString prints enough digits to tell apart
+        // every double.
+        return a == b || (a != a && b != b);
+    }
+    
+    private static StringBuilder appendDecimal(StringBuilder builder, double value){
+        double abs = Math.abs(value);
+        if(abs >= PLAIN_LOW && abs < PLAIN_HIGH){
+            // Find the fewest fraction digits that still parse back to the same double, which is what
+            // Double.toString prints in plain notation.
+            for(int scale = 1; scale < POWERS_OF_TEN.length; scale++){
+                double scaled = abs * POWERS_OF_TEN[scale];
+                if(scaled >= EXACT_HIGH)
+                    break;
+                
+                long digits = Math.round(scaled);
+                if(digits / POWERS_OF_TEN[scale] != abs)
+                    continue;
+                
+                long unit = (long)POWERS_OF_TEN[scale];
+                long fraction = digits % unit;
+                if(value < 0)
+                    builder.append('-');
+                
+                builder.append(digits / unit).append('.');
+                for(long i = unit / 10; i > fraction; i /= 10){
+                    builder.append('0');
+                }
+                
+                return builder.append(fraction);
+            }
+        }
+        
+        return builder.append(value);
+    }
+}
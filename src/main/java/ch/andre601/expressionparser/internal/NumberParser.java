@@ -0,0 +1,415 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser.internal;
+
+import java.text.NumberFormat;
+import java.text.ParsePosition;
+import java.util.Locale;
+
+/**
+ * Stateless replacement for parsing numbers through a {@link NumberFormat#getNumberInstance(Locale) NumberFormat}
+ * of {@link Locale#ROOT}.
+ * <br>The accepted text, the resulting position and the resulting value are the same as those of the NumberFormat,
+ * but unlike it, this class is safe to use from multiple threads at once.
+ * 
+ * <p>Numbers with up to 15 significant digits and a decimal exponent of at most 22 are converted without allocating
+ * any objects. Any other number is handed to {@link Double#parseDouble(String)} in the same way the NumberFormat does.
+ */
+public class NumberParser{
+    
+    private static final String NAN = "NaN";
+    private static final char INFINITY = '\u221E';
+    private static final char MINUS = '-';
+    private static final char DECIMAL_SEPARATOR = '.';
+    private static final char GROUPING_SEPARATOR = ',';
+    private static final char EXPONENT_SEPARATOR = 'E';
+    
+    // Numbers with at most this many significant digits fit into a double without rounding.
+    private static final int MAX_EXACT_DIGITS = 15;
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    private static final long[] LONG_POWERS_OF_TEN = {
+        1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L, 10_000_000L, 100_000_000L, 1_000_000_000L,
+        10_000_000_000L, 100_000_000_000L, 1_000_000_000_000L, 10_000_000_000_000L, 100_000_000_000_000L,
+        1_000_000_000_000_000L
+    };
+    
+    private NumberParser(){}
+    
+    /**
+     * Parses a number from the provided text, starting at the index of the provided {@link ParsePosition}.
+     * <br>This behaves like {@link NumberFormat#parse(String, ParsePosition)}: On success, the position is set to the
+     * index after the parsed number. Otherwise it is left unchanged.
+     * 
+     * @param  text
+     *         The text to parse a number from.
+     * @param  position
+     *         The position to start parsing at.
+     * @param  groupingUsed
+     *         Whether grouping separators ({@code ,}) between digits should be skipped.
+     * 
+     * @return The parsed number, or {@link Double#NaN} if no number could be parsed.
+     */
+    public static double parse(String text, ParsePosition position, boolean groupingUsed){
+        return parse(text, position.getIndex(), groupingUsed, position, Double.NaN);
+    }
+    
+    /**
+     * Parses a number from the start of the provided text, returning the provided fallback if none could be parsed.
+     * <br>Like {@link NumberFormat#parse(String)}, only the start of the text has to be a number, meaning {@code 12abc}
+     * returns {@code 12}.
+     * 
+     * @param  text
+     *         The text to parse a number from.
+     * @param  groupingUsed
+     *         Whether grouping separators ({@code ,}) between digits should be skipped.
+     * @param  fallback
+     *         The value to return if the text does not start with a number.
+     * 
+     * @return The parsed number, or the fallback.
+     */
+    public static double parseOrDefault(String text, boolean groupingUsed, double fallback){
+        return parse(text, 0, groupingUsed, null, fallback);
+    }
+    
+    /**
+     * Parses the provided text the same way {@link Double#parseDouble(String)} does, returning the provided fallback
+     * instead of throwing a {@link NumberFormatException} should the text not be a valid number.
+     * <br>Unlike the other methods of this class does this require the whole text, apart from leading and trailing
+     * whitespace, to be a number.
+     * 
+     * @param  text
+     *         The text to parse a number from.
+     * @param  fallback
+     *         The value to return if the text is not a valid number.
+     * 
+     * @return The parsed number, or the fallback.
+     */
+    public static double parseDoubleOrDefault(String text, double fallback){
+        return isDouble(text) ? Double.parseDouble(text) : fallback;
+    }
+    
+    /*
+     * Mirrors the grammar accepted by FloatingDecimal.readJavaFormatString, so that Double.parseDouble is only called
+     * on text it will not reject.
+     */
+    private static boolean isDouble(String text){
+        int start = 0;
+        int end = text.length();
+        while(start < end && text.charAt(start) <= ' ')
+            start++;
+        
+        while(end > start && text.charAt(end - 1) <= ' ')
+            end--;
+        
+        int index = start;
+        if(index < end && (text.charAt(index) == '-' || text.charAt(index) == '+'))
+            index++;
+        
+        if(index >= end)
+            return false;
+        
+        char c = text.charAt(index);
+        if(c == 'N')
+            return end - index == 3 && text.startsWith(NAN, index);
+        
+        if(c == 'I')
+            return end - index == 8 && text.startsWith("Infinity", index);
+        
+        if(c == '0' && index + 1 < end && (text.charAt(index + 1) == 'x' || text.charAt(index + 1) == 'X'))
+            return isHexDouble(text, index + 2, end);
+        
+        int digits = 0;
+        boolean sawDecimal = false;
+        for(; index < end; index++){
+            c = text.charAt(index);
+            if(c >= '0' && c <= '9'){
+                digits++;
+            }else
+            if(c == '.' && !sawDecimal){
+                sawDecimal = true;
+            }else{
+                break;
+            }
+        }
+        
+        if(digits == 0)
+            return false;
+        
+        if(index < end && (text.charAt(index) == 'e' || text.charAt(index) == 'E')){
+            index = skipExponent(text, index + 1, end);
+            if(index < 0)
+                return false;
+        }
+        
+        return isEndOrTypeSuffix(text, index, end);
+    }
+    
+    private static boolean isHexDouble(String text, int index, int end){
+        int digits = 0;
+        boolean sawDecimal = false;
+        for(; index < end; index++){
+            char c = text.charAt(index);
+            if(c < 128 && Character.digit(c, 16) >= 0){
+                digits++;
+            }else
+            if(c == '.' && !sawDecimal){
+                sawDecimal = true;
+            }else{
+                break;
+            }
+        }
+        
+        if(digits == 0)
+            return false;
+        
+        if(index >= end || (text.charAt(index) != 'p' && text.charAt(index) != 'P'))
+            return false;
+        
+        index = skipExponent(text, index + 1, end);
+        return index >= 0 && isEndOrTypeSuffix(text, index, end);
+    }
+    
+    // Returns the index after an optionally signed run of ASCII digits, or -1 if there are no digits.
+    private static int skipExponent(String text, int index, int end){
+        if(index < end && (text.charAt(index) == '-' || text.charAt(index) == '+'))
+            index++;
+        
+        int start = index;
+        while(index < end && text.charAt(index) >= '0' && text.charAt(index) <= '9')
+            index++;
+        
+        return index == start ? -1 : index;
+    }
+    
+    private static boolean isEndOrTypeSuffix(String text, int index, int end){
+        if(index == end)
+            return true;
+        
+        char c = text.charAt(index);
+        return index == end - 1 && (c == 'f' || c == 'F' || c == 'd' || c == 'D');
+    }
+    
+    /*
+     * Mirrors DecimalFormat.parse and DecimalFormat.subparse for the patterns of Locale.ROOT, which have no affixes
+     * other than the "-" negative prefix. This includes their quirks, such as a trailing grouping separator being
+     * given back while a following exponent is still applied, or the exponent being truncated to an int.
+     */
+    private static double parse(String text, int start, boolean groupingUsed, ParsePosition position, double fallback){
+        int length = text.length();
+        if(text.startsWith(NAN, start)){
+            if(position != null)
+                position.setIndex(start + NAN.length());
+            
+            return Double.NaN;
+        }
+        
+        int index = start;
+        boolean negative = index < length && text.charAt(index) == MINUS;
+        if(negative)
+            index++;
+        
+        if(index < length && text.charAt(index) == INFINITY){
+            if(position != null)
+                position.setIndex(index + 1);
+            
+            return negative ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+        }
+        
+        // Significant digits seen so far, including trailing zeros.
+        int count = 0;
+        // Trailing zeros of the significant digits, which are not part of the significand yet.
+        int trailingZeros = 0;
+        long significand = 0;
+        boolean exact = true;
+        
+        int firstSignificant = -1;
+        int digitsEnd;
+        int digitCount = 0;
+        int decimalAt = 0;
+        int exponent = 0;
+        int backup = -1;
+        boolean sawDecimal = false;
+        boolean sawDigit = false;
+        
+        for(; index < length; index++){
+            char c = text.charAt(index);
+            int digit = digit(c);
+            
+            if(digit == 0){
+                backup = -1;
+                sawDigit = true;
+                
+                if(count == 0){
+                    // Leading zeros only move the decimal point once past it.
+                    if(sawDecimal)
+                        decimalAt--;
+                    
+                    continue;
+                }
+                
+                digitCount++;
+                count++;
+                trailingZeros++;
+            }else
+            if(digit > 0){
+                if(count == 0)
+                    firstSignificant = index;
+                
+                sawDigit = true;
+                digitCount++;
+                count++;
+                backup = -1;
+                
+                if(count <= MAX_EXACT_DIGITS){
+                    significand = significand * LONG_POWERS_OF_TEN[trailingZeros + 1] + digit;
+                }else{
+                    exact = false;
+                }
+                
+                trailingZeros = 0;
+            }else
+            if(c == DECIMAL_SEPARATOR){
+                if(sawDecimal)
+                    break;
+                
+                decimalAt = digitCount;
+                sawDecimal = true;
+            }else
+            if(c == GROUPING_SEPARATOR && groupingUsed){
+                if(sawDecimal)
+                    break;
+                
+                // Only skipped when followed by a digit.
+                backup = index;
+            }else
+            if(c == EXPONENT_SEPARATOR){
+                long parsedExponent = parseExponent(text, index + 1);
+                if(parsedExponent >= 0){
+                    // Upper half holds the end index, lower half the exponent.
+                    exponent = (int)parsedExponent;
+                    digitsEnd = index;
+                    index = (int)(parsedExponent >>> 32);
+                    
+                    return finish(text, start, groupingUsed, position, fallback, backup >= 0 ? backup : index, negative, sawDecimal ? decimalAt : digitCount,
+                        exponent, sawDigit, count, trailingZeros, significand, exact, firstSignificant, digitsEnd);
+                }
+                
+                break;
+            }else{
+                break;
+            }
+        }
+        
+        digitsEnd = index;
+        if(backup >= 0)
+            index = backup;
+        
+        return finish(text, start, groupingUsed, position, fallback, index, negative, sawDecimal ? decimalAt : digitCount,
+            exponent, sawDigit, count, trailingZeros, significand, exact, firstSignificant, digitsEnd);
+    }
+    
+    private static double finish(String text, int start, boolean groupingUsed, ParsePosition position, double fallback, int end, boolean negative,
+                                 int decimalAt, int exponent, boolean sawDigit, int count, int trailingZeros, long significand, boolean exact,
+                                 int firstSignificant, int digitsEnd){
+        if(!sawDigit || end == start)
+            return fallback;
+        
+        if(position != null)
+            position.setIndex(end);
+        
+        decimalAt += exponent;
+        
+        int significantCount = count - trailingZeros;
+        if(significantCount == 0)
+            return negative ? -0.0 : 0.0;
+        
+        // The number is 0.DIGITS * 10^decimalAt, or significand * 10^scale.
+        long scale = (long)decimalAt - significantCount;
+        
+        double value;
+        if(exact && scale >= -22 && scale <= 22){
+            value = scale >= 0 ? significand * POWERS_OF_TEN[(int)scale] : significand / POWERS_OF_TEN[(int)-scale];
+        }else{
+            StringBuilder builder = new StringBuilder(count + 14).append('.');
+            for(int i = firstSignificant; i < digitsEnd; i++){
+                int digit = digit(text.charAt(i));
+                if(digit >= 0)
+                    builder.append((char)('0' + digit));
+            }
+            
+            value = Double.parseDouble(builder.append('E').append(decimalAt).toString());
+        }
+        
+        return negative ? -value : value;
+    }
+    
+    /*
+     * Parses the exponent following the exponent separator. Returns the end index in the upper and the exponent in
+     * the lower 32 bits, or -1 if there is no exponent or it does not fit into a long.
+     */
+    private static long parseExponent(String text, int start){
+        int length = text.length();
+        int index = start;
+        boolean negative = index < length && text.charAt(index) == MINUS;
+        if(negative)
+            index++;
+        
+        long magnitude = 0;
+        int count = 0;
+        boolean sawDigit = false;
+        for(; index < length; index++){
+            int digit = digit(text.charAt(index));
+            if(digit < 0)
+                break;
+            
+            sawDigit = true;
+            if(digit == 0 && count == 0)
+                continue;
+            
+            // Anything above 19 digits does not fit into a long. The magnitude itself is compared unsigned.
+            if(++count <= 19)
+                magnitude = magnitude * 10 + digit;
+        }
+        
+        if(!sawDigit)
+            return -1;
+        
+        if(count > 19 || Long.compareUnsigned(magnitude, negative ? Long.MIN_VALUE : Long.MAX_VALUE) > 0)
+            return -1;
+        
+        // DecimalFormat truncates the long exponent to an int before negating it.
+        int exponent = (int)magnitude;
+        if(negative)
+            exponent = -exponent;
+        
+        return ((long)index << 32) | (exponent & 0xFFFFFFFFL);
+    }
+    
+    private static int digit(char c){
+        int digit = c - '0';
+        if(digit < 0 || digit > 9)
+            digit = Character.digit(c, 10);
+        
+        return digit;
+    }
+}
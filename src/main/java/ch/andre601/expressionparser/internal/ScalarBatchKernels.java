@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser.internal;
+
+/**
+ * {@link BatchKernels} made of plain loops, which the JIT may still unroll or vectorize on its own.
+ */
+class ScalarBatchKernels extends BatchKernels{
+    
+    static final ScalarBatchKernels INSTANCE = new ScalarBatchKernels();
+    
+    ScalarBatchKernels(){}
+    
+    @Override
+    public void add(double[] out, double[] values, int size){
+        for(int i = 0; i < size; i++){
+            out[i] += values[i];
+        }
+    }
+    
+    @Override
+    public void multiply(double[] out, double[] values, int size){
+        for(int i = 0; i < size; i++){
+            out[i] *= values[i];
+        }
+    }
+    
+    @Override
+    public void subtract(double[] out, double[] values, int size){
+        for(int i = 0; i < size; i++){
+            out[i] -= values[i];
+        }
+    }
+    
+    @Override
+    public void divide(double[] out, double[] values, int size){
+        for(int i = 0; i < size; i++){
+            out[i] /= values[i];
+        }
+    }
+    
+    @Override
+    public void negate(double[] out, int size){
+        for(int i = 0; i < size; i++){
+            out[i] = -out[i];
+        }
+    }
+    
+    @Override
+    public void notZero(double[] values, boolean[] out, int size){
+        for(int i = 0; i < size; i++){
+            out[i] = values[i] != 0;
+        }
+    }
+    
+    @Override
+    public void greater(double[] first, double[] second, boolean[] out, int size){
+        for(int i = 0; i < size; i++){
+            out[i] = first[i] > second[i];
+        }
+    }
+    
+    @Override
+    public void greaterOrEqual(double[] first, double[] second, boolean[] out, int size){
+        for(int i = 0; i < size; i++){
+            out[i] = first[i] >= second[i];
+        }
+    }
+    
+    @Override
+    public void less(double[] first, double[] second, boolean[] out, int size){
+        for(int i = 0; i < size; i++){
+            out[i] = first[i] < second[i];
+        }
+    }
+    
+    @Override
+    public void lessOrEqual(double[] first, double[] second, boolean[] out, int size){
+        for(int i = 0; i < size; i++){
+            out[i] = first[i] <= second[i];
+        }
+    }
+    
+    @Override
+    public void within(double[] values, double lower, boolean lowerInclusive, double upper, boolean upperInclusive, boolean[] out, int size){
+        for(int i = 0; i < size; i++){
+            double value = values[i];
+            out[i] = (lowerInclusive ? value >= lower : value > lower) & (upperInclusive ? value <= upper : value < upper);
+        }
+    }
+    
+    @Override
+    public void sameString(double[] first, double[] second, boolean[] out, boolean negate, int size){
+        for(int i = 0; i < size; i++){
+            out[i] = NumberFormatter.isSameString(first[i], second[i]) != negate;
+        }
+    }
+    
+    @Override
+    public void not(boolean[] out, int size){
+        for(int i = 0; i < size; i++){
+            out[i] = !out[i];
+        }
+    }
+    
+    @Override
+    public void junction(boolean[] values, boolean[] undecided, boolean[] out, boolean decidingValue, int size){
+        for(int i = 0; i < size; i++){
+            boolean decided = undecided[i] & values[i] == decidingValue;
+            out[i] ^= decided;
+            undecided[i] &= !decided;
+        }
+    }
+}
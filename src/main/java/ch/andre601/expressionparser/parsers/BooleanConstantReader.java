@@ -23,9 +23,7 @@ import ch.andre601.expressionparser.ParseWarnCollector;
 import ch.andre601.expressionparser.templates.ConstantExpressionTemplate;
 import ch.andre601.expressionparser.templates.ExpressionTemplate;
 import ch.andre601.expressionparser.tokens.BooleanToken;
-import ch.andre601.expressionparser.tokens.Token;
-
-import java.util.List;
+import ch.andre601.expressionparser.tokens.TokenStream;
 
 /**
  * {@link ValueReader} converting {@link BooleanToken} instances into {@link ExpressionTemplate} instances.
@@ -33,9 +31,9 @@ import java.util.List;
 public class BooleanConstantReader extends ValueReader{
     
     @Override
-    public ExpressionTemplate read(ExpressionTemplateParser parser, List<Token> tokens, ParseWarnCollector collector){
-        if(tokens.get(0) instanceof BooleanToken){
-            return ConstantExpressionTemplate.of(((BooleanToken)tokens.remove(0)).getValue());
+    public ExpressionTemplate read(ExpressionTemplateParser parser, TokenStream tokens, ParseWarnCollector collector){
+        if(tokens.peek() instanceof BooleanToken){
+            return ConstantExpressionTemplate.of(((BooleanToken)tokens.advance()).getValue());
         }
         
         return null;
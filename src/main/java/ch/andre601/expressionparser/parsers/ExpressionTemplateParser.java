@@ -26,10 +26,13 @@ import ch.andre601.expressionparser.operator.Operator;
 import ch.andre601.expressionparser.templates.ExpressionTemplate;
 import ch.andre601.expressionparser.templates.ExpressionTemplates;
 import ch.andre601.expressionparser.tokens.Token;
+import ch.andre601.expressionparser.tokens.TokenStream;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 
 /**
@@ -59,6 +62,7 @@ public class ExpressionTemplateParser{
     
     /**
      * Takes a list of {@link Token Tokens} and converts them into a {@link ExpressionTemplate} instance.
+     * <br>Tokens used for the ExpressionTemplate are removed from the List.
      * 
      * @param  tokens
      *         List of Tokens to convert.
@@ -66,96 +70,140 @@ public class ExpressionTemplateParser{
      *         {@link ParseWarnCollector} instance to use.
      * 
      * @return ExpressionTemplate instance created from the List of Tokens.
+     * 
+     * @see #parse(TokenStream, ParseWarnCollector)
      */
     public ExpressionTemplate parse(List<Token> tokens, ParseWarnCollector collector){
         CheckUtil.notNullOrEmpty(tokens, ExpressionTemplateParser.class, "Tokens");
-        CheckUtil.notNull(collector, ExpressionTemplateParser.class, "Collector");
         
-        List<ExpressionTemplate> parts = new ArrayList<>();
-        List<Operator> operators = new ArrayList<>();
+        TokenStream stream = TokenStream.backing(tokens);
+        if(stream != null)
+            return parse(stream, collector);
+        
+        stream = TokenStream.of(tokens);
+        ExpressionTemplate template = parse(stream, collector);
+        tokens.subList(0, stream.position()).clear();
         
+        return template;
+    }
+    
+    /**
+     * Takes a {@link TokenStream} and converts the Tokens from its current position onwards into a
+     * {@link ExpressionTemplate} instance.
+     * 
+     * @param  tokens
+     *         TokenStream to convert.
+     * @param  collector
+     *         {@link ParseWarnCollector} instance to use.
+     * 
+     * @return ExpressionTemplate instance created from the TokenStream.
+     */
+    public ExpressionTemplate parse(TokenStream tokens, ParseWarnCollector collector){
+        CheckUtil.notNullOrEmpty(tokens, ExpressionTemplateParser.class, "Tokens");
+        CheckUtil.notNull(collector, ExpressionTemplateParser.class, "Collector");
+        
+        ExpressionTemplate operand;
         try{
-            parts.add(read(tokens, collector));
+            operand = read(tokens, collector);
         }catch(IllegalArgumentException ex){
             collector.appendWarning(ex.getMessage());
             return null;
         }
         
+        // Groups of operators that are still waiting for their right-hand operand, ordered from loosest (bottom)
+        // to tightest (top) priority. A lower priority binds tighter.
+        Deque<OperatorGroup> pending = new ArrayDeque<>();
+        
         while(!tokens.isEmpty()){
-            Token token = tokens.remove(0);
+            Token token = tokens.advance();
             Operator operator = this.operators.get(token);
             if(operator == null){
                 collector.appendWarningFormatted("Received \"%s\" but expected OPERATOR.", token);
                 return null;
             }
             
-            operators.add(operator);
+            int priority = operator.getPriority();
+            while(!pending.isEmpty() && pending.peek().priority < priority){
+                operand = pending.pop().close(operand);
+            }
+            
+            if(!pending.isEmpty() && pending.peek().priority == priority){
+                pending.peek().append(operator, operand);
+            }else{
+                pending.push(new OperatorGroup(operator, operand));
+            }
+            
             if(tokens.isEmpty()){
                 collector.appendWarning("Received unexpected end of input.");
                 return null;
             }
             
             try{
-                parts.add(read(tokens, collector));
+                operand = read(tokens, collector);
             }catch(IllegalArgumentException ex){
                 collector.appendWarning(ex.getMessage());
                 return null;
             }
         }
         
-        while(!operators.isEmpty()){
-            Operator operator = operators.get(0);
-            int lowest = operator.getPriority();
-            int start = 0;
-            int end = 1;
-            for(int i = 1; i < operators.size(); i++){
-                operator = operators.get(i);
-                if(operator.getPriority() < lowest){
-                    lowest = operator.getPriority();
-                    start = i;
-                    end = i + 1;
-                }else
-                if(operator.getPriority() > lowest){
-                    break;
-                }else{
-                    end++;
-                }
-            }
-            
-            operator = operators.get(start);
-            
-            ExpressionTemplate replacement;
-            if(start + 1 == end){
-                replacement = operator.createTemplate(parts.get(start), parts.get(end));
-            }else
-            if(operator instanceof ListOperator listOperator){
-                replacement = listOperator.createTemplate(new ArrayList<>(parts.subList(start, end + 1)));
-            }else{
-                List<ExpressionTemplate> conditions = new ArrayList<>(end - start);
-                for(int i = start; i < end; i++)
-                    conditions.add(operators.get(i).createTemplate(parts.get(i), parts.get(i + 1)));
-                
-                replacement = ExpressionTemplates.and(conditions);
-            }
-            
-            for(int i = start; i < end; i++){
-                parts.remove(start);
-                operators.remove(start);
-            }
-            
-            parts.set(start, replacement);
+        while(!pending.isEmpty()){
+            operand = pending.pop().close(operand);
         }
         
-        return parts.get(0);
+        return operand;
     }
     
-    private ExpressionTemplate read(List<Token> tokens, ParseWarnCollector collector){
+    private ExpressionTemplate read(TokenStream tokens, ParseWarnCollector collector){
         for(ValueReader valueReader : valueReaders){
             ExpressionTemplate template = valueReader.read(this, tokens, collector);
             if(template != null)
                 return template;
         }
         
-        throw new IllegalArgumentException("Invalid Expression. Expected literal but got token \"" + tokens.get(0).toString() + "\".");
+        throw new IllegalArgumentException("Invalid Expression. Expected literal but got token \"" + tokens.peek().toString() + "\".");
+    }
+    
+    /**
+     * A run of operators sharing the same priority, together with the operands on their left-hand side.
+     * <br>Once the right-most operand is known, the run is turned into a single {@link ExpressionTemplate}:
+     * <ul>
+     *     <li>A single operator creates its template from both operands.</li>
+     *     <li>A run starting with a {@link ListOperator} passes all operands to it at once.</li>
+     *     <li>Any other run creates one template per operator and {@link ExpressionTemplates#chain(List) chains} them
+     *     together, so that {@code a < b < c} becomes {@code a < b and b < c}, with {@code b} only evaluated once.</li>
+     * </ul>
+     */
+    private static class OperatorGroup{
+        
+        private final int priority;
+        private final List<Operator> operators = new ArrayList<>();
+        private final List<ExpressionTemplate> operands = new ArrayList<>();
+        
+        OperatorGroup(Operator operator, ExpressionTemplate operand){
+            this.priority = operator.getPriority();
+            append(operator, operand);
+        }
+        
+        void append(Operator operator, ExpressionTemplate operand){
+            operators.add(operator);
+            operands.add(operand);
+        }
+        
+        ExpressionTemplate close(ExpressionTemplate last){
+            operands.add(last);
+            
+            Operator first = operators.get(0);
+            if(operators.size() == 1)
+                return first.createTemplate(operands.get(0), operands.get(1));
+            
+            if(first instanceof ListOperator listOperator)
+                return listOperator.createTemplate(operands);
+            
+            List<ExpressionTemplate> conditions = new ArrayList<>(operators.size());
+            for(int i = 0; i < operators.size(); i++)
+                conditions.add(operators.get(i).createTemplate(operands.get(i), operands.get(i + 1)));
+            
+            return ExpressionTemplates.chain(conditions);
+        }
     }
 }
@@ -24,8 +24,7 @@ import ch.andre601.expressionparser.internal.CheckUtil;
 import ch.andre601.expressionparser.templates.ExpressionTemplate;
 import ch.andre601.expressionparser.templates.ExpressionTemplates;
 import ch.andre601.expressionparser.tokens.Token;
-
-import java.util.List;
+import ch.andre601.expressionparser.tokens.TokenStream;
 
 /**
  * {@link ValueReader} creating a negated {@link ExpressionTemplate} when the first token is the provided one.
@@ -46,10 +45,19 @@ public class NegatedExpressionReader extends ValueReader{
         this.negationToken = negationToken;
     }
     
+    /**
+     * Returns the {@link Token} this NegatedExpressionReader looks for.
+     * 
+     * @return The {@link Token} this NegatedExpressionReader looks for.
+     */
+    public Token getNegationToken(){
+        return negationToken;
+    }
+    
     @Override
-    public ExpressionTemplate read(ExpressionTemplateParser parser, List<Token> tokens, ParseWarnCollector collector){
-        if(tokens.get(0) == negationToken){
-            tokens.remove(0);
+    public ExpressionTemplate read(ExpressionTemplateParser parser, TokenStream tokens, ParseWarnCollector collector){
+        if(tokens.peek() == negationToken){
+            tokens.advance();
             return ExpressionTemplates.negate(parser.parse(tokens, collector));
         }
         
@@ -24,8 +24,7 @@ import ch.andre601.expressionparser.internal.CheckUtil;
 import ch.andre601.expressionparser.templates.ExpressionTemplate;
 import ch.andre601.expressionparser.templates.ExpressionTemplates;
 import ch.andre601.expressionparser.tokens.Token;
-
-import java.util.List;
+import ch.andre601.expressionparser.tokens.TokenStream;
 
 /**
  * {@link ValueReader} creating a negated {@link ExpressionTemplate} should the first token be the provided one.
@@ -46,10 +45,19 @@ public class NegatedNumberReader extends ValueReader{
         this.negationToken = negationToken;
     }
     
+    /**
+     * Returns the {@link Token} this NegatedNumberReader looks for.
+     * 
+     * @return The {@link Token} this NegatedNumberReader looks for.
+     */
+    public Token getNegationToken(){
+        return negationToken;
+    }
+    
     @Override
-    public ExpressionTemplate read(ExpressionTemplateParser parser, List<Token> tokens, ParseWarnCollector collector){
-        if(tokens.get(0) == negationToken){
-            tokens.remove(0);
+    public ExpressionTemplate read(ExpressionTemplateParser parser, TokenStream tokens, ParseWarnCollector collector){
+        if(tokens.peek() == negationToken){
+            tokens.advance();
             return ExpressionTemplates.negateNumber(parser.parse(tokens, collector));
         }
         
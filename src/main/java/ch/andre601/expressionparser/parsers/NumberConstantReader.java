@@ -23,9 +23,7 @@ import ch.andre601.expressionparser.ParseWarnCollector;
 import ch.andre601.expressionparser.templates.ConstantExpressionTemplate;
 import ch.andre601.expressionparser.templates.ExpressionTemplate;
 import ch.andre601.expressionparser.tokens.NumberToken;
-import ch.andre601.expressionparser.tokens.Token;
-
-import java.util.List;
+import ch.andre601.expressionparser.tokens.TokenStream;
 
 /**
  * {@link ValueReader} converting {@link NumberToken} into {@link ExpressionTemplate} instances.
@@ -33,9 +31,9 @@ import java.util.List;
 public class NumberConstantReader extends ValueReader{
     
     @Override
-    public ExpressionTemplate read(ExpressionTemplateParser parser, List<Token> tokens, ParseWarnCollector collector){
-        if(tokens.get(0) instanceof NumberToken){
-            return ConstantExpressionTemplate.of(((NumberToken)tokens.remove(0)).getValue());
+    public ExpressionTemplate read(ExpressionTemplateParser parser, TokenStream tokens, ParseWarnCollector collector){
+        if(tokens.peek() instanceof NumberToken){
+            return ConstantExpressionTemplate.of(((NumberToken)tokens.advance()).getValue());
         }
         
         return null;
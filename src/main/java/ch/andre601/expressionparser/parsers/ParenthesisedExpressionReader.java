@@ -23,9 +23,7 @@ import ch.andre601.expressionparser.ParseWarnCollector;
 import ch.andre601.expressionparser.internal.CheckUtil;
 import ch.andre601.expressionparser.templates.ExpressionTemplate;
 import ch.andre601.expressionparser.tokens.Token;
-
-import java.util.ArrayList;
-import java.util.List;
+import ch.andre601.expressionparser.tokens.TokenStream;
 
 /**
  * {@link ValueReader} converting a set of token into an {@link ExpressionTemplate} if the first token is the same
@@ -52,17 +50,35 @@ public class ParenthesisedExpressionReader extends ValueReader{
         this.closingParenthesis = closingParenthesis;
     }
     
+    /**
+     * Returns the {@link Token} representing an opening parenthesis.
+     * 
+     * @return The {@link Token} representing an opening parenthesis.
+     */
+    public Token getOpeningParenthesis(){
+        return openingParenthesis;
+    }
+    
+    /**
+     * Returns the {@link Token} representing a closing parenthesis.
+     * 
+     * @return The {@link Token} representing a closing parenthesis.
+     */
+    public Token getClosingParenthesis(){
+        return closingParenthesis;
+    }
+    
     @Override
-    public ExpressionTemplate read(ExpressionTemplateParser parser, List<Token> tokens, ParseWarnCollector collector){
-        if(tokens.get(0) == openingParenthesis){
-            int index = 0;
+    public ExpressionTemplate read(ExpressionTemplateParser parser, TokenStream tokens, ParseWarnCollector collector){
+        if(tokens.peek() == openingParenthesis){
+            int offset = 0;
             int cnt = 1;
             do {
-                index += 1;
-                if(tokens.size() <= index)
+                offset += 1;
+                if(tokens.remaining() <= offset)
                     return null;
                 
-                Token token = tokens.get(index);
+                Token token = tokens.peek(offset);
                 if(token == openingParenthesis){
                     cnt++;
                 }else
@@ -71,10 +87,9 @@ public class ParenthesisedExpressionReader extends ValueReader{
                 }
             }while(cnt != 0);
             
-            ExpressionTemplate result = parser.parse(new ArrayList<>(tokens.subList(1, index)), collector);
-            for(int i = 0; i <= index; i++){
-                tokens.remove(0);
-            }
+            int start = tokens.position();
+            ExpressionTemplate result = parser.parse(tokens.subStream(start + 1, start + offset), collector);
+            tokens.reset(start + offset + 1);
             
             return result;
         }
@@ -23,9 +23,7 @@ import ch.andre601.expressionparser.ParseWarnCollector;
 import ch.andre601.expressionparser.templates.ConstantExpressionTemplate;
 import ch.andre601.expressionparser.templates.ExpressionTemplate;
 import ch.andre601.expressionparser.tokens.StringToken;
-import ch.andre601.expressionparser.tokens.Token;
-
-import java.util.List;
+import ch.andre601.expressionparser.tokens.TokenStream;
 
 /**
  * {@link ValueReader} converting any {@link StringToken} instance into a {@link ExpressionTemplate} instance.
@@ -33,9 +31,9 @@ import java.util.List;
 public class StringConstantReader extends ValueReader{
     
     @Override
-    public ExpressionTemplate read(ExpressionTemplateParser parser, List<Token> tokens, ParseWarnCollector collector){
-        if(tokens.get(0) instanceof StringToken){
-            return ConstantExpressionTemplate.of(((StringToken)tokens.remove(0)).getValue());
+    public ExpressionTemplate read(ExpressionTemplateParser parser, TokenStream tokens, ParseWarnCollector collector){
+        if(tokens.peek() instanceof StringToken){
+            return ConstantExpressionTemplate.of(((StringToken)tokens.advance()).getValue());
         }
         
         return null;
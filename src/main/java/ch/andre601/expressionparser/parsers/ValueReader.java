@@ -22,12 +22,13 @@ package ch.andre601.expressionparser.parsers;
 import ch.andre601.expressionparser.ParseWarnCollector;
 import ch.andre601.expressionparser.templates.ExpressionTemplate;
 import ch.andre601.expressionparser.tokens.Token;
+import ch.andre601.expressionparser.tokens.TokenStream;
 
 import java.util.List;
 
 /**
  * Abstract class used in other classes to create a ValueReader.
- * <br>The Value reader goes through the collection of {@link Token Tokens} and tries to convert them into a
+ * <br>The Value reader goes through the {@link TokenStream stream of Tokens} and tries to convert them into a
  * {@link ExpressionTemplate} should the token match a specific one.
  * 
  * @see BooleanConstantReader
@@ -36,12 +37,53 @@ import java.util.List;
  * @see NumberConstantReader
  * @see ParenthesisedExpressionReader
  * @see StringConstantReader
+ * @see VariableReader
  */
 public abstract class ValueReader{
     
+    /**
+     * Creates a new instance of this class.
+     * 
+     * @throws IllegalStateException
+     *         Should the subclass override neither of the read methods, which would call each other endlessly.
+     */
+    protected ValueReader(){
+        if(declaresRead(TokenStream.class) || declaresRead(List.class))
+            return;
+        
+        throw new IllegalStateException("[ValueReader] " + getClass().getName() + " has to override " +
+            "read(ExpressionTemplateParser, TokenStream, ParseWarnCollector).");
+    }
+    
+    /**
+     * Method called by the {@link ExpressionTemplateParser} to convert the Tokens at the current position of the
+     * {@link TokenStream} into a single {@link ExpressionTemplate}.
+     * <br>Any Token used for the ExpressionTemplate should be consumed by {@link TokenStream#advance() advancing} the
+     * stream.
+     * 
+     * <p>The default implementation delegates to {@link #read(ExpressionTemplateParser, List, ParseWarnCollector)} using
+     * a {@link TokenStream#asList() List view} of the stream. Subclasses have to override at least one of the two methods.
+     * 
+     * @param  parser
+     *         ExpressionTemplateParser instance to use. The default ExpressionTemplateParser provides itself here.
+     * @param  tokens
+     *         TokenStream to read the ExpressionTemplate from.
+     * @param  collector
+     *         {@link ParseWarnCollector} instance to use
+     * 
+     * @return Possibly-null ExpressionTemplate.
+     */
+    public ExpressionTemplate read(ExpressionTemplateParser parser, TokenStream tokens, ParseWarnCollector collector){
+        return read(parser, tokens.asList(), collector);
+    }
+    
     /**
      * Method called by the {@link ExpressionTemplateParser} to convert a List of {@link Token} into a single
      * {@link ExpressionTemplate}.
+     * <br>Any Token used for the ExpressionTemplate should be removed from the start of the List.
+     * 
+     * <p>The default implementation delegates to {@link #read(ExpressionTemplateParser, TokenStream, ParseWarnCollector)}.
+     * Subclasses have to override at least one of the two methods.
      * 
      * @param  parser
      *         ExpressionTemplateParser instance to use. The default ExpressionTemplateParser provides itself here.
@@ -51,6 +93,29 @@ public abstract class ValueReader{
      *         {@link ParseWarnCollector} instance to use
      * 
      * @return Possibly-null ExpressionTemplate.
+     * 
+     * @deprecated Removing Tokens from the start of a List is costly for longer expressions. Override
+     *             {@link #read(ExpressionTemplateParser, TokenStream, ParseWarnCollector)} instead.
      */
-    public abstract ExpressionTemplate read(ExpressionTemplateParser parser, List<Token> tokens, ParseWarnCollector collector);
+    @Deprecated
+    public ExpressionTemplate read(ExpressionTemplateParser parser, List<Token> tokens, ParseWarnCollector collector){
+        TokenStream stream = TokenStream.backing(tokens);
+        if(stream != null)
+            return read(parser, stream, collector);
+        
+        stream = TokenStream.of(tokens);
+        ExpressionTemplate template = read(parser, stream, collector);
+        tokens.subList(0, stream.position()).clear();
+        
+        return template;
+    }
+    
+    private boolean declaresRead(Class<?> tokens){
+        try{
+            return getClass().getMethod("read", ExpressionTemplateParser.class, tokens, ParseWarnCollector.class)
+                .getDeclaringClass() != ValueReader.class;
+        }catch(NoSuchMethodException ex){
+            throw new IllegalStateException("[ValueReader] Method read is missing.", ex);
+        }
+    }
 }
@@ -0,0 +1,65 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser.parsers;
+
+import ch.andre601.expressionparser.ParseWarnCollector;
+import ch.andre601.expressionparser.Variables;
+import ch.andre601.expressionparser.internal.CheckUtil;
+import ch.andre601.expressionparser.templates.ExpressionTemplate;
+import ch.andre601.expressionparser.tokens.TokenStream;
+import ch.andre601.expressionparser.tokens.VariableToken;
+
+/**
+ * {@link ValueReader} converting {@link VariableToken VariableTokens} into {@link ExpressionTemplate} instances reading
+ * the variable from the {@link ch.andre601.expressionparser.expressions.EvaluationContext EvaluationContext}.
+ * <br>Variables not declared in the provided {@link Variables} fail the parsing.
+ */
+public class VariableReader extends ValueReader{
+    
+    private final Variables variables;
+    
+    public VariableReader(Variables variables){
+        CheckUtil.notNull(variables, VariableReader.class, "Variables");
+        
+        this.variables = variables;
+    }
+    
+    /**
+     * Returns the {@link Variables} this VariableReader resolves variables with.
+     * 
+     * @return The {@link Variables} this VariableReader resolves variables with.
+     */
+    public Variables getVariables(){
+        return variables;
+    }
+    
+    @Override
+    public ExpressionTemplate read(ExpressionTemplateParser parser, TokenStream tokens, ParseWarnCollector collector){
+        if(tokens.peek() instanceof VariableToken){
+            String name = ((VariableToken)tokens.advance()).getName();
+            if(!variables.contains(name))
+                throw new IllegalArgumentException("[" + VariableReader.class.getSimpleName() + "] Unknown variable \"" + name + "\".");
+            
+            return variables.createTemplate(name);
+        }
+        
+        return null;
+    }
+}
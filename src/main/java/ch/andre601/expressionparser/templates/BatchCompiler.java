@@ -0,0 +1,715 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser.templates;
+
+import ch.andre601.expressionparser.expressions.BatchExpression;
+import ch.andre601.expressionparser.expressions.EvaluationBatch;
+import ch.andre601.expressionparser.expressions.EvaluationContext;
+import ch.andre601.expressionparser.expressions.ToBooleanExpression;
+import ch.andre601.expressionparser.expressions.ToDoubleExpression;
+import ch.andre601.expressionparser.expressions.ToStringExpression;
+import ch.andre601.expressionparser.internal.BatchKernels;
+import ch.andre601.expressionparser.internal.CheckUtil;
+import ch.andre601.expressionparser.internal.NumberFormatter;
+import ch.andre601.expressionparser.internal.NumberParser;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Compiles trees of the {@link ExpressionTemplate ExpressionTemplates} created through {@link ExpressionTemplates}
+ * into {@link BatchExpression BatchExpressions}, evaluating an expression for every row of an {@link EvaluationBatch}
+ * at once.
+ * <br>Each template of the tree processes a whole column of values in a single loop, instead of the whole tree being
+ * called once per row. Templates only made of the ones of ExpressionTemplates can't throw and don't have any side
+ * effects, so they are evaluated for every row, even if {@link ExpressionTemplates#and(java.util.Collection) and} or
+ * {@link ExpressionTemplates#or(java.util.Collection) or} would skip them for some.
+ * <br>The results of the operands of and and or are combined using the SIMD instructions of the CPU if the library has
+ * been built with the {@code vector} profile and the JVM started with {@code --add-modules jdk.incubator.vector}, as
+ * are numbers compared for equality. Plain loops, which the JIT may vectorize on its own, are used otherwise.
+ * 
+ * <p>Templates not created through ExpressionTemplates, such as ones made by custom operators, are evaluated once per
+ * row with an {@link EvaluationContext} holding the values of the row. They are only evaluated for the rows that would
+ * evaluate them without a batch too, but the rows are evaluated one template after another instead of one row after
+ * another.
+ * <br>Templates with operands that failed to parse are treated the same way, which makes compiling them throw the
+ * exception their expressions throw once created.
+ * 
+ * <p>The columns holding the intermediate values of a compiled expression are kept between evaluations and only
+ * replaced once a larger batch is evaluated. Expressions evaluated by multiple threads at once create additional ones
+ * for the evaluations that overlap.
+ */
+public class BatchCompiler{
+    
+    private static final BatchKernels KERNELS = BatchKernels.get();
+    
+    // Amounts of scratch columns of each type the nodes created so far use.
+    private int booleanColumns = 0;
+    private int doubleColumns = 0;
+    private int stringColumns = 0;
+    
+    private BatchCompiler(){}
+    
+    /**
+     * Compiles the provided {@link ExpressionTemplate} into a {@link BatchExpression} with the same boolean, double and
+     * String values.
+     * 
+     * @param  template
+     *         The ExpressionTemplate to compile.
+     * 
+     * @return The compiled BatchExpression.
+     */
+    public static BatchExpression compile(ExpressionTemplate template){
+        CheckUtil.notNull(template, BatchCompiler.class, "Template");
+        
+        BatchCompiler compiler = new BatchCompiler();
+        ExpressionTemplate source = CommonSubexpressionEliminator.original(template);
+        
+        BooleanNode booleanNode = compiler.booleanNode(source);
+        DoubleNode doubleNode = compiler.doubleNode(source);
+        StringNode stringNode = compiler.stringNode(source);
+        int result = compiler.booleanColumns++;
+        
+        return new CompiledBatchExpression(booleanNode, doubleNode, stringNode, result, compiler.booleanColumns,
+            compiler.doubleColumns, compiler.stringColumns);
+    }
+    
+    /*
+     * Nodes write the value of every row into the provided array. The mask, if not null, marks the rows whose values
+     * are used, which is only respected by nodes that may throw or have side effects. Values of other rows are
+     * ignored by the caller, as long as Strings are not null.
+     * Intermediate values are kept in the columns of the Scratch, using the slots assigned to the node when it was
+     * created. No other node uses these slots, but the columns may hold the values of a previous evaluation and be
+     * longer than the batch.
+     */
+    
+    @FunctionalInterface
+    private interface BooleanNode{
+        void evaluate(EvaluationBatch batch, Scratch scratch, boolean[] mask, boolean[] out);
+    }
+    
+    @FunctionalInterface
+    private interface DoubleNode{
+        void evaluate(EvaluationBatch batch, Scratch scratch, boolean[] mask, double[] out);
+    }
+    
+    @FunctionalInterface
+    private interface StringNode{
+        void evaluate(EvaluationBatch batch, Scratch scratch, boolean[] mask, String[] out);
+    }
+    
+    private BooleanNode booleanNode(ExpressionTemplate template){
+        if(isConstant(template)){
+            boolean value = template.returnBooleanExpression().evaluate();
+            return (batch, scratch, mask, out) -> Arrays.fill(out, 0, batch.size(), value);
+        }
+        
+        BooleanNode node = createBoolean(template);
+        if(node != null)
+            return node;
+        
+        // Same conversions as the ones of Conversions.
+        DoubleNode doubleNode = createDouble(template);
+        if(doubleNode != null){
+            int column = doubleColumns++;
+            return (batch, scratch, mask, out) -> {
+                double[] values = scratch.doubles(column);
+                doubleNode.evaluate(batch, scratch, mask, values);
+                KERNELS.notZero(values, out, batch.size());
+            };
+        }
+        
+        StringNode stringNode = createString(template);
+        if(stringNode != null){
+            int column = stringColumns++;
+            return (batch, scratch, mask, out) -> {
+                String[] values = scratch.strings(column);
+                stringNode.evaluate(batch, scratch, mask, values);
+                for(int i = 0; i < batch.size(); i++){
+                    out[i] = Boolean.parseBoolean(values[i]);
+                }
+            };
+        }
+        
+        ToBooleanExpression expression = template.returnBooleanExpression();
+        return (batch, scratch, mask, out) -> {
+            EvaluationContext context = batch.createContext();
+            for(int i = 0; i < batch.size(); i++){
+                if(mask != null && !mask[i])
+                    continue;
+                
+                batch.loadRow(i, context);
+                out[i] = expression.evaluate(context);
+            }
+        };
+    }
+    
+    private DoubleNode doubleNode(ExpressionTemplate template){
+        if(isConstant(template)){
+            double value = template.returnDoubleExpression().evaluate();
+            return (batch, scratch, mask, out) -> Arrays.fill(out, 0, batch.size(), value);
+        }
+        
+        DoubleNode node = createDouble(template);
+        if(node != null)
+            return node;
+        
+        BooleanNode booleanNode = createBoolean(template);
+        if(booleanNode != null){
+            int column = booleanColumns++;
+            return (batch, scratch, mask, out) -> {
+                boolean[] values = scratch.booleans(column);
+                booleanNode.evaluate(batch, scratch, mask, values);
+                for(int i = 0; i < batch.size(); i++){
+                    out[i] = values[i] ? 1 : 0;
+                }
+            };
+        }
+        
+        StringNode stringNode = createString(template);
+        if(stringNode != null){
+            int column = stringColumns++;
+            return (batch, scratch, mask, out) -> {
+                String[] values = scratch.strings(column);
+                stringNode.evaluate(batch, scratch, mask, values);
+                for(int i = 0; i < batch.size(); i++){
+                    out[i] = NumberParser.parseOrDefault(values[i], false, values[i].length());
+                }
+            };
+        }
+        
+        ToDoubleExpression expression = template.returnDoubleExpression();
+        return (batch, scratch, mask, out) -> {
+            EvaluationContext context = batch.createContext();
+            for(int i = 0; i < batch.size(); i++){
+                if(mask != null && !mask[i])
+                    continue;
+                
+                batch.loadRow(i, context);
+                out[i] = expression.evaluate(context);
+            }
+        };
+    }
+    
+    private StringNode stringNode(ExpressionTemplate template){
+        if(isConstant(template)){
+            String value = template.returnStringExpression().evaluate();
+            return (batch, scratch, mask, out) -> Arrays.fill(out, 0, batch.size(), value);
+        }
+        
+        StringNode node = createString(template);
+        if(node != null)
+            return node;
+        
+        BooleanNode booleanNode = createBoolean(template);
+        if(booleanNode != null){
+            int column = booleanColumns++;
+            return (batch, scratch, mask, out) -> {
+                boolean[] values = scratch.booleans(column);
+                booleanNode.evaluate(batch, scratch, mask, values);
+                for(int i = 0; i < batch.size(); i++){
+                    out[i] = Boolean.toString(values[i]);
+                }
+            };
+        }
+        
+        DoubleNode doubleNode = createDouble(template);
+        if(doubleNode != null){
+            int column = doubleColumns++;
+            return (batch, scratch, mask, out) -> {
+                double[] values = scratch.doubles(column);
+                doubleNode.evaluate(batch, scratch, mask, values);
+                for(int i = 0; i < batch.size(); i++){
+                    out[i] = NumberFormatter.toString(values[i]);
+                }
+            };
+        }
+        
+        ToStringExpression expression = template.returnStringExpression();
+        return (batch, scratch, mask, out) -> {
+            EvaluationContext context = batch.createContext();
+            for(int i = 0; i < batch.size(); i++){
+                if(mask != null && !mask[i]){
+                    out[i] = "";
+                    continue;
+                }
+                
+                batch.loadRow(i, context);
+                out[i] = expression.evaluate(context);
+            }
+        };
+    }
+    
+    // Returns a node of the boolean value the provided template computes itself, or null if it isn't known.
+    private BooleanNode createBoolean(ExpressionTemplate template){
+        if(template instanceof ExpressionTemplates.BooleanVariable variable){
+            int slot = variable.slot;
+            return (batch, scratch, mask, out) -> System.arraycopy(batch.getBooleans(slot), 0, out, 0, batch.size());
+        }
+        
+        if(template instanceof ExpressionTemplates.Negation negation){
+            List<ExpressionTemplate> operands = operands(negation);
+            if(operands == null)
+                return null;
+            
+            BooleanNode operand = booleanNode(operands.get(0));
+            return (batch, scratch, mask, out) -> {
+                operand.evaluate(batch, scratch, mask, out);
+                KERNELS.not(out, batch.size());
+            };
+        }
+        
+        if(template instanceof ExpressionTemplates.And and)
+            return junction(and, false);
+        
+        if(template instanceof ExpressionTemplates.Or or)
+            return junction(or, true);
+        
+        ExpressionTemplates.Comparison comparison = ExpressionTemplates.Comparison.of(template);
+        if(comparison != null)
+            return comparison((ExpressionTemplates.Composite)template, comparison);
+        
+        if(template instanceof ExpressionTemplates.Chain chain)
+            return chain(chain);
+        
+        if(template instanceof ExpressionTemplates.Interval interval){
+            List<ExpressionTemplate> operands = operands(interval);
+            if(operands == null)
+                return null;
+            
+            DoubleNode operand = doubleNode(operands.get(0));
+            int column = doubleColumns++;
+            return (batch, scratch, mask, out) -> {
+                double[] values = scratch.doubles(column);
+                operand.evaluate(batch, scratch, mask, values);
+                KERNELS.within(values, interval.lower, interval.lowerInclusive, interval.upper, interval.upperInclusive, out, batch.size());
+            };
+        }
+        
+        return null;
+    }
+    
+    // Returns a node of the double value the provided template computes itself, or null if it isn't known.
+    private DoubleNode createDouble(ExpressionTemplate template){
+        if(template instanceof ExpressionTemplates.DoubleVariable variable){
+            int slot = variable.slot;
+            return (batch, scratch, mask, out) -> System.arraycopy(batch.getDoubles(slot), 0, out, 0, batch.size());
+        }
+        
+        if(template instanceof ExpressionTemplates.Sum sum)
+            return fold(sum, 0, false);
+        
+        if(template instanceof ExpressionTemplates.Product product)
+            return fold(product, 1, true);
+        
+        if(template instanceof ExpressionTemplates.Sub sub){
+            List<ExpressionTemplate> operands = operands(sub);
+            if(operands == null)
+                return null;
+            
+            DoubleNode a = doubleNode(operands.get(0));
+            DoubleNode b = doubleNode(operands.get(1));
+            int column = doubleColumns++;
+            return (batch, scratch, mask, out) -> {
+                double[] values = scratch.doubles(column);
+                a.evaluate(batch, scratch, mask, out);
+                b.evaluate(batch, scratch, mask, values);
+                KERNELS.subtract(out, values, batch.size());
+            };
+        }
+        
+        if(template instanceof ExpressionTemplates.Div div){
+            List<ExpressionTemplate> operands = operands(div);
+            if(operands == null)
+                return null;
+            
+            DoubleNode a = doubleNode(operands.get(0));
+            DoubleNode b = doubleNode(operands.get(1));
+            int column = doubleColumns++;
+            return (batch, scratch, mask, out) -> {
+                double[] values = scratch.doubles(column);
+                a.evaluate(batch, scratch, mask, out);
+                b.evaluate(batch, scratch, mask, values);
+                KERNELS.divide(out, values, batch.size());
+            };
+        }
+        
+        if(template instanceof ExpressionTemplates.NegationNumber negation){
+            List<ExpressionTemplate> operands = operands(negation);
+            if(operands == null)
+                return null;
+            
+            DoubleNode operand = doubleNode(operands.get(0));
+            return (batch, scratch, mask, out) -> {
+                operand.evaluate(batch, scratch, mask, out);
+                KERNELS.negate(out, batch.size());
+            };
+        }
+        
+        return null;
+    }
+    
+    // Returns a node of the String value the provided template computes itself, or null if it isn't known.
+    private StringNode createString(ExpressionTemplate template){
+        if(template instanceof ExpressionTemplates.StringVariable variable){
+            int slot = variable.slot;
+            return (batch, scratch, mask, out) -> System.arraycopy(batch.getStrings(slot), 0, out, 0, batch.size());
+        }
+        
+        if(template instanceof ExpressionTemplates.Concatenate concatenate){
+            List<ExpressionTemplate> operands = operands(concatenate);
+            if(operands == null)
+                return null;
+            
+            StringNode[] nodes = operands.stream().map(this::stringNode).toArray(StringNode[]::new);
+            int columns = stringColumns;
+            stringColumns += nodes.length;
+            return (batch, scratch, mask, out) -> {
+                for(int j = 0; j < nodes.length; j++){
+                    nodes[j].evaluate(batch, scratch, mask, scratch.strings(columns + j));
+                }
+                
+                StringBuilder builder = new StringBuilder();
+                for(int i = 0; i < batch.size(); i++){
+                    builder.setLength(0);
+                    for(int j = 0; j < nodes.length; j++){
+                        builder.append(scratch.strings(columns + j)[i]);
+                    }
+                    out[i] = builder.toString();
+                }
+            };
+        }
+        
+        return null;
+    }
+    
+    // Evaluates each operand for the rows whose value isn't decided yet, which is the case once an operand has the
+    // deciding value.
+    private BooleanNode junction(ExpressionTemplates.Composite template, boolean decidingValue){
+        List<ExpressionTemplate> operands = operands(template);
+        if(operands == null)
+            return null;
+        
+        BooleanNode[] nodes = operands.stream().map(this::booleanNode).toArray(BooleanNode[]::new);
+        int columns = booleanColumns;
+        booleanColumns += 2;
+        return (batch, scratch, mask, out) -> {
+            boolean[] undecided = scratch.booleans(columns);
+            boolean[] values = scratch.booleans(columns + 1);
+            for(int i = 0; i < batch.size(); i++){
+                undecided[i] = mask == null || mask[i];
+                out[i] = !decidingValue;
+            }
+            
+            for(BooleanNode node : nodes){
+                node.evaluate(batch, scratch, undecided, values);
+                KERNELS.junction(values, undecided, out, decidingValue, batch.size());
+            }
+        };
+    }
+    
+    // Compares the values of both operands, which are doubles for numeric comparisons and Strings otherwise.
+    private BooleanNode comparison(ExpressionTemplates.Composite template, ExpressionTemplates.Comparison comparison){
+        List<ExpressionTemplate> operands = operands(template);
+        if(operands == null)
+            return null;
+        
+        if(comparison.numeric){
+            DoubleNode a = doubleNode(operands.get(0));
+            DoubleNode b = doubleNode(operands.get(1));
+            int columns = doubleColumns;
+            doubleColumns += 2;
+            return (batch, scratch, mask, out) -> {
+                double[] first = scratch.doubles(columns);
+                double[] second = scratch.doubles(columns + 1);
+                a.evaluate(batch, scratch, mask, first);
+                b.evaluate(batch, scratch, mask, second);
+                compare(comparison, first, second, out, batch.size());
+            };
+        }
+        
+        StringNode a = stringNode(operands.get(0));
+        StringNode b = stringNode(operands.get(1));
+        int columns = stringColumns;
+        stringColumns += 2;
+        return (batch, scratch, mask, out) -> {
+            String[] first = scratch.strings(columns);
+            String[] second = scratch.strings(columns + 1);
+            a.evaluate(batch, scratch, mask, first);
+            b.evaluate(batch, scratch, mask, second);
+            compare(comparison, first, second, out, batch.size());
+        };
+    }
+    
+    // Evaluates each comparison for the rows whose value isn't decided yet. The values of the right operand of a
+    // comparison are the left ones of the next, unless that one compares the other kind of value.
+    private BooleanNode chain(ExpressionTemplates.Chain chain){
+        List<ExpressionTemplate> operands = operands(chain);
+        if(operands == null)
+            return null;
+        
+        List<ExpressionTemplates.Comparison> comparisons = chain.comparisons();
+        DoubleNode[] doubles = new DoubleNode[operands.size()];
+        StringNode[] strings = new StringNode[operands.size()];
+        for(int i = 0; i < comparisons.size(); i++){
+            for(int j = i; j <= i + 1; j++){
+                if(comparisons.get(i).numeric){
+                    if(doubles[j] == null)
+                        doubles[j] = doubleNode(operands.get(j));
+                }else{
+                    if(strings[j] == null)
+                        strings[j] = stringNode(operands.get(j));
+                }
+            }
+        }
+        
+        // Two columns of each type, holding the values of the left and the right operand in turns.
+        int booleans = booleanColumns;
+        int numbers = doubleColumns;
+        int texts = stringColumns;
+        booleanColumns += 2;
+        doubleColumns += 2;
+        stringColumns += 2;
+        return (batch, scratch, mask, out) -> {
+            boolean[] undecided = scratch.booleans(booleans);
+            boolean[] values = scratch.booleans(booleans + 1);
+            for(int i = 0; i < batch.size(); i++){
+                undecided[i] = mask == null || mask[i];
+                out[i] = true;
+            }
+            
+            int right = 1;
+            for(int i = 0; i < comparisons.size(); i++){
+                ExpressionTemplates.Comparison comparison = comparisons.get(i);
+                boolean shared = i > 0 && comparisons.get(i - 1).numeric == comparison.numeric;
+                int left = shared ? right : 0;
+                right = shared ? right ^ 1 : 1;
+                if(comparison.numeric){
+                    if(!shared)
+                        doubles[i].evaluate(batch, scratch, undecided, scratch.doubles(numbers + left));
+                    
+                    doubles[i + 1].evaluate(batch, scratch, undecided, scratch.doubles(numbers + right));
+                    compare(comparison, scratch.doubles(numbers + left), scratch.doubles(numbers + right), values, batch.size());
+                }else{
+                    if(!shared)
+                        strings[i].evaluate(batch, scratch, undecided, scratch.strings(texts + left));
+                    
+                    strings[i + 1].evaluate(batch, scratch, undecided, scratch.strings(texts + right));
+                    compare(comparison, scratch.strings(texts + left), scratch.strings(texts + right), values, batch.size());
+                }
+                KERNELS.junction(values, undecided, out, false, batch.size());
+            }
+        };
+    }
+    
+    // Applies the operation to the start value and each operand, from first to last.
+    private DoubleNode fold(ExpressionTemplates.Composite template, double start, boolean multiply){
+        List<ExpressionTemplate> operands = operands(template);
+        if(operands == null)
+            return null;
+        
+        DoubleNode[] nodes = operands.stream().map(this::doubleNode).toArray(DoubleNode[]::new);
+        int column = doubleColumns++;
+        return (batch, scratch, mask, out) -> {
+            double[] values = scratch.doubles(column);
+            Arrays.fill(out, 0, batch.size(), start);
+            for(DoubleNode node : nodes){
+                node.evaluate(batch, scratch, mask, values);
+                if(multiply){
+                    KERNELS.multiply(out, values, batch.size());
+                }else{
+                    KERNELS.add(out, values, batch.size());
+                }
+            }
+        };
+    }
+    
+    // Templates with missing operands are left to the original template, which throws once its expressions are created.
+    private static List<ExpressionTemplate> operands(ExpressionTemplates.Composite template){
+        List<ExpressionTemplate> operands = template.operands();
+        if(operands.isEmpty() || operands.contains(null))
+            return null;
+        
+        return operands;
+    }
+    
+    private static boolean isConstant(ExpressionTemplate template){
+        return template.getClass() == ConstantExpressionTemplate.class;
+    }
+    
+    private static void compare(ExpressionTemplates.Comparison comparison, double[] first, double[] second, boolean[] out, int size){
+        switch(comparison){
+            case EQUAL_NUMBERS -> KERNELS.sameString(first, second, out, false, size);
+            case NOT_EQUAL_NUMBERS -> KERNELS.sameString(first, second, out, true, size);
+            case GREATER -> KERNELS.greater(first, second, out, size);
+            case GREATER_OR_EQUAL -> KERNELS.greaterOrEqual(first, second, out, size);
+            case LESS -> KERNELS.less(first, second, out, size);
+            case LESS_OR_EQUAL -> KERNELS.lessOrEqual(first, second, out, size);
+            default -> throw new IllegalStateException("[BatchCompiler] " + comparison + " does not compare numbers.");
+        }
+    }
+    
+    private static void compare(ExpressionTemplates.Comparison comparison, String[] first, String[] second, boolean[] out, int size){
+        for(int i = 0; i < size; i++){
+            out[i] = comparison.test(first[i], second[i]);
+        }
+    }
+    
+    // Columns of intermediate values, identified by the slots assigned to the nodes. Each column is only replaced once
+    // it is shorter than the batch evaluated.
+    private static final class Scratch{
+        
+        private final boolean[][] booleans;
+        private final double[][] doubles;
+        private final String[][] strings;
+        private int size = 0;
+        
+        private Scratch(int booleans, int doubles, int strings){
+            this.booleans = new boolean[booleans][];
+            this.doubles = new double[doubles][];
+            this.strings = new String[strings][];
+        }
+        
+        private boolean[] booleans(int slot){
+            boolean[] column = booleans[slot];
+            if(column == null || column.length < size)
+                booleans[slot] = column = new boolean[size];
+            
+            return column;
+        }
+        
+        private double[] doubles(int slot){
+            double[] column = doubles[slot];
+            if(column == null || column.length < size)
+                doubles[slot] = column = new double[size];
+            
+            return column;
+        }
+        
+        // Columns are filled with empty Strings, as nodes skipping rows don't write to them.
+        private String[] strings(int slot){
+            String[] column = strings[slot];
+            if(column == null || column.length < size){
+                strings[slot] = column = new String[size];
+                Arrays.fill(column, "");
+            }
+            
+            return column;
+        }
+    }
+    
+    private static final class CompiledBatchExpression implements BatchExpression{
+        
+        private final BooleanNode booleanNode;
+        private final DoubleNode doubleNode;
+        private final StringNode stringNode;
+        private final int result;
+        private final int booleanColumns;
+        private final int doubleColumns;
+        private final int stringColumns;
+        
+        // Scratch of the last finished evaluation. Evaluations overlapping another one create their own.
+        private final AtomicReference<Scratch> idle = new AtomicReference<>();
+        
+        private CompiledBatchExpression(BooleanNode booleanNode, DoubleNode doubleNode, StringNode stringNode, int result,
+                                        int booleanColumns, int doubleColumns, int stringColumns){
+            this.booleanNode = booleanNode;
+            this.doubleNode = doubleNode;
+            this.stringNode = stringNode;
+            this.result = result;
+            this.booleanColumns = booleanColumns;
+            this.doubleColumns = doubleColumns;
+            this.stringColumns = stringColumns;
+        }
+        
+        @Override
+        public void evaluateBooleans(EvaluationBatch batch, boolean[] out){
+            check(batch, out == null ? -1 : out.length);
+            
+            Scratch scratch = acquire(batch);
+            try{
+                booleanNode.evaluate(batch, scratch, null, out);
+            }finally{
+                idle.set(scratch);
+            }
+        }
+        
+        @Override
+        public void evaluateBooleans(EvaluationBatch batch, BitSet out){
+            check(batch, out == null ? -1 : Integer.MAX_VALUE);
+            
+            Scratch scratch = acquire(batch);
+            try{
+                boolean[] values = scratch.booleans(result);
+                booleanNode.evaluate(batch, scratch, null, values);
+                out.clear();
+                for(int i = 0; i < batch.size(); i++){
+                    if(values[i])
+                        out.set(i);
+                }
+            }finally{
+                idle.set(scratch);
+            }
+        }
+        
+        @Override
+        public void evaluateDoubles(EvaluationBatch batch, double[] out){
+            check(batch, out == null ? -1 : out.length);
+            
+            Scratch scratch = acquire(batch);
+            try{
+                doubleNode.evaluate(batch, scratch, null, out);
+            }finally{
+                idle.set(scratch);
+            }
+        }
+        
+        @Override
+        public void evaluateStrings(EvaluationBatch batch, String[] out){
+            check(batch, out == null ? -1 : out.length);
+            
+            Scratch scratch = acquire(batch);
+            try{
+                stringNode.evaluate(batch, scratch, null, out);
+            }finally{
+                idle.set(scratch);
+            }
+        }
+        
+        private Scratch acquire(EvaluationBatch batch){
+            Scratch scratch = idle.getAndSet(null);
+            if(scratch == null)
+                scratch = new Scratch(booleanColumns, doubleColumns, stringColumns);
+            
+            scratch.size = batch.size();
+            return scratch;
+        }
+        
+        private static void check(EvaluationBatch batch, int length){
+            CheckUtil.notNull(batch, BatchCompiler.class, "Batch");
+            if(length < 0)
+                throw new IllegalArgumentException("[BatchCompiler] Out may not be null.");
+            if(length < batch.size())
+                throw new IllegalArgumentException("[BatchCompiler] Out is smaller than the batch.");
+        }
+    }
+}
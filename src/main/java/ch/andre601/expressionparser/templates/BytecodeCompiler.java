@@ -0,0 +1,523 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.andre601.expressionparser.templates;
+
+import ch.andre601.expressionparser.expressions.ToBooleanExpression;
+import ch.andre601.expressionparser.expressions.ToDoubleExpression;
+import ch.andre601.expressionparser.expressions.ToStringExpression;
+import ch.andre601.expressionparser.internal.ClassFileWriter;
+import ch.andre601.expressionparser.internal.ClassFileWriter.Code;
+import ch.andre601.expressionparser.internal.ClassFileWriter.Label;
+
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static ch.andre601.expressionparser.internal.ClassFileWriter.*;
+
+/**
+ * Compiles trees of the {@link ExpressionTemplate ExpressionTemplates} created through {@link ExpressionTemplates}
+ * into a single hidden class, whose methods compute the boolean, double and String values in one method body each,
+ * instead of calling through a tree of expressions.
+ * <br>The values are exactly the same as the ones of the provided template, including the order in which operands
+ * are evaluated and which operands of {@link ExpressionTemplates#and(java.util.Collection) and} and
+ * {@link ExpressionTemplates#or(java.util.Collection) or} are skipped.
+ * 
+ * <p>Templates not created through ExpressionTemplates, such as ones made by custom operators, can't be compiled.
+ * Their expressions are requested once while compiling and called by the compiled class as they are.
+ * <br>Templates that can't be compiled at all, such as ones with operands that failed to parse or too large to fit
+ * into a class, are returned unchanged.
+ * 
+ * <p>Compiled classes are not kept alive by this class and are unloaded once the compiled template is no longer used.
+ */
+public class BytecodeCompiler{
+    
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    
+    private static final String CLASS_NAME = "ch/andre601/expressionparser/templates/CompiledExpression";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String STRING = "java/lang/String";
+    private static final String STRING_BUILDER = "java/lang/StringBuilder";
+    private static final String BOOLEAN = "java/lang/Boolean";
+    private static final String NUMBER_FORMATTER = "ch/andre601/expressionparser/internal/NumberFormatter";
+    private static final String NUMBER_PARSER = "ch/andre601/expressionparser/internal/NumberParser";
+    private static final String EVALUATION_CONTEXT = "ch/andre601/expressionparser/expressions/EvaluationContext";
+    private static final String CONTEXT_DESCRIPTOR = "L" + EVALUATION_CONTEXT + ";";
+    
+    private final ClassFileWriter writer = new ClassFileWriter(CLASS_NAME, OBJECT, Kind.BOOLEAN.expression, Kind.DOUBLE.expression, Kind.STRING.expression);
+    // Expressions of templates that can't be compiled, stored in fields of the compiled class.
+    private final List<Object> leaves = new ArrayList<>();
+    private final Map<ExpressionTemplate, Integer[]> leafIndices = new IdentityHashMap<>();
+    // Local variable holding the EvaluationContext in the method currently written.
+    private int context;
+    
+    private BytecodeCompiler(){}
+    
+    /**
+     * Compiles the provided {@link ExpressionTemplate} into a template with the same boolean, double and String values.
+     * 
+     * @param  template
+     *         The ExpressionTemplate to compile.
+     * 
+     * @return The compiled ExpressionTemplate, or the provided one if it can't be compiled.
+     */
+    public static ExpressionTemplate compile(ExpressionTemplate template){
+        ExpressionTemplate source = CommonSubexpressionEliminator.original(template);
+        if(!(source instanceof ExpressionTemplates.Composite))
+            return template;
+        
+        BytecodeCompiler compiler = new BytecodeCompiler();
+        byte[] bytes;
+        try{
+            bytes = compiler.write(source);
+        }catch(IllegalStateException ex){
+            return template;
+        }
+        
+        return new CompiledTemplate(compiler.define(bytes));
+    }
+    
+    private byte[] write(ExpressionTemplate template){
+        // The methods without a context evaluate with the empty one, the same way the expressions of Expressions do.
+        for(Kind kind : Kind.values()){
+            context = 1;
+            Code code = writer.addMethod(ACC_PUBLIC, "evaluate", "(" + CONTEXT_DESCRIPTOR + ")" + kind.descriptor);
+            emit(code, template, kind);
+            code.insn(kind.returnOpcode);
+            
+            writer.addMethod(ACC_PUBLIC, "evaluate", "()" + kind.descriptor)
+                .load(0).getStatic(EVALUATION_CONTEXT, "EMPTY", CONTEXT_DESCRIPTOR)
+                .invokeVirtual(CLASS_NAME, "evaluate", "(" + CONTEXT_DESCRIPTOR + ")" + kind.descriptor)
+                .insn(kind.returnOpcode);
+        }
+        
+        context = 2;
+        Code appendTo = writer.addMethod(ACC_PUBLIC, "appendTo", "(L" + STRING_BUILDER + ";" + CONTEXT_DESCRIPTOR + ")V");
+        appendTo.load(1);
+        emitAppend(appendTo, template);
+        appendTo.insn(POP).insn(RETURN);
+        
+        writer.addMethod(ACC_PUBLIC, "appendTo", "(L" + STRING_BUILDER + ";)V")
+            .load(0).load(1).getStatic(EVALUATION_CONTEXT, "EMPTY", CONTEXT_DESCRIPTOR)
+            .invokeVirtual(CLASS_NAME, "appendTo", "(L" + STRING_BUILDER + ";" + CONTEXT_DESCRIPTOR + ")V")
+            .insn(RETURN);
+        
+        // Leaves are only known once all methods are written.
+        Code constructor = writer.addMethod(ACC_PUBLIC, "<init>", "([L" + OBJECT + ";)V");
+        constructor.load(0).invokeSpecial(OBJECT, "<init>", "()V");
+        for(Integer[] indices : leafIndices.values()){
+            for(Kind kind : Kind.values()){
+                Integer index = indices[kind.ordinal()];
+                if(index == null)
+                    continue;
+                
+                constructor.load(0).load(1).push(index).insn(AALOAD)
+                    .checkCast(kind.expression)
+                    .putField(CLASS_NAME, "leaf" + index, "L" + kind.expression + ";");
+            }
+        }
+        constructor.insn(RETURN);
+        
+        return writer.toByteArray();
+    }
+    
+    private Object define(byte[] bytes){
+        try{
+            Class<?> type = LOOKUP.defineHiddenClass(bytes, true).lookupClass();
+            
+            return type.getConstructor(Object[].class).newInstance((Object)leaves.toArray());
+        }catch(ReflectiveOperationException ex){
+            throw new IllegalStateException("[BytecodeCompiler] Unable to create compiled expression.", ex);
+        }
+    }
+    
+    // Pushes the value of the provided kind.
+    private void emit(Code code, ExpressionTemplate template, Kind kind){
+        if(isConstant(template, kind)){
+            switch(kind){
+                case BOOLEAN -> code.push(template.returnBooleanExpression().evaluate() ? 1 : 0);
+                case DOUBLE -> code.push(template.returnDoubleExpression().evaluate());
+                case STRING -> code.push(template.returnStringExpression().evaluate());
+            }
+            return;
+        }
+        
+        Kind nativeKind = emitNative(code, template);
+        if(nativeKind == null){
+            loadLeaf(code, template, kind);
+            code.load(context).invokeInterface(kind.expression, "evaluate", "(" + CONTEXT_DESCRIPTOR + ")" + kind.descriptor);
+            return;
+        }
+        
+        // Same conversions as the ones of Conversions.
+        switch(nativeKind){
+            case BOOLEAN -> {
+                if(kind == Kind.DOUBLE){
+                    code.insn(I2D);
+                }else
+                if(kind == Kind.STRING){
+                    code.invokeStatic(BOOLEAN, "toString", "(Z)L" + STRING + ";");
+                }
+            }
+            case DOUBLE -> {
+                if(kind == Kind.BOOLEAN){
+                    // dcmpl returns -1 for NaN, so the lowest bit is set for anything but zero.
+                    code.push(0.0).insn(DCMPL).insn(ICONST_1).insn(IAND);
+                }else
+                if(kind == Kind.STRING){
+                    code.invokeStatic(NUMBER_FORMATTER, "toString", "(D)L" + STRING + ";");
+                }
+            }
+            case STRING -> {
+                if(kind == Kind.BOOLEAN){
+                    code.invokeStatic(BOOLEAN, "parseBoolean", "(L" + STRING + ";)Z");
+                }else
+                if(kind == Kind.DOUBLE){
+                    // Turns [text] into [text, false, text.length()].
+                    code.insn(DUP).invokeVirtual(STRING, "length", "()I").insn(I2D)
+                        .insn(ICONST_0).insn(DUP_X2).insn(POP)
+                        .invokeStatic(NUMBER_PARSER, "parseOrDefault", "(L" + STRING + ";ZD)D");
+                }
+            }
+        }
+    }
+    
+    // Appends the String value to the StringBuilder on top of the stack, the same way ToStringExpression.appendTo does.
+    private void emitAppend(Code code, ExpressionTemplate template){
+        if(template instanceof ExpressionTemplates.Concatenate concatenate){
+            for(ExpressionTemplate operand : operands(concatenate)){
+                emitAppend(code, operand);
+            }
+            return;
+        }
+        
+        if(isConstant(template, Kind.STRING)){
+            code.push(template.returnStringExpression().evaluate());
+            code.invokeVirtual(STRING_BUILDER, "append", "(L" + STRING + ";)L" + STRING_BUILDER + ";");
+            return;
+        }
+        
+        Kind nativeKind = emitNative(code, template);
+        if(nativeKind == null){
+            code.insn(DUP);
+            loadLeaf(code, template, Kind.STRING);
+            code.insn(SWAP).load(context).invokeInterface(Kind.STRING.expression, "appendTo", "(L" + STRING_BUILDER + ";" + CONTEXT_DESCRIPTOR + ")V");
+            return;
+        }
+        
+        switch(nativeKind){
+            case BOOLEAN -> code.invokeVirtual(STRING_BUILDER, "append", "(Z)L" + STRING_BUILDER + ";");
+            case DOUBLE -> code.invokeStatic(NUMBER_FORMATTER, "appendTo", "(L" + STRING_BUILDER + ";D)L" + STRING_BUILDER + ";");
+            case STRING -> code.invokeVirtual(STRING_BUILDER, "append", "(L" + STRING + ";)L" + STRING_BUILDER + ";");
+        }
+    }
+    
+    // Pushes the value the provided template computes itself, or returns null without writing anything.
+    private Kind emitNative(Code code, ExpressionTemplate template){
+        if(template instanceof ExpressionTemplates.BooleanVariable variable){
+            code.load(context).push(variable.slot).invokeVirtual(EVALUATION_CONTEXT, "getBoolean", "(I)Z");
+            return Kind.BOOLEAN;
+        }
+        
+        if(template instanceof ExpressionTemplates.DoubleVariable variable){
+            code.load(context).push(variable.slot).invokeVirtual(EVALUATION_CONTEXT, "getDouble", "(I)D");
+            return Kind.DOUBLE;
+        }
+        
+        if(template instanceof ExpressionTemplates.StringVariable variable){
+            code.load(context).push(variable.slot).invokeVirtual(EVALUATION_CONTEXT, "getString", "(I)L" + STRING + ";");
+            return Kind.STRING;
+        }
+        
+        if(template instanceof ExpressionTemplates.Negation negation){
+            emit(code, operands(negation).get(0), Kind.BOOLEAN);
+            code.insn(ICONST_1).insn(IXOR);
+            return Kind.BOOLEAN;
+        }
+        
+        if(template instanceof ExpressionTemplates.And and){
+            emitJunction(code, operands(and), IFEQ);
+            return Kind.BOOLEAN;
+        }
+        
+        if(template instanceof ExpressionTemplates.Or or){
+            emitJunction(code, operands(or), IFNE);
+            return Kind.BOOLEAN;
+        }
+        
+        if(template instanceof ExpressionTemplates.Concatenate concatenate){
+            code.newInstance(STRING_BUILDER);
+            emitAppend(code, concatenate);
+            code.invokeVirtual(STRING_BUILDER, "toString", "()L" + STRING + ";");
+            return Kind.STRING;
+        }
+        
+        ExpressionTemplates.Comparison comparison = ExpressionTemplates.Comparison.of(template);
+        if(comparison != null){
+            emitOperands(code, (ExpressionTemplates.Composite)template, kind(comparison));
+            emitComparison(code, comparison);
+            return Kind.BOOLEAN;
+        }
+        
+        if(template instanceof ExpressionTemplates.Chain chain){
+            emitChain(code, chain);
+            return Kind.BOOLEAN;
+        }
+        
+        if(template instanceof ExpressionTemplates.Interval interval){
+            emitInterval(code, interval);
+            return Kind.BOOLEAN;
+        }
+        
+        if(template instanceof ExpressionTemplates.Sum sum){
+            code.push(0.0);
+            for(ExpressionTemplate operand : operands(sum)){
+                emit(code, operand, Kind.DOUBLE);
+                code.insn(DADD);
+            }
+            return Kind.DOUBLE;
+        }
+        
+        if(template instanceof ExpressionTemplates.Product product){
+            code.push(1.0);
+            for(ExpressionTemplate operand : operands(product)){
+                emit(code, operand, Kind.DOUBLE);
+                code.insn(DMUL);
+            }
+            return Kind.DOUBLE;
+        }
+        
+        if(template instanceof ExpressionTemplates.Sub sub){
+            emitOperands(code, sub, Kind.DOUBLE);
+            code.insn(DSUB);
+            return Kind.DOUBLE;
+        }
+        
+        if(template instanceof ExpressionTemplates.Div div){
+            emitOperands(code, div, Kind.DOUBLE);
+            code.insn(DDIV);
+            return Kind.DOUBLE;
+        }
+        
+        if(template instanceof ExpressionTemplates.NegationNumber negation){
+            emit(code, operands(negation).get(0), Kind.DOUBLE);
+            code.insn(DNEG);
+            return Kind.DOUBLE;
+        }
+        
+        return null;
+    }
+    
+    // Evaluates operands until one has the value that decides the result, which is then the result itself.
+    private void emitJunction(Code code, List<ExpressionTemplate> operands, int jumpOpcode){
+        Label decided = new Label();
+        Label end = new Label();
+        
+        for(int i = 0; i < operands.size() - 1; i++){
+            emit(code, operands.get(i), Kind.BOOLEAN);
+            code.jump(jumpOpcode, decided);
+        }
+        emit(code, operands.get(operands.size() - 1), Kind.BOOLEAN);
+        
+        if(operands.size() > 1){
+            code.jump(GOTO, end);
+            code.mark(decided).insn(jumpOpcode == IFEQ ? ICONST_0 : ICONST_1);
+            code.mark(end);
+        }
+    }
+    
+    /*
+     * Evaluates the comparisons in order until one is false. The right operand of each comparison is kept below its
+     * result, so that the next comparison can use it as its left operand, unless that one compares the other kind of
+     * value and evaluates the operand again.
+     */
+    private void emitChain(Code code, ExpressionTemplates.Chain chain){
+        List<ExpressionTemplate> operands = operands(chain);
+        List<ExpressionTemplates.Comparison> comparisons = chain.comparisons();
+        Label[] failed = new Label[comparisons.size() - 1];
+        Label end = new Label();
+        
+        for(int i = 0; i < comparisons.size(); i++){
+            ExpressionTemplates.Comparison comparison = comparisons.get(i);
+            if(i == 0){
+                emit(code, operands.get(i), kind(comparison));
+            }else
+            if(comparisons.get(i - 1).numeric != comparison.numeric){
+                code.insn(comparisons.get(i - 1).numeric ? POP2 : POP);
+                emit(code, operands.get(i), kind(comparison));
+            }
+            
+            emit(code, operands.get(i + 1), kind(comparison));
+            if(i < failed.length){
+                code.insn(comparison.numeric ? DUP2_X2 : DUP_X1);
+                emitComparison(code, comparison);
+                failed[i] = new Label();
+                code.jump(IFEQ, failed[i]);
+            }else{
+                emitComparison(code, comparison);
+            }
+        }
+        code.jump(GOTO, end);
+        
+        for(int i = 0; i < failed.length; i++){
+            code.mark(failed[i]).insn(comparisons.get(i).numeric ? POP2 : POP).insn(ICONST_0).jump(GOTO, end);
+        }
+        code.mark(end);
+    }
+    
+    // Compares the value with the lower bound, keeping a copy of it for the comparison with the upper bound.
+    private void emitInterval(Code code, ExpressionTemplates.Interval interval){
+        Label failed = new Label();
+        Label end = new Label();
+        
+        emit(code, operands(interval).get(0), Kind.DOUBLE);
+        code.insn(DUP2).push(interval.lower);
+        emitComparison(code, interval.lowerComparison());
+        code.jump(IFEQ, failed);
+        code.push(interval.upper);
+        emitComparison(code, interval.upperComparison());
+        code.jump(GOTO, end);
+        
+        code.mark(failed).insn(POP2).insn(ICONST_0);
+        code.mark(end);
+    }
+    
+    // Compares the two values on top of the stack, which are doubles for numeric comparisons and Strings otherwise.
+    private static void emitComparison(Code code, ExpressionTemplates.Comparison comparison){
+        switch(comparison){
+            case EQUAL -> code.invokeVirtual(STRING, "equals", "(L" + OBJECT + ";)Z");
+            case NOT_EQUAL -> code.invokeVirtual(STRING, "equals", "(L" + OBJECT + ";)Z").insn(ICONST_1).insn(IXOR);
+            case EQUAL_IGNORE_CASE -> code.invokeVirtual(STRING, "equalsIgnoreCase", "(L" + STRING + ";)Z");
+            case NOT_EQUAL_IGNORE_CASE -> code.invokeVirtual(STRING, "equalsIgnoreCase", "(L" + STRING + ";)Z").insn(ICONST_1).insn(IXOR);
+            case STARTS_WITH -> code.invokeVirtual(STRING, "startsWith", "(L" + STRING + ";)Z");
+            case ENDS_WITH -> code.invokeVirtual(STRING, "endsWith", "(L" + STRING + ";)Z");
+            case CONTAINS -> code.invokeVirtual(STRING, "contains", "(Ljava/lang/CharSequence;)Z");
+            case EQUAL_NUMBERS -> code.invokeStatic(NUMBER_FORMATTER, "isSameString", "(DD)Z");
+            case NOT_EQUAL_NUMBERS -> code.invokeStatic(NUMBER_FORMATTER, "isSameString", "(DD)Z").insn(ICONST_1).insn(IXOR);
+            // The comparisons turn the result of dcmpl/dcmpg (-1, 0 or 1) into 0 or 1 through its sign bit.
+            case GREATER -> code.insn(DCMPL).insn(INEG).push(31).insn(IUSHR);
+            case GREATER_OR_EQUAL -> code.insn(DCMPL).push(-1).insn(IXOR).push(31).insn(IUSHR);
+            case LESS -> code.insn(DCMPG).push(31).insn(IUSHR);
+            case LESS_OR_EQUAL -> code.insn(DCMPG).insn(ICONST_1).insn(ISUB).push(31).insn(IUSHR);
+        }
+    }
+    
+    private static Kind kind(ExpressionTemplates.Comparison comparison){
+        return comparison.numeric ? Kind.DOUBLE : Kind.STRING;
+    }
+    
+    private void emitOperands(Code code, ExpressionTemplates.Composite template, Kind kind){
+        for(ExpressionTemplate operand : operands(template)){
+            emit(code, operand, kind);
+        }
+    }
+    
+    private void loadLeaf(Code code, ExpressionTemplate template, Kind kind){
+        Integer[] indices = leafIndices.computeIfAbsent(template, key -> new Integer[Kind.values().length]);
+        Integer index = indices[kind.ordinal()];
+        if(index == null){
+            Object expression;
+            try{
+                expression = kind.expression(template);
+            }catch(RuntimeException ex){
+                throw new IllegalStateException("[BytecodeCompiler] Template failed to create its expression.", ex);
+            }
+            if(expression == null)
+                throw new IllegalStateException("[BytecodeCompiler] Template returned a null expression.");
+            
+            index = leaves.size();
+            indices[kind.ordinal()] = index;
+            leaves.add(expression);
+            writer.addField(ACC_PRIVATE | ACC_FINAL, "leaf" + index, "L" + kind.expression + ";");
+        }
+        
+        code.load(0).getField(CLASS_NAME, "leaf" + index, "L" + kind.expression + ";");
+    }
+    
+    // Templates with missing operands throw once their expressions are created, which is left to the original template.
+    private static List<ExpressionTemplate> operands(ExpressionTemplates.Composite template){
+        List<ExpressionTemplate> operands = template.operands();
+        if(operands.isEmpty() || operands.contains(null))
+            throw new IllegalStateException("[BytecodeCompiler] Template has missing operands.");
+        
+        return operands;
+    }
+    
+    private static boolean isConstant(ExpressionTemplate template, Kind kind){
+        if(template.getClass() != ConstantExpressionTemplate.class)
+            return false;
+        
+        return kind != Kind.STRING || ClassFileWriter.isConstant(template.returnStringExpression().evaluate());
+    }
+    
+    private enum Kind{
+        BOOLEAN("Z", "ch/andre601/expressionparser/expressions/ToBooleanExpression", IRETURN),
+        DOUBLE("D", "ch/andre601/expressionparser/expressions/ToDoubleExpression", DRETURN),
+        STRING("L" + BytecodeCompiler.STRING + ";", "ch/andre601/expressionparser/expressions/ToStringExpression", ARETURN);
+        
+        private final String descriptor;
+        private final String expression;
+        private final int returnOpcode;
+        
+        Kind(String descriptor, String expression, int returnOpcode){
+            this.descriptor = descriptor;
+            this.expression = expression;
+            this.returnOpcode = returnOpcode;
+        }
+        
+        Object expression(ExpressionTemplate template){
+            return switch(this){
+                case BOOLEAN -> template.returnBooleanExpression();
+                case DOUBLE -> template.returnDoubleExpression();
+                case STRING -> template.returnStringExpression();
+            };
+        }
+    }
+    
+    // The compiled class implements all three expression interfaces, as their evaluate methods differ in return type.
+    private static final class CompiledTemplate implements ExpressionTemplate{
+        
+        private final ToBooleanExpression booleanExpression;
+        private final ToDoubleExpression doubleExpression;
+        private final ToStringExpression stringExpression;
+        
+        private CompiledTemplate(Object expression){
+            this.booleanExpression = (ToBooleanExpression)expression;
+            this.doubleExpression = (ToDoubleExpression)expression;
+            this.stringExpression = (ToStringExpression)expression;
+        }
+        
+        @Override
+        public ToBooleanExpression returnBooleanExpression(){
+            return booleanExpression;
+        }
+        
+        @Override
+        public ToDoubleExpression returnDoubleExpression(){
+            return doubleExpression;
+        }
+        
+        @Override
+        public ToStringExpression returnStringExpression(){
+            return stringExpression;
+        }
+    }
+}
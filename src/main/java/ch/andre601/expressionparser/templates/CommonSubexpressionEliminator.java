@@ -0,0 +1,619 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser.templates;
+
+import ch.andre601.expressionparser.expressions.EvaluationContext;
+import ch.andre601.expressionparser.expressions.ToBooleanExpression;
+import ch.andre601.expressionparser.expressions.ToDoubleExpression;
+import ch.andre601.expressionparser.expressions.ToStringExpression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rewrites trees of the {@link ExpressionTemplate ExpressionTemplates} created through {@link ExpressionTemplates} so
+ * that parts appearing multiple times within them, such as the placeholder in
+ * {@code ${ping} > 100 and ${ping} < 300 or ${ping} == 0}, are only evaluated once per evaluation.
+ * <br>Each evaluation of the rewritten template keeps the values of these parts in a few arrays created for it alone.
+ * Nothing is kept between evaluations, so variables and placeholders may change in between them.
+ * 
+ * <p>Parts are the same if they are templates of ExpressionTemplates of the same kind with the same operands, or
+ * templates not created through ExpressionTemplates which are {@link Object#equals(Object) equal}. Sharing repeated
+ * custom templates therefore requires them to implement equals and {@link Object#hashCode() hashCode} based on their
+ * values, while ones keeping the methods of Object are only shared with themselves.
+ * <br>Only parts being or containing a template not created through ExpressionTemplates, such as a placeholder, are
+ * shared, as parts only made of the templates of ExpressionTemplates, constants and variables are evaluated again
+ * faster than their values can be stored. At most 64 parts are shared per template.
+ * <br>Parts being or containing a template whose {@link ExpressionTemplate#isPure() isPure()} returns false are never
+ * shared. Parts are still only evaluated once they are needed, so operands of
+ * {@link ExpressionTemplates#and(java.util.Collection) and} and {@link ExpressionTemplates#or(java.util.Collection) or}
+ * skipped before are still skipped.
+ * 
+ * <p>{@link BytecodeCompiler}, {@link MethodHandleCompiler}, {@link BatchCompiler} and {@link TemplateSerializer}
+ * use the template as it was before being rewritten.
+ */
+public class CommonSubexpressionEliminator{
+    
+    // Parts beyond this amount are evaluated as often as before, so that frames can mark evaluated values in a long.
+    private static final int MAX_SLOTS = 64;
+    
+    private final Map<ExpressionTemplate, Node> nodes = new IdentityHashMap<>();
+    private final Map<List<Object>, Node> canonical = new HashMap<>();
+    // Every distinct part, with operands before the templates holding them.
+    private final List<Node> order = new ArrayList<>();
+    private boolean complete = true;
+    
+    private CommonSubexpressionEliminator(){}
+    
+    /**
+     * Rewrites the provided {@link ExpressionTemplate} to evaluate parts appearing multiple times within it only once
+     * per evaluation, returning a template with the same boolean, double and String values.
+     * 
+     * @param  template
+     *         The ExpressionTemplate to rewrite.
+     * 
+     * @return The rewritten ExpressionTemplate, or the provided one if no part appears more than once.
+     */
+    public static ExpressionTemplate eliminate(ExpressionTemplate template){
+        if(!(template instanceof ExpressionTemplates.Composite))
+            return template;
+        
+        CommonSubexpressionEliminator eliminator = new CommonSubexpressionEliminator();
+        Node root = eliminator.visit(template);
+        // Templates with operands that failed to parse throw once their expressions are requested, so leave them as-is.
+        if(!eliminator.complete)
+            return template;
+        
+        return eliminator.rewrite(template, root);
+    }
+    
+    /*
+     * Returns the template the provided one has been rewritten from, for compilers and serializers to work with the
+     * templates they know.
+     */
+    static ExpressionTemplate original(ExpressionTemplate template){
+        if(template instanceof Rewritten rewritten)
+            return rewritten.original();
+        
+        return template;
+    }
+    
+    private Node visit(ExpressionTemplate template){
+        Node node = nodes.get(template);
+        if(node == null){
+            node = canonicalize(template);
+            nodes.put(template, node);
+        }
+        
+        return node;
+    }
+    
+    private Node canonicalize(ExpressionTemplate template){
+        List<Node> operands = null;
+        boolean pure = template.isPure();
+        boolean custom = false;
+        List<Object> key;
+        if(template instanceof ExpressionTemplates.Composite composite){
+            operands = new ArrayList<>();
+            for(ExpressionTemplate operand : composite.operands()){
+                if(operand == null){
+                    complete = false;
+                    operands.add(null);
+                    continue;
+                }
+                
+                Node node = visit(operand);
+                pure &= node.pure;
+                custom |= node.custom;
+                operands.add(node);
+            }
+            
+            // Operands are the same node for the same part, so comparing them by identity is enough.
+            key = new ArrayList<>(operands.size() + 1);
+            key.add(composite.kind());
+            key.addAll(operands);
+        }else
+        if(template.getClass() == ConstantExpressionTemplate.class){
+            key = Arrays.asList(
+                ConstantExpressionTemplate.class,
+                template.returnBooleanExpression().evaluate(),
+                Double.doubleToRawLongBits(template.returnDoubleExpression().evaluate()),
+                template.returnStringExpression().evaluate()
+            );
+        }else
+        if(template instanceof ExpressionTemplates.BooleanVariable variable){
+            key = Arrays.asList(ExpressionTemplates.BooleanVariable.class, variable.slot);
+        }else
+        if(template instanceof ExpressionTemplates.DoubleVariable variable){
+            key = Arrays.asList(ExpressionTemplates.DoubleVariable.class, variable.slot);
+        }else
+        if(template instanceof ExpressionTemplates.StringVariable variable){
+            key = Arrays.asList(ExpressionTemplates.StringVariable.class, variable.slot);
+        }else{
+            key = Arrays.asList(Node.class, template);
+            custom = true;
+        }
+        
+        // Impure parts are never the same as another one.
+        if(!pure)
+            key = Arrays.asList(new Object());
+        
+        Node node = canonical.get(key);
+        if(node == null){
+            node = new Node(template, operands, pure, custom);
+            canonical.put(key, node);
+            order.add(node);
+        }
+        
+        return node;
+    }
+    
+    private ExpressionTemplate rewrite(ExpressionTemplate template, Node root){
+        // Only the operands of the first template of each part are counted, as the others are replaced with it.
+        for(Node node : order){
+            if(node.operands == null)
+                continue;
+            
+            for(Node operand : node.operands){
+                operand.uses++;
+            }
+        }
+        
+        // Parts only made of templates of ExpressionTemplates, constants and variables are evaluated again faster than
+        // a frame holding their values is created.
+        int slots = 0;
+        for(Node node : order){
+            if(node.uses > 1 && node.pure && node.custom && slots < MAX_SLOTS)
+                node.slot = slots++;
+        }
+        
+        if(slots == 0)
+            return template;
+        
+        Layout layout = new Layout(slots);
+        for(Node node : order){
+            ExpressionTemplate result = node.template;
+            if(node.operands != null){
+                List<ExpressionTemplate> operands = ((ExpressionTemplates.Composite)node.template).operands();
+                List<ExpressionTemplate> rewritten = new ArrayList<>(operands.size());
+                boolean changed = false;
+                for(int i = 0; i < operands.size(); i++){
+                    ExpressionTemplate operand = node.operands.get(i).rewritten;
+                    
+                    changed |= operand != operands.get(i);
+                    rewritten.add(operand);
+                }
+                
+                if(changed)
+                    result = ((ExpressionTemplates.Composite)node.template).withOperands(rewritten);
+            }
+            
+            node.rewritten = node.slot < 0 ? result : share(result, layout, node.slot);
+        }
+        
+        ExpressionTemplate result = root.rewritten;
+        if(result instanceof ExpressionTemplates.MemoizedBooleanTemplate)
+            return new RootBooleanTemplate(template, result, layout);
+        
+        if(result instanceof ExpressionTemplates.MemoizedDoubleTemplate)
+            return new RootDoubleTemplate(template, result, layout);
+        
+        return new RootStringTemplate(template, result, layout);
+    }
+    
+    // Templates of ExpressionTemplates keep converting their values from the one they compute, so only that is stored.
+    private static ExpressionTemplate share(ExpressionTemplate template, Layout layout, int slot){
+        if(template instanceof ExpressionTemplates.MemoizedBooleanTemplate)
+            return new SharedBooleanTemplate(template, layout, slot);
+        
+        if(template instanceof ExpressionTemplates.MemoizedDoubleTemplate)
+            return new SharedDoubleTemplate(template, layout, slot);
+        
+        if(template instanceof ExpressionTemplates.MemoizedStringTemplate)
+            return new SharedStringTemplate(template, layout, slot);
+        
+        return new SharedTemplate(template, layout, slot);
+    }
+    
+    private static class Node{
+        
+        private final ExpressionTemplate template;
+        private final List<Node> operands;
+        private final boolean pure;
+        // Whether the part is or contains a template not created through ExpressionTemplates.
+        private final boolean custom;
+        
+        private int uses = 0;
+        private int slot = -1;
+        private ExpressionTemplate rewritten;
+        
+        Node(ExpressionTemplate template, List<Node> operands, boolean pure, boolean custom){
+            this.template = template;
+            this.operands = operands;
+            this.pure = pure;
+            this.custom = custom;
+        }
+    }
+    
+    /*
+     * Identifies the slots of one rewritten template, so that shared parts only ever use the values of evaluations of
+     * the template they belong to.
+     */
+    private static class Layout{
+        
+        private final int slots;
+        
+        Layout(int slots){
+            this.slots = slots;
+        }
+    }
+    
+    /*
+     * Context of a single evaluation of a rewritten template, holding the values of its shared parts next to the
+     * variables of the context it has been evaluated with.
+     */
+    private static class Frame extends EvaluationContext{
+        
+        private final Layout layout;
+        // Bit n marks the value of slot n as evaluated.
+        private long evaluatedBooleans = 0;
+        private long evaluatedDoubles = 0;
+        private long evaluatedStrings = 0;
+        private boolean[] booleanValues;
+        private double[] doubleValues;
+        private String[] stringValues;
+        
+        Frame(EvaluationContext context, Layout layout){
+            super(context);
+            this.layout = layout;
+        }
+        
+        boolean evaluateBoolean(int slot, ToBooleanExpression expression){
+            if((evaluatedBooleans & (1L << slot)) != 0)
+                return booleanValues[slot];
+            
+            boolean value = expression.evaluate(this);
+            if(booleanValues == null)
+                booleanValues = new boolean[layout.slots];
+            
+            booleanValues[slot] = value;
+            evaluatedBooleans |= 1L << slot;
+            return value;
+        }
+        
+        double evaluateDouble(int slot, ToDoubleExpression expression){
+            if((evaluatedDoubles & (1L << slot)) != 0)
+                return doubleValues[slot];
+            
+            double value = expression.evaluate(this);
+            if(doubleValues == null)
+                doubleValues = new double[layout.slots];
+            
+            doubleValues[slot] = value;
+            evaluatedDoubles |= 1L << slot;
+            return value;
+        }
+        
+        String evaluateString(int slot, ToStringExpression expression){
+            if((evaluatedStrings & (1L << slot)) != 0)
+                return stringValues[slot];
+            
+            String value = expression.evaluate(this);
+            if(stringValues == null)
+                stringValues = new String[layout.slots];
+            
+            stringValues[slot] = value;
+            evaluatedStrings |= 1L << slot;
+            return value;
+        }
+    }
+    
+    /*
+     * Expressions of shared parts. Evaluated with any context other than a frame of their template, such as by
+     * expressions not passing theirs on, they evaluate the part again.
+     */
+    
+    private static class SharedBooleanExpression implements ToBooleanExpression{
+        
+        private final ToBooleanExpression expression;
+        private final Layout layout;
+        private final int slot;
+        
+        SharedBooleanExpression(ToBooleanExpression expression, Layout layout, int slot){
+            this.expression = expression;
+            this.layout = layout;
+            this.slot = slot;
+        }
+        
+        @Override
+        public boolean evaluate(){
+            return expression.evaluate();
+        }
+        
+        @Override
+        public boolean evaluate(EvaluationContext context){
+            if(context instanceof Frame frame && frame.layout == layout)
+                return frame.evaluateBoolean(slot, expression);
+            
+            return expression.evaluate(context);
+        }
+    }
+    
+    private static class SharedDoubleExpression implements ToDoubleExpression{
+        
+        private final ToDoubleExpression expression;
+        private final Layout layout;
+        private final int slot;
+        
+        SharedDoubleExpression(ToDoubleExpression expression, Layout layout, int slot){
+            this.expression = expression;
+            this.layout = layout;
+            this.slot = slot;
+        }
+        
+        @Override
+        public double evaluate(){
+            return expression.evaluate();
+        }
+        
+        @Override
+        public double evaluate(EvaluationContext context){
+            if(context instanceof Frame frame && frame.layout == layout)
+                return frame.evaluateDouble(slot, expression);
+            
+            return expression.evaluate(context);
+        }
+    }
+    
+    private static class SharedStringExpression implements ToStringExpression{
+        
+        private final ToStringExpression expression;
+        private final Layout layout;
+        private final int slot;
+        
+        SharedStringExpression(ToStringExpression expression, Layout layout, int slot){
+            this.expression = expression;
+            this.layout = layout;
+            this.slot = slot;
+        }
+        
+        @Override
+        public String evaluate(){
+            return expression.evaluate();
+        }
+        
+        @Override
+        public String evaluate(EvaluationContext context){
+            if(context instanceof Frame frame && frame.layout == layout)
+                return frame.evaluateString(slot, expression);
+            
+            return expression.evaluate(context);
+        }
+    }
+    
+    private static class SharedBooleanTemplate extends ExpressionTemplates.MemoizedBooleanTemplate{
+        
+        private final ExpressionTemplate template;
+        private final Layout layout;
+        private final int slot;
+        
+        SharedBooleanTemplate(ExpressionTemplate template, Layout layout, int slot){
+            this.template = template;
+            this.layout = layout;
+            this.slot = slot;
+        }
+        
+        @Override
+        ToBooleanExpression buildBooleanExpression(){
+            return new SharedBooleanExpression(template.returnBooleanExpression(), layout, slot);
+        }
+    }
+    
+    private static class SharedDoubleTemplate extends ExpressionTemplates.MemoizedDoubleTemplate{
+        
+        private final ExpressionTemplate template;
+        private final Layout layout;
+        private final int slot;
+        
+        SharedDoubleTemplate(ExpressionTemplate template, Layout layout, int slot){
+            this.template = template;
+            this.layout = layout;
+            this.slot = slot;
+        }
+        
+        @Override
+        ToDoubleExpression buildDoubleExpression(){
+            return new SharedDoubleExpression(template.returnDoubleExpression(), layout, slot);
+        }
+    }
+    
+    private static class SharedStringTemplate extends ExpressionTemplates.MemoizedStringTemplate{
+        
+        private final ExpressionTemplate template;
+        private final Layout layout;
+        private final int slot;
+        
+        SharedStringTemplate(ExpressionTemplate template, Layout layout, int slot){
+            this.template = template;
+            this.layout = layout;
+            this.slot = slot;
+        }
+        
+        @Override
+        ToStringExpression buildStringExpression(){
+            return new SharedStringExpression(template.returnStringExpression(), layout, slot);
+        }
+    }
+    
+    // Custom templates compute each of their values on their own, so each one is stored.
+    private static class SharedTemplate implements ExpressionTemplate{
+        
+        private final ExpressionTemplate template;
+        private final Layout layout;
+        private final int slot;
+        
+        SharedTemplate(ExpressionTemplate template, Layout layout, int slot){
+            this.template = template;
+            this.layout = layout;
+            this.slot = slot;
+        }
+        
+        @Override
+        public ToBooleanExpression returnBooleanExpression(){
+            return new SharedBooleanExpression(template.returnBooleanExpression(), layout, slot);
+        }
+        
+        @Override
+        public ToDoubleExpression returnDoubleExpression(){
+            return new SharedDoubleExpression(template.returnDoubleExpression(), layout, slot);
+        }
+        
+        @Override
+        public ToStringExpression returnStringExpression(){
+            return new SharedStringExpression(template.returnStringExpression(), layout, slot);
+        }
+    }
+    
+    /*
+     * Rewritten templates, creating a new frame for every evaluation. Evaluating without a context uses the empty
+     * one, the same way the expressions of Expressions do.
+     */
+    
+    private interface Rewritten{
+        
+        ExpressionTemplate original();
+    }
+    
+    private static class RootBooleanTemplate extends ExpressionTemplates.MemoizedBooleanTemplate implements Rewritten{
+        
+        private final ExpressionTemplate original;
+        private final ExpressionTemplate template;
+        private final Layout layout;
+        
+        RootBooleanTemplate(ExpressionTemplate original, ExpressionTemplate template, Layout layout){
+            this.original = original;
+            this.template = template;
+            this.layout = layout;
+        }
+        
+        @Override
+        public ExpressionTemplate original(){
+            return original;
+        }
+        
+        @Override
+        ToBooleanExpression buildBooleanExpression(){
+            ToBooleanExpression expression = template.returnBooleanExpression();
+            return new ToBooleanExpression(){
+                @Override
+                public boolean evaluate(){
+                    return evaluate(EvaluationContext.EMPTY);
+                }
+                
+                @Override
+                public boolean evaluate(EvaluationContext context){
+                    return expression.evaluate(new Frame(context, layout));
+                }
+            };
+        }
+    }
+    
+    private static class RootDoubleTemplate extends ExpressionTemplates.MemoizedDoubleTemplate implements Rewritten{
+        
+        private final ExpressionTemplate original;
+        private final ExpressionTemplate template;
+        private final Layout layout;
+        
+        RootDoubleTemplate(ExpressionTemplate original, ExpressionTemplate template, Layout layout){
+            this.original = original;
+            this.template = template;
+            this.layout = layout;
+        }
+        
+        @Override
+        public ExpressionTemplate original(){
+            return original;
+        }
+        
+        @Override
+        ToDoubleExpression buildDoubleExpression(){
+            ToDoubleExpression expression = template.returnDoubleExpression();
+            return new ToDoubleExpression(){
+                @Override
+                public double evaluate(){
+                    return evaluate(EvaluationContext.EMPTY);
+                }
+                
+                @Override
+                public double evaluate(EvaluationContext context){
+                    return expression.evaluate(new Frame(context, layout));
+                }
+            };
+        }
+    }
+    
+    private static class RootStringTemplate extends ExpressionTemplates.MemoizedStringTemplate implements Rewritten{
+        
+        private final ExpressionTemplate original;
+        private final ExpressionTemplate template;
+        private final Layout layout;
+        
+        RootStringTemplate(ExpressionTemplate original, ExpressionTemplate template, Layout layout){
+            this.original = original;
+            this.template = template;
+            this.layout = layout;
+        }
+        
+        @Override
+        public ExpressionTemplate original(){
+            return original;
+        }
+        
+        @Override
+        ToStringExpression buildStringExpression(){
+            ToStringExpression expression = template.returnStringExpression();
+            return new ToStringExpression(){
+                @Override
+                public String evaluate(){
+                    return evaluate(EvaluationContext.EMPTY);
+                }
+                
+                @Override
+                public String evaluate(EvaluationContext context){
+                    return expression.evaluate(new Frame(context, layout));
+                }
+                
+                @Override
+                public void appendTo(StringBuilder builder){
+                    appendTo(builder, EvaluationContext.EMPTY);
+                }
+                
+                @Override
+                public void appendTo(StringBuilder builder, EvaluationContext context){
+                    expression.appendTo(builder, new Frame(context, layout));
+                }
+            };
+        }
+    }
+}
@@ -23,6 +23,8 @@ import ch.andre601.expressionparser.expressions.ToBooleanExpression;
 import ch.andre601.expressionparser.expressions.ToDoubleExpression;
 import ch.andre601.expressionparser.expressions.ToStringExpression;
 import ch.andre601.expressionparser.internal.CheckUtil;
+import ch.andre601.expressionparser.internal.NumberFormatter;
+import ch.andre601.expressionparser.internal.NumberParser;
 
 /**
  * An {@link ExpressionTemplate ExpressionTemplate instance} that holds a {@link ToBooleanExpression ToBooleanExpression},
@@ -103,7 +105,7 @@ public class ConstantExpressionTemplate implements ExpressionTemplate{
      * @return new ConstantExpressionTemplate holding the ToBooleanExpression, ToDoubleExpression and ToStringExpression instances.
      */
     public static ConstantExpressionTemplate of(double doubleValue){
-        return new ConstantExpressionTemplate(doubleValue != 0, doubleValue, ((int)doubleValue) == doubleValue ? Integer.toString((int)doubleValue) : Double.toString(doubleValue));
+        return new ConstantExpressionTemplate(doubleValue != 0, doubleValue, NumberFormatter.toString(doubleValue));
     }
     
     /**
@@ -111,7 +113,7 @@ public class ConstantExpressionTemplate implements ExpressionTemplate{
      * 
      * <p>For {@link ToBooleanExpression ToBooleanExpression's} boolean value {@link Boolean#parseBoolean(String)} is used.
      * <br>For {@link ToDoubleExpression ToDoubleExpression's} double value {@link Double#parseDouble(String)} is used.
-     * In case of an exception happening, the String's length is used instead.
+     * In case of the String not being a valid number, the String's length is used instead.
      * 
      * @param  stringValue
      *         The String value to use.
@@ -121,12 +123,7 @@ public class ConstantExpressionTemplate implements ExpressionTemplate{
     public static ConstantExpressionTemplate of(String stringValue){
         CheckUtil.notNullOrEmpty(stringValue, ConstantExpressionTemplate.class, "StringValue");
         
-        double doubleValue;
-        try{
-            doubleValue = Double.parseDouble(stringValue);
-        }catch(NumberFormatException ex){
-            doubleValue = stringValue.length();
-        }
+        double doubleValue = NumberParser.parseDoubleOrDefault(stringValue, stringValue.length());
         
         return new ConstantExpressionTemplate(Boolean.parseBoolean(stringValue), doubleValue, stringValue);
     }
@@ -49,4 +49,21 @@ public interface ExpressionTemplate{
      * @return ToStringExpression instance.
      */
     ToStringExpression returnStringExpression();
+    
+    /**
+     * Returns whether the values of this ExpressionTemplate only depend on its operands and variables, without
+     * evaluating it having any side effects.
+     * <br>Pure templates appearing multiple times within the same expression are only evaluated once per evaluation
+     * by {@link CommonSubexpressionEliminator}, should the engine apply it.
+     * <br>Templates reading external state that may change during a single evaluation, such as placeholders of live
+     * values or the current time, as well as templates counting how often they are evaluated, have to override this
+     * method to return false.
+     * 
+     * <p>The default implementation returns true.
+     * 
+     * @return true if this ExpressionTemplate is pure, else false.
+     */
+    default boolean isPure(){
+        return true;
+    }
 }
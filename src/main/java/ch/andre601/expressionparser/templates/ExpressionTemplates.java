@@ -19,15 +19,22 @@
 
 package ch.andre601.expressionparser.templates;
 
+import ch.andre601.expressionparser.expressions.EvaluationContext;
 import ch.andre601.expressionparser.expressions.Expressions;
 import ch.andre601.expressionparser.expressions.ToBooleanExpression;
 import ch.andre601.expressionparser.expressions.ToDoubleExpression;
 import ch.andre601.expressionparser.expressions.ToStringExpression;
+import ch.andre601.expressionparser.internal.NumberFormatter;
 import ch.andre601.expressionparser.templates.abstracted.AbstractBooleanExpressionTemplate;
 import ch.andre601.expressionparser.templates.abstracted.AbstractDoubleExpressionTemplate;
 import ch.andre601.expressionparser.templates.abstracted.AbstractStringExpressionTemplate;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * Class containing a collection of pre-made {@link ExpressionTemplate} actions.
@@ -266,6 +273,50 @@ public class ExpressionTemplates{
         return new LessOrEqual(a, b);
     }
     
+    /**
+     * Returns a {@link ExpressionTemplate} who's boolean value returns true if and only if all provided comparisons
+     * return true, such as {@code a < b} and {@code b < c} for {@code a < b < c}.
+     * <br>Comparisons created through this class, whose second operand is the first operand of the next comparison,
+     * are combined into a single template evaluating each operand only once, in order, and stopping at the first
+     * comparison that is false. Any other comparisons are combined through {@link #and(Collection) and}.
+     *
+     * @param  comparisons
+     *         List of ExpressionTemplates to chain, in the order they are evaluated in.
+     *
+     * @return ExpressionTemplate who's boolean value returns true if and only if all provided comparisons return true.
+     */
+    public static ExpressionTemplate chain(List<ExpressionTemplate> comparisons){
+        if(comparisons.size() < 2 || !Chain.isChain(comparisons))
+            return new And(comparisons);
+        
+        return new Chain(comparisons);
+    }
+    
+    /**
+     * Returns a {@link ExpressionTemplate} who's boolean value returns true if the double value of the provided
+     * ExpressionTemplate is between the provided bounds, evaluating the ExpressionTemplate only once.
+     * <br>The boolean value is the same as the one of {@code template >= lower and template <= upper}, using
+     * {@code >} and {@code <} instead for bounds that aren't inclusive. A NaN value, or a NaN bound, is never within
+     * the bounds.
+     *
+     * @param  template
+     *         The ExpressionTemplate whose double value to check.
+     * @param  lower
+     *         The lower bound.
+     * @param  lowerInclusive
+     *         Whether the lower bound itself is within the bounds.
+     * @param  upper
+     *         The upper bound.
+     * @param  upperInclusive
+     *         Whether the upper bound itself is within the bounds.
+     *
+     * @return ExpressionTemplate who's boolean value returns true when the double value of the provided
+     *         ExpressionTemplate is between the provided bounds.
+     */
+    public static ExpressionTemplate interval(ExpressionTemplate template, double lower, boolean lowerInclusive, double upper, boolean upperInclusive){
+        return new Interval(template, lower, lowerInclusive, upper, upperInclusive);
+    }
+    
     /**
      * Returns a {@link ExpressionTemplate} who's double value is the sum of all double values from the provided
      * ExpressionTemplates.
@@ -336,7 +387,311 @@ public class ExpressionTemplates{
         return new NegationNumber(template);
     }
     
-    private static class Negation extends AbstractBooleanExpressionTemplate{
+    /**
+     * Returns a {@link ExpressionTemplate} who's boolean value is the boolean variable in the provided slot of the
+     * {@link ch.andre601.expressionparser.expressions.EvaluationContext EvaluationContext} it is evaluated with.
+     * 
+     * @param  slot
+     *         The slot of the boolean variable.
+     * 
+     * @return ExpressionTemplate who's boolean value is the boolean variable in the provided slot.
+     */
+    public static ExpressionTemplate booleanVariable(int slot){
+        return new BooleanVariable(slot);
+    }
+    
+    /**
+     * Returns a {@link ExpressionTemplate} who's double value is the double variable in the provided slot of the
+     * {@link ch.andre601.expressionparser.expressions.EvaluationContext EvaluationContext} it is evaluated with.
+     * 
+     * @param  slot
+     *         The slot of the double variable.
+     * 
+     * @return ExpressionTemplate who's double value is the double variable in the provided slot.
+     */
+    public static ExpressionTemplate doubleVariable(int slot){
+        return new DoubleVariable(slot);
+    }
+    
+    /**
+     * Returns a {@link ExpressionTemplate} who's String value is the String variable in the provided slot of the
+     * {@link ch.andre601.expressionparser.expressions.EvaluationContext EvaluationContext} it is evaluated with.
+     * 
+     * @param  slot
+     *         The slot of the String variable.
+     * 
+     * @return ExpressionTemplate who's String value is the String variable in the provided slot.
+     */
+    public static ExpressionTemplate stringVariable(int slot){
+        return new StringVariable(slot);
+    }
+    
+    /**
+     * Implemented by the pre-made templates of this class to give {@link TemplateOptimizer} access to their operands.
+     */
+    interface Composite extends ExpressionTemplate{
+        
+        /**
+         * Returns the operands of this template, in the order they are evaluated in.
+         * <br>Operands may be null, should a {@link ch.andre601.expressionparser.parsers.ValueReader ValueReader}
+         * have created the template from an operand that failed to parse.
+         * 
+         * @return List of operands.
+         */
+        List<ExpressionTemplate> operands();
+        
+        /**
+         * Creates a new template of the same kind as this one, using the provided operands instead.
+         * 
+         * @param  operands
+         *         The operands to use. Must have the same size as {@link #operands()} for fixed-size templates.
+         * 
+         * @return New template of the same kind.
+         */
+        ExpressionTemplate withOperands(List<ExpressionTemplate> operands);
+        
+        /**
+         * Returns what, together with the operands, decides the values of this template. Templates of the same kind
+         * with the same operands have the same values.
+         *
+         * @return The kind of this template, which is its class by default.
+         */
+        default Object kind(){
+            return getClass();
+        }
+    }
+    
+    /**
+     * The comparisons a {@link Chain} can be made of, comparing either the double or the String values of both of
+     * their operands.
+     */
+    enum Comparison{
+        EQUAL(false),
+        NOT_EQUAL(false),
+        EQUAL_IGNORE_CASE(false),
+        NOT_EQUAL_IGNORE_CASE(false),
+        STARTS_WITH(false),
+        ENDS_WITH(false),
+        CONTAINS(false),
+        EQUAL_NUMBERS(true),
+        NOT_EQUAL_NUMBERS(true),
+        GREATER(true),
+        GREATER_OR_EQUAL(true),
+        LESS(true),
+        LESS_OR_EQUAL(true);
+        
+        final boolean numeric;
+        
+        Comparison(boolean numeric){
+            this.numeric = numeric;
+        }
+        
+        /**
+         * Returns the comparison the provided template does, the same way its expression is built.
+         *
+         * @param  template
+         *         The template to check.
+         *
+         * @return The Comparison of the template, or null if it isn't one of the comparisons of this class.
+         */
+        static Comparison of(ExpressionTemplate template){
+            if(template instanceof Equal equal)
+                return isNumbers(equal) ? EQUAL_NUMBERS : EQUAL;
+            
+            if(template instanceof NotEqual notEqual)
+                return isNumbers(notEqual) ? NOT_EQUAL_NUMBERS : NOT_EQUAL;
+            
+            if(template instanceof EqualIgnoreCase equalIgnoreCase)
+                return isNumbers(equalIgnoreCase) ? EQUAL_NUMBERS : EQUAL_IGNORE_CASE;
+            
+            if(template instanceof NotEqualIgnoreCase notEqualIgnoreCase)
+                return isNumbers(notEqualIgnoreCase) ? NOT_EQUAL_NUMBERS : NOT_EQUAL_IGNORE_CASE;
+            
+            if(template instanceof StartsWith)
+                return STARTS_WITH;
+            
+            if(template instanceof EndsWith)
+                return ENDS_WITH;
+            
+            if(template instanceof Contains)
+                return CONTAINS;
+            
+            if(template instanceof Greater)
+                return GREATER;
+            
+            if(template instanceof GreaterOrEqual)
+                return GREATER_OR_EQUAL;
+            
+            if(template instanceof Less)
+                return LESS;
+            
+            if(template instanceof LessOrEqual)
+                return LESS_OR_EQUAL;
+            
+            return null;
+        }
+        
+        boolean test(double a, double b){
+            return switch(this){
+                case EQUAL_NUMBERS -> NumberFormatter.isSameString(a, b);
+                case NOT_EQUAL_NUMBERS -> !NumberFormatter.isSameString(a, b);
+                case GREATER -> a > b;
+                case GREATER_OR_EQUAL -> a >= b;
+                case LESS -> a < b;
+                case LESS_OR_EQUAL -> a <= b;
+                default -> throw new IllegalStateException("[ExpressionTemplates] " + this + " does not compare numbers.");
+            };
+        }
+        
+        boolean test(String a, String b){
+            return switch(this){
+                case EQUAL -> a.equals(b);
+                case NOT_EQUAL -> !a.equals(b);
+                case EQUAL_IGNORE_CASE -> a.equalsIgnoreCase(b);
+                case NOT_EQUAL_IGNORE_CASE -> !a.equalsIgnoreCase(b);
+                case STARTS_WITH -> a.startsWith(b);
+                case ENDS_WITH -> a.endsWith(b);
+                case CONTAINS -> a.contains(b);
+                default -> throw new IllegalStateException("[ExpressionTemplates] " + this + " does not compare Strings.");
+            };
+        }
+        
+        private static boolean isNumbers(Composite template){
+            List<ExpressionTemplate> operands = template.operands();
+            return isNumber(operands.get(0)) && isNumber(operands.get(1));
+        }
+    }
+    
+    /**
+     * Returns whether the String value of the provided template is its double value converted through
+     * {@link ch.andre601.expressionparser.Conversions#toString(ToDoubleExpression) Conversions.toString}.
+     * <br>Comparing the Strings of two such templates can be done on their double values instead, which is what the
+     * equality templates use this for. Number formats write no letters besides {@code NaN}, {@code Infinity} and
+     * {@code E}, so ignoring case makes no difference either.
+     * 
+     * @param  template
+     *         The template to check.
+     * 
+     * @return true if the String value of the template always represents its double value, else false.
+     */
+    static boolean isNumber(ExpressionTemplate template){
+        if(template instanceof MemoizedDoubleTemplate)
+            return true;
+        
+        if(template == null || template.getClass() != ConstantExpressionTemplate.class)
+            return false;
+        
+        return NumberFormatter.toString(template.returnDoubleExpression().evaluate()).equals(template.returnStringExpression().evaluate());
+    }
+    
+    /*
+     * The templates below build their expression trees once and hand out the same instances afterwards. The trees
+     * are immutable, so sharing them is safe. Should two threads build the same tree at once does the first one to
+     * finish win, so every caller still receives the same instance.
+     */
+    
+    // Holds a built expression, keeping the first one set.
+    static final class Memo<T>{
+        
+        @SuppressWarnings("rawtypes")
+        private static final AtomicReferenceFieldUpdater<Memo, Object> VALUE =
+            AtomicReferenceFieldUpdater.newUpdater(Memo.class, Object.class, "value");
+        
+        private volatile T value;
+        
+        T get(){
+            return value;
+        }
+        
+        // Sets the provided value, unless one has been set already, and returns the value set.
+        T set(T value){
+            VALUE.compareAndSet(this, null, value);
+            return this.value;
+        }
+    }
+    
+    static abstract class MemoizedBooleanTemplate extends AbstractBooleanExpressionTemplate{
+        
+        private final Memo<ToBooleanExpression> booleanExpression = new Memo<>();
+        private final Memo<ToDoubleExpression> doubleExpression = new Memo<>();
+        private final Memo<ToStringExpression> stringExpression = new Memo<>();
+        
+        abstract ToBooleanExpression buildBooleanExpression();
+        
+        @Override
+        public final ToBooleanExpression returnBooleanExpression(){
+            ToBooleanExpression expression = booleanExpression.get();
+            return expression != null ? expression : booleanExpression.set(buildBooleanExpression());
+        }
+        
+        @Override
+        public final ToDoubleExpression returnDoubleExpression(){
+            ToDoubleExpression expression = doubleExpression.get();
+            return expression != null ? expression : doubleExpression.set(super.returnDoubleExpression());
+        }
+        
+        @Override
+        public final ToStringExpression returnStringExpression(){
+            ToStringExpression expression = stringExpression.get();
+            return expression != null ? expression : stringExpression.set(super.returnStringExpression());
+        }
+    }
+    
+    static abstract class MemoizedDoubleTemplate extends AbstractDoubleExpressionTemplate{
+        
+        private final Memo<ToBooleanExpression> booleanExpression = new Memo<>();
+        private final Memo<ToDoubleExpression> doubleExpression = new Memo<>();
+        private final Memo<ToStringExpression> stringExpression = new Memo<>();
+        
+        abstract ToDoubleExpression buildDoubleExpression();
+        
+        @Override
+        public final ToBooleanExpression returnBooleanExpression(){
+            ToBooleanExpression expression = booleanExpression.get();
+            return expression != null ? expression : booleanExpression.set(super.returnBooleanExpression());
+        }
+        
+        @Override
+        public final ToDoubleExpression returnDoubleExpression(){
+            ToDoubleExpression expression = doubleExpression.get();
+            return expression != null ? expression : doubleExpression.set(buildDoubleExpression());
+        }
+        
+        @Override
+        public final ToStringExpression returnStringExpression(){
+            ToStringExpression expression = stringExpression.get();
+            return expression != null ? expression : stringExpression.set(super.returnStringExpression());
+        }
+    }
+    
+    static abstract class MemoizedStringTemplate extends AbstractStringExpressionTemplate{
+        
+        private final Memo<ToBooleanExpression> booleanExpression = new Memo<>();
+        private final Memo<ToDoubleExpression> doubleExpression = new Memo<>();
+        private final Memo<ToStringExpression> stringExpression = new Memo<>();
+        
+        abstract ToStringExpression buildStringExpression();
+        
+        @Override
+        public final ToBooleanExpression returnBooleanExpression(){
+            ToBooleanExpression expression = booleanExpression.get();
+            return expression != null ? expression : booleanExpression.set(super.returnBooleanExpression());
+        }
+        
+        @Override
+        public final ToDoubleExpression returnDoubleExpression(){
+            ToDoubleExpression expression = doubleExpression.get();
+            return expression != null ? expression : doubleExpression.set(super.returnDoubleExpression());
+        }
+        
+        @Override
+        public final ToStringExpression returnStringExpression(){
+            ToStringExpression expression = stringExpression.get();
+            return expression != null ? expression : stringExpression.set(buildStringExpression());
+        }
+    }
+    
+    static class Negation extends MemoizedBooleanTemplate implements Composite{
         
         private final ExpressionTemplate template;
         
@@ -345,12 +700,22 @@ public class ExpressionTemplates{
         }
         
         @Override
-        public ToBooleanExpression returnBooleanExpression(){
+        ToBooleanExpression buildBooleanExpression(){
             return Expressions.negate(template.returnBooleanExpression());
         }
+        
+        @Override
+        public List<ExpressionTemplate> operands(){
+            return Collections.singletonList(template);
+        }
+        
+        @Override
+        public ExpressionTemplate withOperands(List<ExpressionTemplate> operands){
+            return new Negation(operands.get(0));
+        }
     }
     
-    private static class And extends AbstractBooleanExpressionTemplate{
+    static class And extends MemoizedBooleanTemplate implements Composite{
         
         private final Collection<ExpressionTemplate> operands;
         
@@ -359,12 +724,22 @@ public class ExpressionTemplates{
         }
         
         @Override
-        public ToBooleanExpression returnBooleanExpression(){
+        ToBooleanExpression buildBooleanExpression(){
             return Expressions.and(operands.stream().map(ExpressionTemplate::returnBooleanExpression).toList());
         }
+        
+        @Override
+        public List<ExpressionTemplate> operands(){
+            return Collections.unmodifiableList(new ArrayList<>(operands));
+        }
+        
+        @Override
+        public ExpressionTemplate withOperands(List<ExpressionTemplate> operands){
+            return new And(operands);
+        }
     }
     
-    private static class Or extends AbstractBooleanExpressionTemplate{
+    static class Or extends MemoizedBooleanTemplate implements Composite{
         
         private final Collection<ExpressionTemplate> operands;
         
@@ -373,12 +748,22 @@ public class ExpressionTemplates{
         }
         
         @Override
-        public ToBooleanExpression returnBooleanExpression(){
+        ToBooleanExpression buildBooleanExpression(){
             return Expressions.or(operands.stream().map(ExpressionTemplate::returnBooleanExpression).toList());
         }
+        
+        @Override
+        public List<ExpressionTemplate> operands(){
+            return Collections.unmodifiableList(new ArrayList<>(operands));
+        }
+        
+        @Override
+        public ExpressionTemplate withOperands(List<ExpressionTemplate> operands){
+            return new Or(operands);
+        }
     }
     
-    private static class Concatenate extends AbstractStringExpressionTemplate{
+    static class Concatenate extends MemoizedStringTemplate implements Composite{
         
         private final Collection<ExpressionTemplate> operands;
         
@@ -387,12 +772,22 @@ public class ExpressionTemplates{
         }
         
         @Override
-        public ToStringExpression returnStringExpression(){
+        ToStringExpression buildStringExpression(){
             return Expressions.concat(operands.stream().map(ExpressionTemplate::returnStringExpression).toList());
         }
+        
+        @Override
+        public List<ExpressionTemplate> operands(){
+            return Collections.unmodifiableList(new ArrayList<>(operands));
+        }
+        
+        @Override
+        public ExpressionTemplate withOperands(List<ExpressionTemplate> operands){
+            return new Concatenate(operands);
+        }
     }
     
-    private static class Equal extends AbstractBooleanExpressionTemplate{
+    static class Equal extends MemoizedBooleanTemplate implements Composite{
         
         private final ExpressionTemplate a;
         private final ExpressionTemplate b;
@@ -403,12 +798,25 @@ public class ExpressionTemplates{
         }
         
         @Override
-        public ToBooleanExpression returnBooleanExpression(){
+        ToBooleanExpression buildBooleanExpression(){
+            if(isNumber(a) && isNumber(b))
+                return Expressions.equalNumbers(a.returnDoubleExpression(), b.returnDoubleExpression());
+            
             return Expressions.equal(a.returnStringExpression(), b.returnStringExpression());
         }
+        
+        @Override
+        public List<ExpressionTemplate> operands(){
+            return Arrays.asList(a, b);
+        }
+        
+        @Override
+        public ExpressionTemplate withOperands(List<ExpressionTemplate> operands){
+            return new Equal(operands.get(0), operands.get(1));
+        }
     }
     
-    private static class NotEqual extends AbstractBooleanExpressionTemplate{
+    static class NotEqual extends MemoizedBooleanTemplate implements Composite{
         
         private final ExpressionTemplate a;
         private final ExpressionTemplate b;
@@ -419,12 +827,25 @@ public class ExpressionTemplates{
         }
         
         @Override
-        public ToBooleanExpression returnBooleanExpression(){
+        ToBooleanExpression buildBooleanExpression(){
+            if(isNumber(a) && isNumber(b))
+                return Expressions.notEqualNumbers(a.returnDoubleExpression(), b.returnDoubleExpression());
+            
             return Expressions.notEqual(a.returnStringExpression(), b.returnStringExpression());
         }
+        
+        @Override
+        public List<ExpressionTemplate> operands(){
+            return Arrays.asList(a, b);
+        }
+        
+        @Override
+        public ExpressionTemplate withOperands(List<ExpressionTemplate> operands){
+            return new NotEqual(operands.get(0), operands.get(1));
+        }
     }
     
-    private static class EqualIgnoreCase extends AbstractBooleanExpressionTemplate{
+    static class EqualIgnoreCase extends MemoizedBooleanTemplate implements Composite{
         
         private final ExpressionTemplate a;
         private final ExpressionTemplate b;
@@ -435,12 +856,25 @@ public class ExpressionTemplates{
         }
         
         @Override
-        public ToBooleanExpression returnBooleanExpression(){
+        ToBooleanExpression buildBooleanExpression(){
+            if(isNumber(a) && isNumber(b))
+                return Expressions.equalNumbers(a.returnDoubleExpression(), b.returnDoubleExpression());
+            
             return Expressions.equalIgnoreCase(a.returnStringExpression(), b.returnStringExpression());
         }
+        
+        @Override
+        public List<ExpressionTemplate> operands(){
+            return Arrays.asList(a, b);
+        }
+        
+        @Override
+        public ExpressionTemplate withOperands(List<ExpressionTemplate> operands){
+            return new EqualIgnoreCase(operands.get(0), operands.get(1));
+        }
     }
     
-    private static class NotEqualIgnoreCase extends AbstractBooleanExpressionTemplate{
+    static class NotEqualIgnoreCase extends MemoizedBooleanTemplate implements Composite{
         
         private final ExpressionTemplate a;
         private final ExpressionTemplate b;
@@ -451,60 +885,103 @@ public class ExpressionTemplates{
         }
         
         @Override
-        public ToBooleanExpression returnBooleanExpression(){
+        ToBooleanExpression buildBooleanExpression(){
+            if(isNumber(a) && isNumber(b))
+                return Expressions.notEqualNumbers(a.returnDoubleExpression(), b.returnDoubleExpression());
+            
             return Expressions.notEqualIgnoreCase(a.returnStringExpression(), b.returnStringExpression());
         }
+        
+        @Override
+        public List<ExpressionTemplate> operands(){
+            return Arrays.asList(a, b);
+        }
+        
+        @Override
+        public ExpressionTemplate withOperands(List<ExpressionTemplate> operands){
+            return new NotEqualIgnoreCase(operands.get(0), operands.get(1));
+        }
     }
     
-    private static class StartsWith extends AbstractBooleanExpressionTemplate{
+    static class StartsWith extends MemoizedBooleanTemplate implements Composite{
         
         private final ExpressionTemplate a;
         private final ExpressionTemplate b;
         
-        private StartsWith(ExpressionTemplate a, ExpressionTemplate b){
+        StartsWith(ExpressionTemplate a, ExpressionTemplate b){
             this.a = a;
             this.b = b;
         }
         
         @Override
-        public ToBooleanExpression returnBooleanExpression(){
+        ToBooleanExpression buildBooleanExpression(){
             return Expressions.startsWith(a.returnStringExpression(), b.returnStringExpression());
         }
+        
+        @Override
+        public List<ExpressionTemplate> operands(){
+            return Arrays.asList(a, b);
+        }
+        
+        @Override
+        public ExpressionTemplate withOperands(List<ExpressionTemplate> operands){
+            return new StartsWith(operands.get(0), operands.get(1));
+        }
     }
     
-    private static class EndsWith extends AbstractBooleanExpressionTemplate{
+    static class EndsWith extends MemoizedBooleanTemplate implements Composite{
         
         private final ExpressionTemplate a;
         private final ExpressionTemplate b;
         
-        private EndsWith(ExpressionTemplate a, ExpressionTemplate b){
+        EndsWith(ExpressionTemplate a, ExpressionTemplate b){
             this.a = a;
             this.b = b;
         }
         
         @Override
-        public ToBooleanExpression returnBooleanExpression(){
+        ToBooleanExpression buildBooleanExpression(){
             return Expressions.endsWith(a.returnStringExpression(), b.returnStringExpression());
         }
+        
+        @Override
+        public List<ExpressionTemplate> operands(){
+            return Arrays.asList(a, b);
+        }
+        
+        @Override
+        public ExpressionTemplate withOperands(List<ExpressionTemplate> operands){
+            return new EndsWith(operands.get(0), operands.get(1));
+        }
     }
     
-    private static class Contains extends AbstractBooleanExpressionTemplate{
+    static class Contains extends MemoizedBooleanTemplate implements Composite{
         
         private final ExpressionTemplate a;
         private final ExpressionTemplate b;
         
-        private Contains(ExpressionTemplate a, ExpressionTemplate b){
+        Contains(ExpressionTemplate a, ExpressionTemplate b){
             this.a = a;
             this.b = b;
         }
         
         @Override
-        public ToBooleanExpression returnBooleanExpression(){
+        ToBooleanExpression buildBooleanExpression(){
             return Expressions.contains(a.returnStringExpression(), b.returnStringExpression());
         }
+        
+        @Override
+        public List<ExpressionTemplate> operands(){
+            return Arrays.asList(a, b);
+        }
+        
+        @Override
+        public ExpressionTemplate withOperands(List<ExpressionTemplate> operands){
+            return new Contains(operands.get(0), operands.get(1));
+        }
     }
     
-    private static class Greater extends AbstractBooleanExpressionTemplate{
+    static class Greater extends MemoizedBooleanTemplate implements Composite{
         
         private final ExpressionTemplate a;
         private final ExpressionTemplate b;
@@ -515,12 +992,22 @@ public class ExpressionTemplates{
         }
         
         @Override
-        public ToBooleanExpression returnBooleanExpression(){
+        ToBooleanExpression buildBooleanExpression(){
             return Expressions.greaterThan(a.returnDoubleExpression(), b.returnDoubleExpression());
         }
+        
+        @Override
+        public List<ExpressionTemplate> operands(){
+            return Arrays.asList(a, b);
+        }
+        
+        @Override
+        public ExpressionTemplate withOperands(List<ExpressionTemplate> operands){
+            return new Greater(operands.get(0), operands.get(1));
+        }
     }
     
-    private static class GreaterOrEqual extends AbstractBooleanExpressionTemplate{
+    static class GreaterOrEqual extends MemoizedBooleanTemplate implements Composite{
         
         private final ExpressionTemplate a;
         private final ExpressionTemplate b;
@@ -531,12 +1018,22 @@ public class ExpressionTemplates{
         }
         
         @Override
-        public ToBooleanExpression returnBooleanExpression(){
+        ToBooleanExpression buildBooleanExpression(){
             return Expressions.greaterOrEqualThan(a.returnDoubleExpression(), b.returnDoubleExpression());
         }
+        
+        @Override
+        public List<ExpressionTemplate> operands(){
+            return Arrays.asList(a, b);
+        }
+        
+        @Override
+        public ExpressionTemplate withOperands(List<ExpressionTemplate> operands){
+            return new GreaterOrEqual(operands.get(0), operands.get(1));
+        }
     }
     
-    private static class Less extends AbstractBooleanExpressionTemplate{
+    static class Less extends MemoizedBooleanTemplate implements Composite{
         
         private final ExpressionTemplate a;
         private final ExpressionTemplate b;
@@ -547,12 +1044,22 @@ public class ExpressionTemplates{
         }
         
         @Override
-        public ToBooleanExpression returnBooleanExpression(){
+        ToBooleanExpression buildBooleanExpression(){
             return Expressions.lessThan(a.returnDoubleExpression(), b.returnDoubleExpression());
         }
+        
+        @Override
+        public List<ExpressionTemplate> operands(){
+            return Arrays.asList(a, b);
+        }
+        
+        @Override
+        public ExpressionTemplate withOperands(List<ExpressionTemplate> operands){
+            return new Less(operands.get(0), operands.get(1));
+        }
     }
     
-    private static class LessOrEqual extends AbstractBooleanExpressionTemplate{
+    static class LessOrEqual extends MemoizedBooleanTemplate implements Composite{
         
         private final ExpressionTemplate a;
         private final ExpressionTemplate b;
@@ -563,12 +1070,233 @@ public class ExpressionTemplates{
         }
         
         @Override
-        public ToBooleanExpression returnBooleanExpression(){
+        ToBooleanExpression buildBooleanExpression(){
             return Expressions.lessOrEqualThan(a.returnDoubleExpression(), b.returnDoubleExpression());
         }
+        
+        @Override
+        public List<ExpressionTemplate> operands(){
+            return Arrays.asList(a, b);
+        }
+        
+        @Override
+        public ExpressionTemplate withOperands(List<ExpressionTemplate> operands){
+            return new LessOrEqual(operands.get(0), operands.get(1));
+        }
+    }
+    
+    /*
+     * The operands of a chain are the ones of its comparisons, with each shared operand only listed once. A new
+     * chain is created from new operands by creating each comparison again, the same way an and of the comparisons
+     * would.
+     */
+    static class Chain extends MemoizedBooleanTemplate implements Composite{
+        
+        private final List<ExpressionTemplate> links;
+        private final List<ExpressionTemplate> operands;
+        private final List<Comparison> comparisons;
+        
+        Chain(List<ExpressionTemplate> links){
+            this.links = List.copyOf(links);
+            
+            List<ExpressionTemplate> operands = new ArrayList<>(links.size() + 1);
+            operands.add(((Composite)links.get(0)).operands().get(0));
+            for(ExpressionTemplate link : links){
+                operands.add(((Composite)link).operands().get(1));
+            }
+            this.operands = Collections.unmodifiableList(operands);
+            this.comparisons = links.stream().map(Comparison::of).toList();
+        }
+        
+        static boolean isChain(List<ExpressionTemplate> links){
+            for(int i = 0; i < links.size(); i++){
+                if(Comparison.of(links.get(i)) == null)
+                    return false;
+                
+                if(i > 0 && ((Composite)links.get(i - 1)).operands().get(1) != ((Composite)links.get(i)).operands().get(0))
+                    return false;
+            }
+            
+            return true;
+        }
+        
+        List<ExpressionTemplate> links(){
+            return links;
+        }
+        
+        List<Comparison> comparisons(){
+            return comparisons;
+        }
+        
+        @Override
+        ToBooleanExpression buildBooleanExpression(){
+            // Only the values compared are requested, the same way the comparisons do.
+            ToDoubleExpression[] doubles = new ToDoubleExpression[operands.size()];
+            ToStringExpression[] strings = new ToStringExpression[operands.size()];
+            for(int i = 0; i < comparisons.size(); i++){
+                for(int j = i; j <= i + 1; j++){
+                    if(comparisons.get(i).numeric){
+                        if(doubles[j] == null)
+                            doubles[j] = operands.get(j).returnDoubleExpression();
+                    }else{
+                        if(strings[j] == null)
+                            strings[j] = operands.get(j).returnStringExpression();
+                    }
+                }
+            }
+            
+            return new ChainExpression(comparisons.toArray(new Comparison[0]), doubles, strings);
+        }
+        
+        @Override
+        public List<ExpressionTemplate> operands(){
+            return operands;
+        }
+        
+        @Override
+        public ExpressionTemplate withOperands(List<ExpressionTemplate> operands){
+            List<ExpressionTemplate> links = new ArrayList<>(this.links.size());
+            for(int i = 0; i < this.links.size(); i++){
+                links.add(((Composite)this.links.get(i)).withOperands(Arrays.asList(operands.get(i), operands.get(i + 1))));
+            }
+            
+            return new Chain(links);
+        }
+        
+        @Override
+        public Object kind(){
+            List<Object> kind = new ArrayList<>(links.size() + 1);
+            kind.add(Chain.class);
+            for(ExpressionTemplate link : links){
+                kind.add(link.getClass());
+            }
+            
+            return kind;
+        }
+    }
+    
+    private static final class ChainExpression implements ToBooleanExpression{
+        
+        private final Comparison[] comparisons;
+        private final ToDoubleExpression[] doubles;
+        private final ToStringExpression[] strings;
+        
+        private ChainExpression(Comparison[] comparisons, ToDoubleExpression[] doubles, ToStringExpression[] strings){
+            this.comparisons = comparisons;
+            this.doubles = doubles;
+            this.strings = strings;
+        }
+        
+        @Override
+        public boolean evaluate(){
+            return evaluate(EvaluationContext.EMPTY);
+        }
+        
+        @Override
+        public boolean evaluate(EvaluationContext context){
+            // The right value of a comparison is the left one of the next, unless that one compares the other kind.
+            double number = 0;
+            String string = null;
+            for(int i = 0; i < comparisons.length; i++){
+                Comparison comparison = comparisons[i];
+                boolean shared = i > 0 && comparisons[i - 1].numeric == comparison.numeric;
+                if(comparison.numeric){
+                    double left = shared ? number : doubles[i].evaluate(context);
+                    number = doubles[i + 1].evaluate(context);
+                    if(!comparison.test(left, number))
+                        return false;
+                }else{
+                    String left = shared ? string : strings[i].evaluate(context);
+                    string = strings[i + 1].evaluate(context);
+                    if(!comparison.test(left, string))
+                        return false;
+                }
+            }
+            
+            return true;
+        }
     }
     
-    private static class Sum extends AbstractDoubleExpressionTemplate{
+    /*
+     * The only operand of an interval is the template whose value is checked. The bounds are part of its kind, as
+     * intervals of the same operand with other bounds have other values.
+     */
+    static class Interval extends MemoizedBooleanTemplate implements Composite{
+        
+        private final ExpressionTemplate template;
+        final double lower;
+        final boolean lowerInclusive;
+        final double upper;
+        final boolean upperInclusive;
+        
+        Interval(ExpressionTemplate template, double lower, boolean lowerInclusive, double upper, boolean upperInclusive){
+            this.template = template;
+            this.lower = lower;
+            this.lowerInclusive = lowerInclusive;
+            this.upper = upper;
+            this.upperInclusive = upperInclusive;
+        }
+        
+        // The comparisons of the value with the lower and the upper bound, in this order.
+        Comparison lowerComparison(){
+            return lowerInclusive ? Comparison.GREATER_OR_EQUAL : Comparison.GREATER;
+        }
+        
+        Comparison upperComparison(){
+            return upperInclusive ? Comparison.LESS_OR_EQUAL : Comparison.LESS;
+        }
+        
+        @Override
+        ToBooleanExpression buildBooleanExpression(){
+            return new IntervalExpression(this, template.returnDoubleExpression());
+        }
+        
+        @Override
+        public List<ExpressionTemplate> operands(){
+            return Collections.singletonList(template);
+        }
+        
+        @Override
+        public ExpressionTemplate withOperands(List<ExpressionTemplate> operands){
+            return new Interval(operands.get(0), lower, lowerInclusive, upper, upperInclusive);
+        }
+        
+        @Override
+        public Object kind(){
+            // Double.equals compares the raw bits, which keeps apart -0.0 and 0.0 as bounds, even though they check the same.
+            return Arrays.asList(Interval.class, lower, lowerInclusive, upper, upperInclusive);
+        }
+    }
+    
+    private static final class IntervalExpression implements ToBooleanExpression{
+        
+        private final double lower;
+        private final boolean lowerInclusive;
+        private final double upper;
+        private final boolean upperInclusive;
+        private final ToDoubleExpression expression;
+        
+        private IntervalExpression(Interval interval, ToDoubleExpression expression){
+            this.lower = interval.lower;
+            this.lowerInclusive = interval.lowerInclusive;
+            this.upper = interval.upper;
+            this.upperInclusive = interval.upperInclusive;
+            this.expression = expression;
+        }
+        
+        @Override
+        public boolean evaluate(){
+            return evaluate(EvaluationContext.EMPTY);
+        }
+        
+        @Override
+        public boolean evaluate(EvaluationContext context){
+            double value = expression.evaluate(context);
+            return (lowerInclusive ? value >= lower : value > lower) && (upperInclusive ? value <= upper : value < upper);
+        }
+    }
+    
+    static class Sum extends MemoizedDoubleTemplate implements Composite{
         
         private final Collection<ExpressionTemplate> operands;
         
@@ -577,12 +1305,22 @@ public class ExpressionTemplates{
         }
         
         @Override
-        public ToDoubleExpression returnDoubleExpression(){
+        ToDoubleExpression buildDoubleExpression(){
             return Expressions.sum(operands.stream().map(ExpressionTemplate::returnDoubleExpression).toList());
         }
+        
+        @Override
+        public List<ExpressionTemplate> operands(){
+            return Collections.unmodifiableList(new ArrayList<>(operands));
+        }
+        
+        @Override
+        public ExpressionTemplate withOperands(List<ExpressionTemplate> operands){
+            return new Sum(operands);
+        }
     }
     
-    private static class Product extends AbstractDoubleExpressionTemplate{
+    static class Product extends MemoizedDoubleTemplate implements Composite{
         
         private final Collection<ExpressionTemplate> operands;
         
@@ -591,12 +1329,22 @@ public class ExpressionTemplates{
         }
         
         @Override
-        public ToDoubleExpression returnDoubleExpression(){
+        ToDoubleExpression buildDoubleExpression(){
             return Expressions.product(operands.stream().map(ExpressionTemplate::returnDoubleExpression).toList());
         }
+        
+        @Override
+        public List<ExpressionTemplate> operands(){
+            return Collections.unmodifiableList(new ArrayList<>(operands));
+        }
+        
+        @Override
+        public ExpressionTemplate withOperands(List<ExpressionTemplate> operands){
+            return new Product(operands);
+        }
     }
     
-    private static class Sub extends AbstractDoubleExpressionTemplate{
+    static class Sub extends MemoizedDoubleTemplate implements Composite{
         
         private final ExpressionTemplate a;
         private final ExpressionTemplate b;
@@ -607,12 +1355,22 @@ public class ExpressionTemplates{
         }
         
         @Override
-        public ToDoubleExpression returnDoubleExpression(){
+        ToDoubleExpression buildDoubleExpression(){
             return Expressions.sub(a.returnDoubleExpression(), b.returnDoubleExpression());
         }
+        
+        @Override
+        public List<ExpressionTemplate> operands(){
+            return Arrays.asList(a, b);
+        }
+        
+        @Override
+        public ExpressionTemplate withOperands(List<ExpressionTemplate> operands){
+            return new Sub(operands.get(0), operands.get(1));
+        }
     }
     
-    private static class Div extends AbstractDoubleExpressionTemplate{
+    static class Div extends MemoizedDoubleTemplate implements Composite{
         
         private final ExpressionTemplate a;
         private final ExpressionTemplate b;
@@ -623,12 +1381,22 @@ public class ExpressionTemplates{
         }
         
         @Override
-        public ToDoubleExpression returnDoubleExpression(){
+        ToDoubleExpression buildDoubleExpression(){
             return Expressions.div(a.returnDoubleExpression(), b.returnDoubleExpression());
         }
+        
+        @Override
+        public List<ExpressionTemplate> operands(){
+            return Arrays.asList(a, b);
+        }
+        
+        @Override
+        public ExpressionTemplate withOperands(List<ExpressionTemplate> operands){
+            return new Div(operands.get(0), operands.get(1));
+        }
     }
     
-    private static class NegationNumber extends AbstractDoubleExpressionTemplate{
+    static class NegationNumber extends MemoizedDoubleTemplate implements Composite{
         
         private final ExpressionTemplate template;
         
@@ -637,8 +1405,60 @@ public class ExpressionTemplates{
         }
         
         @Override
-        public ToDoubleExpression returnDoubleExpression(){
+        ToDoubleExpression buildDoubleExpression(){
             return Expressions.negateNumber(template.returnDoubleExpression());
         }
+        
+        @Override
+        public List<ExpressionTemplate> operands(){
+            return Collections.singletonList(template);
+        }
+        
+        @Override
+        public ExpressionTemplate withOperands(List<ExpressionTemplate> operands){
+            return new NegationNumber(operands.get(0));
+        }
+    }
+    
+    static class BooleanVariable extends MemoizedBooleanTemplate{
+        
+        final int slot;
+        
+        BooleanVariable(int slot){
+            this.slot = slot;
+        }
+        
+        @Override
+        ToBooleanExpression buildBooleanExpression(){
+            return Expressions.booleanVariable(slot);
+        }
+    }
+    
+    static class DoubleVariable extends MemoizedDoubleTemplate{
+        
+        final int slot;
+        
+        DoubleVariable(int slot){
+            this.slot = slot;
+        }
+        
+        @Override
+        ToDoubleExpression buildDoubleExpression(){
+            return Expressions.doubleVariable(slot);
+        }
+    }
+    
+    static class StringVariable extends MemoizedStringTemplate{
+        
+        final int slot;
+        
+        StringVariable(int slot){
+            this.slot = slot;
+        }
+        
+        @Override
+        ToStringExpression buildStringExpression(){
+            return Expressions.stringVariable(slot);
+        }
     }
 }
@@ -0,0 +1,598 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package ch.andre601.expressionparser.templates;
+
+import ch.andre601.expressionparser.expressions.EvaluationContext;
+import ch.andre601.expressionparser.expressions.ToBooleanExpression;
+import ch.andre601.expressionparser.expressions.ToDoubleExpression;
+import ch.andre601.expressionparser.expressions.ToStringExpression;
+import ch.andre601.expressionparser.internal.NumberFormatter;
+import ch.andre601.expressionparser.internal.NumberParser;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles trees of the {@link ExpressionTemplate ExpressionTemplates} created through {@link ExpressionTemplates}
+ * into trees of {@link MethodHandle MethodHandles}, combined through {@link MethodHandles} without generating any
+ * classes.
+ * <br>The values are exactly the same as the ones of the provided template, including the order in which operands
+ * are evaluated and which operands of {@link ExpressionTemplates#and(java.util.Collection) and} and
+ * {@link ExpressionTemplates#or(java.util.Collection) or} are skipped.
+ * 
+ * <p>The expressions of the compiled template hold their MethodHandle in a field the JIT compiler trusts, so once an
+ * expression itself is a constant, such as when stored in a {@code static final} field, the whole tree can be
+ * inlined into the caller.
+ * 
+ * <p>Templates not created through ExpressionTemplates, such as ones made by custom operators, can't be compiled.
+ * Their expressions are requested once while compiling and called as they are.
+ * <br>Templates with operands that failed to parse are returned unchanged.
+ */
+public class MethodHandleCompiler{
+    
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    
+    private static final MethodHandle NOT;
+    private static final MethodHandle GREATER;
+    private static final MethodHandle GREATER_OR_EQUAL;
+    private static final MethodHandle LESS;
+    private static final MethodHandle LESS_OR_EQUAL;
+    private static final MethodHandle WITHIN;
+    private static final MethodHandle ADD;
+    private static final MethodHandle MULTIPLY;
+    private static final MethodHandle SUBTRACT;
+    private static final MethodHandle DIVIDE;
+    private static final MethodHandle NEGATE;
+    
+    private static final MethodHandle EQUALS;
+    private static final MethodHandle EQUALS_IGNORE_CASE;
+    private static final MethodHandle STARTS_WITH;
+    private static final MethodHandle ENDS_WITH;
+    private static final MethodHandle CONTAINS;
+    private static final MethodHandle SAME_STRING;
+    
+    private static final MethodHandle NEW_BUILDER;
+    private static final MethodHandle APPEND_STRING;
+    private static final MethodHandle APPEND_BOOLEAN;
+    private static final MethodHandle APPEND_DOUBLE;
+    private static final MethodHandle APPEND_EXPRESSION;
+    private static final MethodHandle BUILDER_TO_STRING;
+    private static final MethodType APPEND_TO_TYPE = MethodType.methodType(void.class, StringBuilder.class, EvaluationContext.class);
+    
+    private static final MethodHandle GET_BOOLEAN;
+    private static final MethodHandle GET_DOUBLE;
+    private static final MethodHandle GET_STRING;
+    
+    private static final MethodHandle BOOLEAN_TO_DOUBLE;
+    private static final MethodHandle BOOLEAN_TO_STRING;
+    private static final MethodHandle DOUBLE_TO_BOOLEAN;
+    private static final MethodHandle DOUBLE_TO_STRING;
+    private static final MethodHandle STRING_TO_BOOLEAN;
+    private static final MethodHandle STRING_TO_DOUBLE;
+    
+    static {
+        try{
+            MethodType booleanOperator = MethodType.methodType(boolean.class, boolean.class);
+            MethodType comparison = MethodType.methodType(boolean.class, double.class, double.class);
+            MethodType arithmetic = MethodType.methodType(double.class, double.class, double.class);
+            MethodType stringComparison = MethodType.methodType(boolean.class, String.class, String.class);
+            
+            NOT = LOOKUP.findStatic(MethodHandleCompiler.class, "not", booleanOperator);
+            GREATER = LOOKUP.findStatic(MethodHandleCompiler.class, "greater", comparison);
+            GREATER_OR_EQUAL = LOOKUP.findStatic(MethodHandleCompiler.class, "greaterOrEqual", comparison);
+            LESS = LOOKUP.findStatic(MethodHandleCompiler.class, "less", comparison);
+            LESS_OR_EQUAL = LOOKUP.findStatic(MethodHandleCompiler.class, "lessOrEqual", comparison);
+            WITHIN = LOOKUP.findStatic(MethodHandleCompiler.class, "within", MethodType.methodType(boolean.class, double.class, double.class, boolean.class, double.class, boolean.class));
+            ADD = LOOKUP.findStatic(MethodHandleCompiler.class, "add", arithmetic);
+            MULTIPLY = LOOKUP.findStatic(MethodHandleCompiler.class, "multiply", arithmetic);
+            SUBTRACT = LOOKUP.findStatic(MethodHandleCompiler.class, "subtract", arithmetic);
+            DIVIDE = LOOKUP.findStatic(MethodHandleCompiler.class, "divide", arithmetic);
+            NEGATE = LOOKUP.findStatic(MethodHandleCompiler.class, "negate", MethodType.methodType(double.class, double.class));
+            
+            EQUALS = LOOKUP.findVirtual(String.class, "equals", MethodType.methodType(boolean.class, Object.class)).asType(stringComparison);
+            EQUALS_IGNORE_CASE = LOOKUP.findVirtual(String.class, "equalsIgnoreCase", stringComparison.dropParameterTypes(0, 1));
+            STARTS_WITH = LOOKUP.findVirtual(String.class, "startsWith", stringComparison.dropParameterTypes(0, 1));
+            ENDS_WITH = LOOKUP.findVirtual(String.class, "endsWith", stringComparison.dropParameterTypes(0, 1));
+            CONTAINS = LOOKUP.findVirtual(String.class, "contains", MethodType.methodType(boolean.class, CharSequence.class)).asType(stringComparison);
+            SAME_STRING = LOOKUP.findStatic(NumberFormatter.class, "isSameString", comparison);
+            
+            NEW_BUILDER = LOOKUP.findConstructor(StringBuilder.class, MethodType.methodType(void.class));
+            APPEND_STRING = LOOKUP.findVirtual(StringBuilder.class, "append", MethodType.methodType(StringBuilder.class, String.class));
+            APPEND_BOOLEAN = LOOKUP.findVirtual(StringBuilder.class, "append", MethodType.methodType(StringBuilder.class, boolean.class));
+            APPEND_DOUBLE = LOOKUP.findStatic(NumberFormatter.class, "appendTo", MethodType.methodType(StringBuilder.class, StringBuilder.class, double.class));
+            APPEND_EXPRESSION = LOOKUP.findStatic(MethodHandleCompiler.class, "appendTo", MethodType.methodType(StringBuilder.class, ToStringExpression.class, StringBuilder.class, EvaluationContext.class));
+            BUILDER_TO_STRING = LOOKUP.findVirtual(StringBuilder.class, "toString", MethodType.methodType(String.class));
+            
+            BOOLEAN_TO_DOUBLE = LOOKUP.findStatic(MethodHandleCompiler.class, "toDouble", MethodType.methodType(double.class, boolean.class));
+            BOOLEAN_TO_STRING = LOOKUP.findStatic(Boolean.class, "toString", MethodType.methodType(String.class, boolean.class));
+            DOUBLE_TO_BOOLEAN = LOOKUP.findStatic(MethodHandleCompiler.class, "toBoolean", MethodType.methodType(boolean.class, double.class));
+            DOUBLE_TO_STRING = LOOKUP.findStatic(NumberFormatter.class, "toString", MethodType.methodType(String.class, double.class));
+            STRING_TO_BOOLEAN = LOOKUP.findStatic(Boolean.class, "parseBoolean", MethodType.methodType(boolean.class, String.class));
+            STRING_TO_DOUBLE = LOOKUP.findStatic(MethodHandleCompiler.class, "toDouble", MethodType.methodType(double.class, String.class));
+            
+            GET_BOOLEAN = LOOKUP.findVirtual(EvaluationContext.class, "getBoolean", MethodType.methodType(boolean.class, int.class));
+            GET_DOUBLE = LOOKUP.findVirtual(EvaluationContext.class, "getDouble", MethodType.methodType(double.class, int.class));
+            GET_STRING = LOOKUP.findVirtual(EvaluationContext.class, "getString", MethodType.methodType(String.class, int.class));
+        }catch(ReflectiveOperationException ex){
+            throw new ExceptionInInitializerError(ex);
+        }
+    }
+    
+    // Handles of templates that are used as operand more than once, such as the ones shared through a TemplateInterner.
+    private final Map<ExpressionTemplate, MethodHandle[]> compiled = new IdentityHashMap<>();
+    
+    private MethodHandleCompiler(){}
+    
+    /**
+     * Compiles the provided {@link ExpressionTemplate} into a template with the same boolean, double and String values.
+     * 
+     * @param  template
+     *         The ExpressionTemplate to compile.
+     * 
+     * @return The compiled ExpressionTemplate, or the provided one if it can't be compiled.
+     */
+    public static ExpressionTemplate compile(ExpressionTemplate template){
+        ExpressionTemplate source = CommonSubexpressionEliminator.original(template);
+        if(!(source instanceof ExpressionTemplates.Composite))
+            return template;
+        
+        MethodHandleCompiler compiler = new MethodHandleCompiler();
+        try{
+            return new CompiledTemplate(
+                new BooleanExpression(compiler.compile(source, Kind.BOOLEAN)),
+                new DoubleExpression(compiler.compile(source, Kind.DOUBLE)),
+                new StringExpression(compiler.compile(source, Kind.STRING), compiler.appender(source).asType(APPEND_TO_TYPE))
+            );
+        }catch(IllegalStateException ex){
+            return template;
+        }
+    }
+    
+    // Returns a handle taking the EvaluationContext, returning the value of the provided kind.
+    private MethodHandle compile(ExpressionTemplate template, Kind kind){
+        MethodHandle[] handles = compiled.computeIfAbsent(template, key -> new MethodHandle[Kind.values().length]);
+        if(handles[kind.ordinal()] == null)
+            handles[kind.ordinal()] = create(template, kind);
+        
+        return handles[kind.ordinal()];
+    }
+    
+    private MethodHandle create(ExpressionTemplate template, Kind kind){
+        if(isConstant(template))
+            return constant(kind.type, kind.evaluate(kind.expression(template)));
+        
+        MethodHandle handle = createNative(template);
+        if(handle == null)
+            return leaf(template, kind);
+        
+        // Same conversions as the ones of Conversions.
+        Class<?> type = handle.type().returnType();
+        if(type == kind.type)
+            return handle;
+        
+        if(type == boolean.class)
+            return MethodHandles.filterReturnValue(handle, kind == Kind.DOUBLE ? BOOLEAN_TO_DOUBLE : BOOLEAN_TO_STRING);
+        
+        if(type == double.class)
+            return MethodHandles.filterReturnValue(handle, kind == Kind.BOOLEAN ? DOUBLE_TO_BOOLEAN : DOUBLE_TO_STRING);
+        
+        return MethodHandles.filterReturnValue(handle, kind == Kind.BOOLEAN ? STRING_TO_BOOLEAN : STRING_TO_DOUBLE);
+    }
+    
+    // Returns a handle of the value the provided template computes itself, or null if it isn't known.
+    private MethodHandle createNative(ExpressionTemplate template){
+        if(template instanceof ExpressionTemplates.BooleanVariable variable)
+            return MethodHandles.insertArguments(GET_BOOLEAN, 1, variable.slot);
+        
+        if(template instanceof ExpressionTemplates.DoubleVariable variable)
+            return MethodHandles.insertArguments(GET_DOUBLE, 1, variable.slot);
+        
+        if(template instanceof ExpressionTemplates.StringVariable variable)
+            return MethodHandles.insertArguments(GET_STRING, 1, variable.slot);
+        
+        if(template instanceof ExpressionTemplates.Negation negation)
+            return MethodHandles.filterReturnValue(compile(operands(negation).get(0), Kind.BOOLEAN), NOT);
+        
+        if(template instanceof ExpressionTemplates.And and)
+            return junction(operands(and), 0, false);
+        
+        if(template instanceof ExpressionTemplates.Or or)
+            return junction(operands(or), 0, true);
+        
+        if(template instanceof ExpressionTemplates.Concatenate concatenate)
+            return MethodHandles.filterReturnValue(MethodHandles.collectArguments(appender(concatenate), 0, NEW_BUILDER), BUILDER_TO_STRING);
+        
+        ExpressionTemplates.Comparison comparison = ExpressionTemplates.Comparison.of(template);
+        if(comparison != null)
+            return binary(comparison(comparison), (ExpressionTemplates.Composite)template, kind(comparison));
+        
+        if(template instanceof ExpressionTemplates.Chain chain)
+            return chain(operands(chain), chain.comparisons(), 0);
+        
+        if(template instanceof ExpressionTemplates.Interval interval){
+            MethodHandle within = MethodHandles.insertArguments(WITHIN, 1, interval.lower, interval.lowerInclusive, interval.upper, interval.upperInclusive);
+            return MethodHandles.filterReturnValue(compile(operands(interval).get(0), Kind.DOUBLE), within);
+        }
+        
+        if(template instanceof ExpressionTemplates.Sum sum)
+            return fold(ADD, 0, operands(sum));
+        
+        if(template instanceof ExpressionTemplates.Product product)
+            return fold(MULTIPLY, 1, operands(product));
+        
+        if(template instanceof ExpressionTemplates.Sub sub)
+            return binary(SUBTRACT, sub, Kind.DOUBLE);
+        
+        if(template instanceof ExpressionTemplates.Div div)
+            return binary(DIVIDE, div, Kind.DOUBLE);
+        
+        if(template instanceof ExpressionTemplates.NegationNumber negation)
+            return MethodHandles.filterReturnValue(compile(operands(negation).get(0), Kind.DOUBLE), NEGATE);
+        
+        return null;
+    }
+    
+    // Evaluates operands until one has the value that decides the result, which is then the result itself.
+    private MethodHandle junction(List<ExpressionTemplate> operands, int index, boolean decidingValue){
+        MethodHandle operand = compile(operands.get(index), Kind.BOOLEAN);
+        if(index == operands.size() - 1)
+            return operand;
+        
+        MethodHandle decided = constant(boolean.class, decidingValue);
+        MethodHandle remaining = junction(operands, index + 1, decidingValue);
+        
+        return decidingValue
+            ? MethodHandles.guardWithTest(operand, decided, remaining)
+            : MethodHandles.guardWithTest(operand, remaining, decided);
+    }
+    
+    // Returns a handle calling the operation with the values of both operands, evaluating the first operand first.
+    private MethodHandle binary(MethodHandle operation, ExpressionTemplates.Composite template, Kind kind){
+        List<ExpressionTemplate> operands = operands(template);
+        
+        return combine(operation, compile(operands.get(0), kind), compile(operands.get(1), kind));
+    }
+    
+    // Returns a handle taking the context, evaluating the left operand of the comparison at the index and the rest of the chain.
+    private MethodHandle chain(List<ExpressionTemplate> operands, List<ExpressionTemplates.Comparison> comparisons, int index){
+        Kind kind = kind(comparisons.get(index));
+        
+        return MethodHandles.foldArguments(compareNext(operands, comparisons, index), compile(operands.get(index), kind));
+    }
+    
+    /*
+     * Returns a handle taking the left operand of the comparison at the index and the context. The right operand is
+     * evaluated next and passed on as the left operand of the next comparison, should this one be true. The next
+     * comparison evaluates its left operand again if it compares the other kind of value.
+     */
+    private MethodHandle compareNext(List<ExpressionTemplate> operands, List<ExpressionTemplates.Comparison> comparisons, int index){
+        ExpressionTemplates.Comparison comparison = comparisons.get(index);
+        Class<?> type = kind(comparison).type;
+        
+        // Takes the left operand, the right operand and the context.
+        MethodHandle result = MethodHandles.dropArguments(comparison(comparison), 2, EvaluationContext.class);
+        if(index < comparisons.size() - 1){
+            MethodHandle next = comparisons.get(index + 1).numeric == comparison.numeric
+                ? compareNext(operands, comparisons, index + 1)
+                : MethodHandles.dropArguments(chain(operands, comparisons, index + 1), 0, type);
+            
+            result = MethodHandles.guardWithTest(
+                result,
+                MethodHandles.dropArguments(next, 0, type),
+                MethodHandles.dropArguments(constant(boolean.class, false), 0, type, type)
+            );
+        }
+        
+        return MethodHandles.foldArguments(result, 1, compile(operands.get(index + 1), kind(comparison)));
+    }
+    
+    private static MethodHandle comparison(ExpressionTemplates.Comparison comparison){
+        return switch(comparison){
+            case EQUAL -> EQUALS;
+            case NOT_EQUAL -> MethodHandles.filterReturnValue(EQUALS, NOT);
+            case EQUAL_IGNORE_CASE -> EQUALS_IGNORE_CASE;
+            case NOT_EQUAL_IGNORE_CASE -> MethodHandles.filterReturnValue(EQUALS_IGNORE_CASE, NOT);
+            case STARTS_WITH -> STARTS_WITH;
+            case ENDS_WITH -> ENDS_WITH;
+            case CONTAINS -> CONTAINS;
+            case EQUAL_NUMBERS -> SAME_STRING;
+            case NOT_EQUAL_NUMBERS -> MethodHandles.filterReturnValue(SAME_STRING, NOT);
+            case GREATER -> GREATER;
+            case GREATER_OR_EQUAL -> GREATER_OR_EQUAL;
+            case LESS -> LESS;
+            case LESS_OR_EQUAL -> LESS_OR_EQUAL;
+        };
+    }
+    
+    private static Kind kind(ExpressionTemplates.Comparison comparison){
+        return comparison.numeric ? Kind.DOUBLE : Kind.STRING;
+    }
+    
+    // Applies the operation to the start value and each operand, from first to last.
+    private MethodHandle fold(MethodHandle operation, double start, List<ExpressionTemplate> operands){
+        MethodHandle result = constant(double.class, start);
+        for(ExpressionTemplate operand : operands){
+            result = combine(operation, result, compile(operand, Kind.DOUBLE));
+        }
+        
+        return result;
+    }
+    
+    // Returns a handle taking a StringBuilder and the EvaluationContext, appending the String value of the template
+    // the same way ToStringExpression.appendTo does and returning the StringBuilder.
+    private MethodHandle appender(ExpressionTemplate template){
+        if(template instanceof ExpressionTemplates.Concatenate concatenate){
+            MethodHandle result = MethodHandles.dropArguments(MethodHandles.identity(StringBuilder.class), 1, EvaluationContext.class);
+            for(ExpressionTemplate operand : operands(concatenate)){
+                // Passes the StringBuilder returned by the previous appender and the same context to the next one.
+                MethodHandle chained = MethodHandles.collectArguments(appender(operand), 0, result);
+                result = MethodHandles.permuteArguments(chained, result.type(), 0, 1, 1);
+            }
+            return result;
+        }
+        
+        if(isConstant(template))
+            return MethodHandles.dropArguments(MethodHandles.insertArguments(APPEND_STRING, 1, template.returnStringExpression().evaluate()), 1, EvaluationContext.class);
+        
+        MethodHandle handle = createNative(template);
+        if(handle == null)
+            return APPEND_EXPRESSION.bindTo(leafExpression(template, Kind.STRING));
+        
+        Class<?> type = handle.type().returnType();
+        MethodHandle append = type == boolean.class ? APPEND_BOOLEAN : type == double.class ? APPEND_DOUBLE : APPEND_STRING;
+        
+        return MethodHandles.collectArguments(append, 1, handle);
+    }
+    
+    private MethodHandle leaf(ExpressionTemplate template, Kind kind){
+        return kind.evaluator.bindTo(leafExpression(template, kind));
+    }
+    
+    private static Object leafExpression(ExpressionTemplate template, Kind kind){
+        Object expression;
+        try{
+            expression = kind.expression(template);
+        }catch(RuntimeException ex){
+            throw new IllegalStateException("[MethodHandleCompiler] Template failed to create its expression.", ex);
+        }
+        if(expression == null)
+            throw new IllegalStateException("[MethodHandleCompiler] Template returned a null expression.");
+        
+        return expression;
+    }
+    
+    private static MethodHandle combine(MethodHandle operation, MethodHandle a, MethodHandle b){
+        // The handle collected last is called first. Both take the same context, which is passed once.
+        MethodHandle combined = MethodHandles.collectArguments(MethodHandles.collectArguments(operation, 1, b), 0, a);
+        
+        return MethodHandles.permuteArguments(combined, combined.type().dropParameterTypes(1, 2), 0, 0);
+    }
+    
+    private static MethodHandle constant(Class<?> type, Object value){
+        return MethodHandles.dropArguments(MethodHandles.constant(type, value), 0, EvaluationContext.class);
+    }
+    
+    // Templates with missing operands throw once their expressions are created, which is left to the original template.
+    private static List<ExpressionTemplate> operands(ExpressionTemplates.Composite template){
+        List<ExpressionTemplate> operands = template.operands();
+        if(operands.isEmpty() || operands.contains(null))
+            throw new IllegalStateException("[MethodHandleCompiler] Template has missing operands.");
+        
+        return operands;
+    }
+    
+    private static boolean isConstant(ExpressionTemplate template){
+        return template.getClass() == ConstantExpressionTemplate.class;
+    }
+    
+    private static boolean not(boolean value){
+        return !value;
+    }
+    
+    private static boolean greater(double a, double b){
+        return a > b;
+    }
+    
+    private static boolean greaterOrEqual(double a, double b){
+        return a >= b;
+    }
+    
+    private static boolean less(double a, double b){
+        return a < b;
+    }
+    
+    private static boolean lessOrEqual(double a, double b){
+        return a <= b;
+    }
+    
+    private static boolean within(double value, double lower, boolean lowerInclusive, double upper, boolean upperInclusive){
+        return (lowerInclusive ? value >= lower : value > lower) && (upperInclusive ? value <= upper : value < upper);
+    }
+    
+    private static double add(double a, double b){
+        return a + b;
+    }
+    
+    private static double multiply(double a, double b){
+        return a * b;
+    }
+    
+    private static double subtract(double a, double b){
+        return a - b;
+    }
+    
+    private static double divide(double a, double b){
+        return a / b;
+    }
+    
+    private static double negate(double value){
+        return -value;
+    }
+    
+    private static boolean toBoolean(double value){
+        return value != 0;
+    }
+    
+    private static double toDouble(boolean value){
+        return value ? 1 : 0;
+    }
+    
+    private static double toDouble(String value){
+        return NumberParser.parseOrDefault(value, false, value.length());
+    }
+    
+    private static StringBuilder appendTo(ToStringExpression expression, StringBuilder builder, EvaluationContext context){
+        expression.appendTo(builder, context);
+        return builder;
+    }
+    
+    // MethodHandles only throw what the expressions they call throw, which are unchecked exceptions.
+    private static RuntimeException rethrow(Throwable throwable){
+        if(throwable instanceof RuntimeException exception)
+            return exception;
+        
+        if(throwable instanceof Error error)
+            throw error;
+        
+        return new IllegalStateException(throwable);
+    }
+    
+    private enum Kind{
+        BOOLEAN(boolean.class, ToBooleanExpression.class),
+        DOUBLE(double.class, ToDoubleExpression.class),
+        STRING(String.class, ToStringExpression.class);
+        
+        private final Class<?> type;
+        private final MethodHandle evaluator;
+        
+        Kind(Class<?> type, Class<?> expression){
+            this.type = type;
+            try{
+                this.evaluator = LOOKUP.findVirtual(expression, "evaluate", MethodType.methodType(type, EvaluationContext.class));
+            }catch(ReflectiveOperationException ex){
+                throw new ExceptionInInitializerError(ex);
+            }
+        }
+        
+        Object expression(ExpressionTemplate template){
+            return switch(this){
+                case BOOLEAN -> template.returnBooleanExpression();
+                case DOUBLE -> template.returnDoubleExpression();
+                case STRING -> template.returnStringExpression();
+            };
+        }
+        
+        Object evaluate(Object expression){
+            return switch(this){
+                case BOOLEAN -> ((ToBooleanExpression)expression).evaluate();
+                case DOUBLE -> ((ToDoubleExpression)expression).evaluate();
+                case STRING -> ((ToStringExpression)expression).evaluate();
+            };
+        }
+    }
+    
+    /*
+     * Records, as the JIT compiler trusts their final fields to never change. A constant expression therefore also
+     * has a constant MethodHandle, which is what allows inlining it.
+     */
+    
+    private record BooleanExpression(MethodHandle handle) implements ToBooleanExpression{
+        @Override
+        public boolean evaluate(){
+            return evaluate(EvaluationContext.EMPTY);
+        }
+        
+        @Override
+        public boolean evaluate(EvaluationContext context){
+            try{
+                return (boolean)handle.invokeExact(context);
+            }catch(Throwable throwable){
+                throw rethrow(throwable);
+            }
+        }
+    }
+    
+    private record DoubleExpression(MethodHandle handle) implements ToDoubleExpression{
+        @Override
+        public double evaluate(){
+            return evaluate(EvaluationContext.EMPTY);
+        }
+        
+        @Override
+        public double evaluate(EvaluationContext context){
+            try{
+                return (double)handle.invokeExact(context);
+            }catch(Throwable throwable){
+                throw rethrow(throwable);
+            }
+        }
+    }
+    
+    private record StringExpression(MethodHandle handle, MethodHandle appender) implements ToStringExpression{
+        @Override
+        public String evaluate(){
+            return evaluate(EvaluationContext.EMPTY);
+        }
+        
+        @Override
+        public String evaluate(EvaluationContext context){
+            try{
+                return (String)handle.invokeExact(context);
+            }catch(Throwable throwable){
+                throw rethrow(throwable);
+            }
+        }
+        
+        @Override
+        public void appendTo(StringBuilder builder){
+            appendTo(builder, EvaluationContext.EMPTY);
+        }
+        
+        @Override
+        public void appendTo(StringBuilder builder, EvaluationContext context){
+            try{
+                appender.invokeExact(builder, context);
+            }catch(Throwable throwable){
+                throw rethrow(throwable);
+            }
+        }
+    }
+    
+    private record CompiledTemplate(ToBooleanExpression booleanExpression, ToDoubleExpression doubleExpression,
+                                    ToStringExpression stringExpression) implements ExpressionTemplate{
+        @Override
+        public ToBooleanExpression returnBooleanExpression(){
+            return booleanExpression;
+        }
+        
+        @Override
+        public ToDoubleExpression returnDoubleExpression(){
+            return doubleExpression;
+        }
+        
+        @Override
+        public ToStringExpression returnStringExpression(){
+            return stringExpression;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser.templates;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replaces {@link ExpressionTemplate ExpressionTemplates} with a shared instance of the same structure, so that
+ * texts with common parts, such as many conditions comparing the same variable, share one template for them.
+ * <br>Templates that are shared also share the expressions they create, so the expressions of a common part are only
+ * created and held in memory once.
+ * 
+ * <p>The following templates are shared:
+ * <ul>
+ *     <li>{@link ConstantExpressionTemplate ConstantExpressionTemplates} with the same boolean, double and String
+ *     values. Subclasses of it are left as-is.</li>
+ *     <li>Variables created through {@link ExpressionTemplates} reading the same slot.</li>
+ *     <li>Templates created through {@link ExpressionTemplates} of the same kind with the same operands, once their
+ *     operands are shared.</li>
+ * </ul>
+ * Any other template is left as-is, with templates holding it only being shared with ones holding the same instance.
+ * 
+ * <p>Shared templates are only referenced weakly, so templates no longer used anywhere else can still be garbage
+ * collected. The templates are immutable, which makes sharing them between texts and threads safe.
+ * <br>This class is safe to use from multiple threads at once.
+ * 
+ * <p>Example:
+ * <pre>{@code
+ * DefaultExpressionParserEngine engine = new DefaultExpressionParserEngine.DefaultBuilder()
+ *     .setTemplateInterner(new TemplateInterner())
+ *     .createDefault()
+ *     .build();
+ * }</pre>
+ */
+public class TemplateInterner{
+    
+    private final Cache<List<Object>, ExpressionTemplate> templates = CacheBuilder.newBuilder().weakValues().build();
+    
+    /**
+     * Returns the shared instance of the provided {@link ExpressionTemplate}, sharing the template itself should there
+     * be none yet.
+     * <br>The returned template has the same boolean, double and String values as the provided one.
+     * 
+     * @param  template
+     *         The ExpressionTemplate to intern. May be null.
+     * 
+     * @return The shared ExpressionTemplate, or null if the provided one is null.
+     */
+    public ExpressionTemplate intern(ExpressionTemplate template){
+        if(template == null)
+            return null;
+        
+        return visit(CommonSubexpressionEliminator.original(template), new IdentityHashMap<>());
+    }
+    
+    /**
+     * Returns the amount of shared {@link ExpressionTemplate ExpressionTemplates}, including ones that may have been
+     * garbage collected already.
+     * 
+     * @return The approximate amount of shared ExpressionTemplates.
+     */
+    public long size(){
+        return templates.size();
+    }
+    
+    private ExpressionTemplate visit(ExpressionTemplate template, Map<ExpressionTemplate, ExpressionTemplate> visited){
+        ExpressionTemplate result = visited.get(template);
+        if(result == null){
+            result = share(template, visited);
+            visited.put(template, result);
+        }
+        
+        return result;
+    }
+    
+    private ExpressionTemplate share(ExpressionTemplate template, Map<ExpressionTemplate, ExpressionTemplate> visited){
+        List<Object> key;
+        ExpressionTemplate candidate = template;
+        if(template instanceof ExpressionTemplates.Composite composite){
+            List<ExpressionTemplate> operands = composite.operands();
+            List<ExpressionTemplate> shared = new ArrayList<>(operands.size());
+            boolean changed = false;
+            for(ExpressionTemplate operand : operands){
+                ExpressionTemplate result = operand == null ? null : visit(operand, visited);
+                
+                changed |= result != operand;
+                shared.add(result);
+            }
+            
+            if(changed)
+                candidate = composite.withOperands(shared);
+            
+            // Shared operands are the same instance for the same structure, so comparing them by identity is enough.
+            Object[] parts = new Object[shared.size() + 1];
+            parts[0] = composite.kind();
+            for(int i = 0; i < shared.size(); i++){
+                parts[i + 1] = shared.get(i);
+            }
+            key = Arrays.asList(parts);
+        }else
+        if(template.getClass() == ConstantExpressionTemplate.class){
+            // Raw bits keep apart -0.0 and 0.0, as well as NaNs written differently.
+            key = Arrays.asList(
+                ConstantExpressionTemplate.class,
+                template.returnBooleanExpression().evaluate(),
+                Double.doubleToRawLongBits(template.returnDoubleExpression().evaluate()),
+                template.returnStringExpression().evaluate()
+            );
+        }else
+        if(template instanceof ExpressionTemplates.BooleanVariable variable){
+            key = Arrays.asList(ExpressionTemplates.BooleanVariable.class, variable.slot);
+        }else
+        if(template instanceof ExpressionTemplates.DoubleVariable variable){
+            key = Arrays.asList(ExpressionTemplates.DoubleVariable.class, variable.slot);
+        }else
+        if(template instanceof ExpressionTemplates.StringVariable variable){
+            key = Arrays.asList(ExpressionTemplates.StringVariable.class, variable.slot);
+        }else{
+            // A key holding the template itself would keep it from ever being garbage collected.
+            return template;
+        }
+        
+        ExpressionTemplate existing = templates.asMap().putIfAbsent(key, candidate);
+        return existing == null ? candidate : existing;
+    }
+}
@@ -0,0 +1,525 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser.templates;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rewrites trees of the {@link ExpressionTemplate ExpressionTemplates} created through {@link ExpressionTemplates}
+ * into trees that evaluate to the same values with less work.
+ * <br>Templates not created through ExpressionTemplates are left as-is, but their operands are still optimized.
+ * 
+ * <p>The following rewrites are applied:
+ * <ul>
+ *     <li>Templates whose operands are all {@link ConstantExpressionTemplate ConstantExpressionTemplates} are replaced
+ *     with a ConstantExpressionTemplate holding their values.</li>
+ *     <li>Adjacent constant operands of {@link ExpressionTemplates#concat(java.util.Collection) concat} are merged
+ *     into one, as are leading constant operands of {@link ExpressionTemplates#sum(java.util.Collection) sum} and
+ *     {@link ExpressionTemplates#product(java.util.Collection) product}. Constants after a non-constant operand of
+ *     sum and product are left alone, as floating point arithmetic is not associative.</li>
+ *     <li>{@link ExpressionTemplates#and(java.util.Collection) and} and {@link ExpressionTemplates#or(java.util.Collection) or}
+ *     templates nested within one of the same kind are merged into it. Constant operands that can't change the
+ *     result ({@code true} for and, {@code false} for or) are removed, while operands following a constant that
+ *     decides the result are never evaluated and therefore dropped.</li>
+ *     <li>{@link ExpressionTemplates#chain(List) Chains} are split at comparisons of two constants, which are then
+ *     treated like the constant operands of an and.</li>
+ *     <li>A lower and an upper bound of the same pure operand, such as {@code x >= 10 and x < 20} or
+ *     {@code 10 <= x < 20}, become an {@link ExpressionTemplates#interval(ExpressionTemplate, double, boolean, double, boolean) interval}
+ *     evaluating the operand only once. Only adjacent operands of an and, or chains of exactly these two comparisons,
+ *     are combined.</li>
+ *     <li>Double {@link ExpressionTemplates#negate(ExpressionTemplate) negations} are removed.</li>
+ *     <li>A sum or product being the first operand of another one of the same kind is merged into it. Zeros are
+ *     removed from sums, ones from products.</li>
+ *     <li>Subtracting a constant becomes a sum with the negated constant, dividing by a power of two a product with
+ *     its reciprocal, and double {@link ExpressionTemplates#negateNumber(ExpressionTemplate) number negations} are
+ *     removed.</li>
+ * </ul>
+ * 
+ * <p>Arithmetic rewrites are limited to the ones giving the exact same result under IEEE 754 for every possible
+ * value, including {@code -0.0}, infinities and NaN. Sums start at {@code +0.0}, so {@code -0.0} operands can't
+ * make a sum negative zero, which is what allows removing zeros from them.
+ */
+public class TemplateOptimizer{
+    
+    private final Map<ExpressionTemplate, ExpressionTemplate> optimized = new IdentityHashMap<>();
+    // Templates with a null operand somewhere below them, which throw once their expressions are requested.
+    private final Set<ExpressionTemplate> incomplete = Collections.newSetFromMap(new IdentityHashMap<>());
+    
+    private TemplateOptimizer(){}
+    
+    /**
+     * Optimizes the provided {@link ExpressionTemplate}, returning a template with the same boolean, double and String
+     * values.
+     * 
+     * @param  template
+     *         The ExpressionTemplate to optimize.
+     * 
+     * @return The optimized ExpressionTemplate, or the provided one if nothing could be optimized.
+     */
+    public static ExpressionTemplate optimize(ExpressionTemplate template){
+        if(template == null)
+            return null;
+        
+        return new TemplateOptimizer().visit(CommonSubexpressionEliminator.original(template));
+    }
+    
+    private ExpressionTemplate visit(ExpressionTemplate template){
+        // Operands may be shared between templates, such as in "a < b < c", so keep them shared.
+        ExpressionTemplate result = optimized.get(template);
+        if(result == null){
+            result = rewrite(template);
+            optimized.put(template, result);
+        }
+        
+        return result;
+    }
+    
+    private ExpressionTemplate rewrite(ExpressionTemplate template){
+        if(!(template instanceof ExpressionTemplates.Composite composite))
+            return template;
+        
+        List<ExpressionTemplate> operands = composite.operands();
+        List<ExpressionTemplate> rewritten = new ArrayList<>(operands.size());
+        boolean changed = false;
+        boolean constant = true;
+        boolean complete = true;
+        for(ExpressionTemplate operand : operands){
+            ExpressionTemplate result = visit(operand);
+            
+            changed |= result != operand;
+            constant &= isConstant(result);
+            complete &= result != null && !incomplete.contains(result);
+            rewritten.add(result);
+        }
+        
+        ExpressionTemplate result = changed ? composite.withOperands(rewritten) : template;
+        if(constant)
+            return toConstant(result);
+        
+        // Dropping or moving operands could hide the exception such a template throws, so leave it as-is.
+        if(!complete){
+            incomplete.add(result);
+            return result;
+        }
+        
+        if(result instanceof ExpressionTemplates.And)
+            return simplifyJunction(result, rewritten, true);
+        
+        if(result instanceof ExpressionTemplates.Or)
+            return simplifyJunction(result, rewritten, false);
+        
+        if(result instanceof ExpressionTemplates.Chain chain)
+            return simplifyChain(result, chain.links());
+        
+        if(result instanceof ExpressionTemplates.Negation)
+            return simplifyNegation(result, rewritten.get(0));
+        
+        if(result instanceof ExpressionTemplates.Concatenate)
+            return mergeConstants(result, rewritten, rewritten.size());
+        
+        if(result instanceof ExpressionTemplates.Sum || result instanceof ExpressionTemplates.Product)
+            return simplifyArithmetic(result, rewritten);
+        
+        if(result instanceof ExpressionTemplates.Sub)
+            return simplifySubtraction(result, rewritten.get(0), rewritten.get(1));
+        
+        if(result instanceof ExpressionTemplates.Div)
+            return simplifyDivision(result, rewritten.get(0), rewritten.get(1));
+        
+        if(result instanceof ExpressionTemplates.NegationNumber)
+            return simplifyNumberNegation(result, rewritten.get(0));
+        
+        return result;
+    }
+    
+    /*
+     * Merges runs of adjacent constants among the first "limit" operands into a single constant of the same kind of
+     * template as the provided one.
+     */
+    private ExpressionTemplate mergeConstants(ExpressionTemplate template, List<ExpressionTemplate> operands, int limit){
+        ExpressionTemplates.Composite composite = (ExpressionTemplates.Composite)template;
+        List<ExpressionTemplate> merged = new ArrayList<>(operands.size());
+        
+        int index = 0;
+        while(index < operands.size()){
+            int end = index;
+            while(end < limit && isConstant(operands.get(end)))
+                end++;
+            
+            if(end - index > 1){
+                merged.add(toConstant(composite.withOperands(List.copyOf(operands.subList(index, end)))));
+                index = end;
+            }else{
+                merged.add(operands.get(index++));
+            }
+        }
+        
+        if(merged.size() == operands.size())
+            return template;
+        
+        return composite.withOperands(merged);
+    }
+    
+    /*
+     * Simplifies an and (isAnd = true) or an or template. The identity of and is true, the one of or is false, and
+     * the opposite value decides the result, skipping any operand after it.
+     */
+    private ExpressionTemplate simplifyJunction(ExpressionTemplate template, List<ExpressionTemplate> operands, boolean isAnd){
+        List<ExpressionTemplate> simplified = new ArrayList<>(operands.size());
+        boolean decided = collectOperands(simplified, operands, isAnd);
+        if(isAnd)
+            fuseIntervals(simplified);
+        
+        if(simplified.isEmpty())
+            return ConstantExpressionTemplate.of(isAnd);
+        
+        if(simplified.size() == 1){
+            ExpressionTemplate operand = simplified.get(0);
+            if(decided)
+                return ConstantExpressionTemplate.of(!isAnd);
+            
+            // Only boolean templates share the double and String values of an and or or holding them.
+            if(isBooleanTemplate(operand))
+                return operand;
+        }
+        
+        if(simplified.equals(operands))
+            return template;
+        
+        return ((ExpressionTemplates.Composite)template).withOperands(simplified);
+    }
+    
+    /*
+     * Splits a chain at comparisons of two constants, as a < 1 < 2 < b is the same as a < 1 and 1 < 2 and 2 < b. The
+     * comparisons of constants become constants, which the and then removes or decides its result with.
+     */
+    private ExpressionTemplate simplifyChain(ExpressionTemplate template, List<ExpressionTemplate> links){
+        List<ExpressionTemplate> parts = new ArrayList<>();
+        int start = 0;
+        for(int i = 0; i < links.size(); i++){
+            List<ExpressionTemplate> operands = ((ExpressionTemplates.Composite)links.get(i)).operands();
+            if(!isConstant(operands.get(0)) || !isConstant(operands.get(1)))
+                continue;
+            
+            addChain(parts, links.subList(start, i));
+            parts.add(toConstant(links.get(i)));
+            start = i + 1;
+        }
+        
+        if(start == 0){
+            ExpressionTemplate interval = links.size() == 2 ? toInterval(links.get(0), links.get(1)) : null;
+            return interval == null ? template : interval;
+        }
+        
+        addChain(parts, links.subList(start, links.size()));
+        return simplifyJunction(ExpressionTemplates.and(parts), parts, true);
+    }
+    
+    private static void addChain(List<ExpressionTemplate> target, List<ExpressionTemplate> links){
+        ExpressionTemplate interval = links.size() == 2 ? toInterval(links.get(0), links.get(1)) : null;
+        if(interval != null){
+            target.add(interval);
+        }else
+        if(links.size() == 1){
+            target.add(links.get(0));
+        }else
+        if(links.size() > 1){
+            target.add(ExpressionTemplates.chain(List.copyOf(links)));
+        }
+    }
+    
+    /*
+     * Replaces adjacent operands of an and comparing the same operand with a lower and an upper bound, such as
+     * x >= 10 and x < 20, with an interval evaluating the operand once. The operand has to be pure, as it was
+     * evaluated twice before.
+     */
+    private static void fuseIntervals(List<ExpressionTemplate> operands){
+        for(int i = 0; i < operands.size() - 1; i++){
+            Bound first = Bound.of(operands.get(i));
+            Bound second = Bound.of(operands.get(i + 1));
+            if(first == null || second == null || !isSame(first.operand(), second.operand()))
+                continue;
+            
+            ExpressionTemplate interval = toInterval(first, second);
+            if(interval != null){
+                operands.set(i, interval);
+                operands.remove(i + 1);
+            }
+        }
+    }
+    
+    // Returns an interval of the comparisons of a chain, which share their operand, or null if they aren't bounds.
+    private static ExpressionTemplate toInterval(ExpressionTemplate first, ExpressionTemplate second){
+        Bound a = Bound.of(first);
+        Bound b = Bound.of(second);
+        if(a == null || b == null || a.operand() != b.operand())
+            return null;
+        
+        return toInterval(a, b);
+    }
+    
+    private static ExpressionTemplate toInterval(Bound a, Bound b){
+        if(a.lower() == b.lower())
+            return null;
+        
+        Bound lower = a.lower() ? a : b;
+        Bound upper = a.lower() ? b : a;
+        return ExpressionTemplates.interval(a.operand(), lower.value(), lower.inclusive(), upper.value(), upper.inclusive());
+    }
+    
+    /*
+     * Returns whether both templates are pure parts with the same values, the same way CommonSubexpressionEliminator
+     * finds shared parts.
+     */
+    private static boolean isSame(ExpressionTemplate a, ExpressionTemplate b){
+        if(a == b)
+            return isPure(a);
+        
+        if(a == null || b == null || !a.isPure() || !b.isPure())
+            return false;
+        
+        if(a instanceof ExpressionTemplates.Composite first && b instanceof ExpressionTemplates.Composite second){
+            List<ExpressionTemplate> operands = first.operands();
+            List<ExpressionTemplate> others = second.operands();
+            if(!first.kind().equals(second.kind()) || operands.size() != others.size())
+                return false;
+            
+            for(int i = 0; i < operands.size(); i++){
+                if(!isSame(operands.get(i), others.get(i)))
+                    return false;
+            }
+            return true;
+        }
+        
+        if(isConstant(a) && isConstant(b)){
+            return a.returnBooleanExpression().evaluate() == b.returnBooleanExpression().evaluate()
+                && Double.doubleToRawLongBits(a.returnDoubleExpression().evaluate()) == Double.doubleToRawLongBits(b.returnDoubleExpression().evaluate())
+                && a.returnStringExpression().evaluate().equals(b.returnStringExpression().evaluate());
+        }
+        
+        if(a instanceof ExpressionTemplates.BooleanVariable first && b instanceof ExpressionTemplates.BooleanVariable second)
+            return first.slot == second.slot;
+        
+        if(a instanceof ExpressionTemplates.DoubleVariable first && b instanceof ExpressionTemplates.DoubleVariable second)
+            return first.slot == second.slot;
+        
+        if(a instanceof ExpressionTemplates.StringVariable first && b instanceof ExpressionTemplates.StringVariable second)
+            return first.slot == second.slot;
+        
+        // Templates not created through ExpressionTemplates are only the same if they say so.
+        if(a instanceof ExpressionTemplates.Composite || b instanceof ExpressionTemplates.Composite || isConstant(a) || isConstant(b))
+            return false;
+        
+        return a.equals(b);
+    }
+    
+    // Returns true if a constant deciding the result was found, which is added as the last operand.
+    private static boolean collectOperands(List<ExpressionTemplate> target, List<ExpressionTemplate> operands, boolean isAnd){
+        for(ExpressionTemplate operand : operands){
+            if(isConstant(operand)){
+                if(operand.returnBooleanExpression().evaluate() == isAnd)
+                    continue;
+                
+                target.add(operand);
+                return true;
+            }
+            
+            if(isAnd ? operand instanceof ExpressionTemplates.And : operand instanceof ExpressionTemplates.Or){
+                if(collectOperands(target, ((ExpressionTemplates.Composite)operand).operands(), isAnd))
+                    return true;
+                
+                continue;
+            }
+            
+            target.add(operand);
+        }
+        
+        return false;
+    }
+    
+    private static ExpressionTemplate simplifyNegation(ExpressionTemplate template, ExpressionTemplate operand){
+        if(!(operand instanceof ExpressionTemplates.Negation negation))
+            return template;
+        
+        ExpressionTemplate negated = negation.operands().get(0);
+        
+        // The and keeps the boolean value of a non-boolean template while converting it like the negations did.
+        return isBooleanTemplate(negated) ? negated : ExpressionTemplates.and(List.of(negated));
+    }
+    
+    /*
+     * Simplifies a sum or product. Only a leading nested template can be merged, as (0 + a + b) + c equals
+     * 0 + a + b + c, while a + (b + c) may round differently than a + b + c.
+     */
+    private ExpressionTemplate simplifyArithmetic(ExpressionTemplate template, List<ExpressionTemplate> operands){
+        boolean isSum = template instanceof ExpressionTemplates.Sum;
+        List<ExpressionTemplate> simplified = new ArrayList<>(operands.size());
+        
+        ExpressionTemplate first = operands.get(0);
+        if(first.getClass() == template.getClass()){
+            addArithmeticOperands(simplified, ((ExpressionTemplates.Composite)first).operands(), isSum);
+        }else{
+            addArithmeticOperands(simplified, operands.subList(0, 1), isSum);
+        }
+        addArithmeticOperands(simplified, operands.subList(1, operands.size()), isSum);
+        
+        // Only the identities were constant, which folding would have caught already.
+        if(simplified.isEmpty())
+            return toConstant(template);
+        
+        ExpressionTemplate result = simplified.equals(operands) ? template : ((ExpressionTemplates.Composite)template).withOperands(simplified);
+        result = mergeConstants(result, simplified, leadingConstants(simplified));
+        
+        // 1 * x is x for any value, but 0 + x turns -0.0 into 0.0.
+        List<ExpressionTemplate> remaining = ((ExpressionTemplates.Composite)result).operands();
+        if(!isSum && remaining.size() == 1 && isDoubleTemplate(remaining.get(0)))
+            return remaining.get(0);
+        
+        return result;
+    }
+    
+    private static void addArithmeticOperands(List<ExpressionTemplate> target, List<ExpressionTemplate> operands, boolean isSum){
+        for(ExpressionTemplate operand : operands){
+            if(isConstant(operand)){
+                double value = operand.returnDoubleExpression().evaluate();
+                if(isSum ? value == 0 : value == 1)
+                    continue;
+            }
+            
+            target.add(operand);
+        }
+    }
+    
+    private ExpressionTemplate simplifySubtraction(ExpressionTemplate template, ExpressionTemplate a, ExpressionTemplate b){
+        if(!isConstant(b))
+            return template;
+        
+        double value = b.returnDoubleExpression().evaluate();
+        // a - 0.0 is a for any value, but a + -0.0 is not for a = -0.0.
+        if(Double.doubleToRawLongBits(value) == 0L)
+            return identity(a);
+        
+        // a - b is defined as a + (-b), and 0 + a only differs from a for a = -0.0, where -0.0 - b equals 0.0 - b.
+        List<ExpressionTemplate> operands = List.of(a, ConstantExpressionTemplate.of(-value));
+        return simplifyArithmetic(ExpressionTemplates.sum(operands), operands);
+    }
+    
+    private ExpressionTemplate simplifyDivision(ExpressionTemplate template, ExpressionTemplate a, ExpressionTemplate b){
+        if(!isConstant(b))
+            return template;
+        
+        double value = b.returnDoubleExpression().evaluate();
+        if(value == 1)
+            return identity(a);
+        
+        // Division and multiplication both round the same exact result, as long as the reciprocal is exact.
+        int exponent = Math.getExponent(value);
+        if(exponent < Double.MIN_EXPONENT || exponent > Double.MAX_EXPONENT || Math.abs(value) != Math.scalb(1.0, exponent))
+            return template;
+        
+        List<ExpressionTemplate> operands = List.of(a, ConstantExpressionTemplate.of(1 / value));
+        return simplifyArithmetic(ExpressionTemplates.product(operands), operands);
+    }
+    
+    private static ExpressionTemplate simplifyNumberNegation(ExpressionTemplate template, ExpressionTemplate operand){
+        if(!(operand instanceof ExpressionTemplates.NegationNumber negation))
+            return template;
+        
+        return identity(negation.operands().get(0));
+    }
+    
+    // Returns a template with the same double value as the provided one, converted like the other arithmetic templates.
+    private static ExpressionTemplate identity(ExpressionTemplate template){
+        return isDoubleTemplate(template) ? template : ExpressionTemplates.product(List.of(template));
+    }
+    
+    private static boolean isDoubleTemplate(ExpressionTemplate template){
+        return template instanceof ExpressionTemplates.MemoizedDoubleTemplate;
+    }
+    
+    private static boolean isBooleanTemplate(ExpressionTemplate template){
+        return template instanceof ExpressionTemplates.MemoizedBooleanTemplate;
+    }
+    
+    private static int leadingConstants(List<ExpressionTemplate> operands){
+        int count = 0;
+        while(count < operands.size() && isConstant(operands.get(count)))
+            count++;
+        
+        return count;
+    }
+    
+    private static boolean isPure(ExpressionTemplate template){
+        if(template == null || !template.isPure())
+            return false;
+        
+        if(template instanceof ExpressionTemplates.Composite composite){
+            for(ExpressionTemplate operand : composite.operands()){
+                if(!isPure(operand))
+                    return false;
+            }
+        }
+        
+        return true;
+    }
+    
+    // A comparison of the double value of an operand with a constant, being either a lower or an upper bound of it.
+    private record Bound(ExpressionTemplate operand, double value, boolean lower, boolean inclusive){
+        
+        private static Bound of(ExpressionTemplate template){
+            ExpressionTemplates.Comparison comparison = ExpressionTemplates.Comparison.of(template);
+            if(comparison != ExpressionTemplates.Comparison.GREATER && comparison != ExpressionTemplates.Comparison.GREATER_OR_EQUAL
+                && comparison != ExpressionTemplates.Comparison.LESS && comparison != ExpressionTemplates.Comparison.LESS_OR_EQUAL)
+                return null;
+            
+            List<ExpressionTemplate> operands = ((ExpressionTemplates.Composite)template).operands();
+            boolean constantFirst = isConstant(operands.get(0));
+            if(constantFirst == isConstant(operands.get(1)) || operands.contains(null))
+                return null;
+            
+            // x > c is a lower bound of x, while c > x is an upper one.
+            boolean greater = comparison == ExpressionTemplates.Comparison.GREATER || comparison == ExpressionTemplates.Comparison.GREATER_OR_EQUAL;
+            return new Bound(
+                operands.get(constantFirst ? 1 : 0),
+                operands.get(constantFirst ? 0 : 1).returnDoubleExpression().evaluate(),
+                greater != constantFirst,
+                comparison == ExpressionTemplates.Comparison.GREATER_OR_EQUAL || comparison == ExpressionTemplates.Comparison.LESS_OR_EQUAL
+            );
+        }
+    }
+    
+    private static boolean isConstant(ExpressionTemplate template){
+        // Subclasses could compute their values on every call, so only trust the class itself.
+        return template != null && template.getClass() == ConstantExpressionTemplate.class;
+    }
+    
+    private static ExpressionTemplate toConstant(ExpressionTemplate template){
+        return new ConstantExpressionTemplate(
+            template.returnBooleanExpression().evaluate(),
+            template.returnDoubleExpression().evaluate(),
+            template.returnStringExpression().evaluate()
+        );
+    }
+}
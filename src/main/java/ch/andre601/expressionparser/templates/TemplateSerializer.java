@@ -0,0 +1,541 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser.templates;
+
+import ch.andre601.expressionparser.internal.CheckUtil;
+import ch.andre601.expressionparser.internal.NumberFormatter;
+import ch.andre601.expressionparser.internal.NumberParser;
+import com.google.common.collect.ImmutableMap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes trees of {@link ExpressionTemplate ExpressionTemplates} in a compact binary format and reads them again.
+ * <br>Templates created through {@link ExpressionTemplates} and {@link ConstantExpressionTemplate} are supported
+ * out of the box. Any other template, such as one created by a custom {@link ch.andre601.expressionparser.parsers.ValueReader ValueReader},
+ * has to be registered through {@link Builder#register(String, Class, TemplateWriter, TemplateReader) Builder.register}
+ * with an id to write it with.
+ * 
+ * <p>Each template is written as a single byte for its type, followed by its values and operands. Templates compiled
+ * for an {@link ch.andre601.expressionparser.DefaultExpressionParserEngine.EvaluationMode EvaluationMode} other than
+ * {@code INTERPRETED} can't be written.
+ * 
+ * <p>Example:
+ * <pre>{@code
+ * TemplateSerializer serializer = new TemplateSerializer.Builder()
+ *     .register("placeholder", Placeholder.class,
+ *         (placeholder, out, s) -> TemplateSerializer.writeString(out, placeholder.getValue()),
+ *         (in, s) -> new Placeholder(TemplateSerializer.readString(in)))
+ *     .build();
+ * }</pre>
+ */
+public class TemplateSerializer{
+    
+    private static final int NULL = 0;
+    private static final int CONSTANT = 1;
+    private static final int BOOLEAN_CONSTANT = 2;
+    private static final int NUMBER_CONSTANT = 3;
+    private static final int STRING_CONSTANT = 4;
+    private static final int BOOLEAN_VARIABLE = 5;
+    private static final int DOUBLE_VARIABLE = 6;
+    private static final int STRING_VARIABLE = 7;
+    private static final int NEGATION = 8;
+    private static final int AND = 9;
+    private static final int OR = 10;
+    private static final int CONCATENATE = 11;
+    private static final int EQUAL = 12;
+    private static final int NOT_EQUAL = 13;
+    private static final int EQUAL_IGNORE_CASE = 14;
+    private static final int NOT_EQUAL_IGNORE_CASE = 15;
+    private static final int STARTS_WITH = 16;
+    private static final int ENDS_WITH = 17;
+    private static final int CONTAINS = 18;
+    private static final int GREATER = 19;
+    private static final int GREATER_OR_EQUAL = 20;
+    private static final int LESS = 21;
+    private static final int LESS_OR_EQUAL = 22;
+    private static final int SUM = 23;
+    private static final int PRODUCT = 24;
+    private static final int SUB = 25;
+    private static final int DIV = 26;
+    private static final int NEGATION_NUMBER = 27;
+    private static final int CUSTOM = 28;
+    private static final int CHAIN = 29;
+    private static final int INTERVAL = 30;
+    
+    private static final ImmutableMap<Class<?>, Integer> TAGS = ImmutableMap.<Class<?>, Integer>builder()
+        .put(ExpressionTemplates.BooleanVariable.class, BOOLEAN_VARIABLE)
+        .put(ExpressionTemplates.DoubleVariable.class, DOUBLE_VARIABLE)
+        .put(ExpressionTemplates.StringVariable.class, STRING_VARIABLE)
+        .put(ExpressionTemplates.Negation.class, NEGATION)
+        .put(ExpressionTemplates.And.class, AND)
+        .put(ExpressionTemplates.Or.class, OR)
+        .put(ExpressionTemplates.Concatenate.class, CONCATENATE)
+        .put(ExpressionTemplates.Equal.class, EQUAL)
+        .put(ExpressionTemplates.NotEqual.class, NOT_EQUAL)
+        .put(ExpressionTemplates.EqualIgnoreCase.class, EQUAL_IGNORE_CASE)
+        .put(ExpressionTemplates.NotEqualIgnoreCase.class, NOT_EQUAL_IGNORE_CASE)
+        .put(ExpressionTemplates.StartsWith.class, STARTS_WITH)
+        .put(ExpressionTemplates.EndsWith.class, ENDS_WITH)
+        .put(ExpressionTemplates.Contains.class, CONTAINS)
+        .put(ExpressionTemplates.Greater.class, GREATER)
+        .put(ExpressionTemplates.GreaterOrEqual.class, GREATER_OR_EQUAL)
+        .put(ExpressionTemplates.Less.class, LESS)
+        .put(ExpressionTemplates.LessOrEqual.class, LESS_OR_EQUAL)
+        .put(ExpressionTemplates.Sum.class, SUM)
+        .put(ExpressionTemplates.Product.class, PRODUCT)
+        .put(ExpressionTemplates.Sub.class, SUB)
+        .put(ExpressionTemplates.Div.class, DIV)
+        .put(ExpressionTemplates.NegationNumber.class, NEGATION_NUMBER)
+        .put(ExpressionTemplates.Chain.class, CHAIN)
+        .put(ExpressionTemplates.Interval.class, INTERVAL)
+        .build();
+    
+    private final ImmutableMap<Class<?>, Registration<?>> registrationsByType;
+    private final ImmutableMap<String, Registration<?>> registrationsById;
+    
+    private TemplateSerializer(Map<Class<?>, Registration<?>> registrationsByType, Map<String, Registration<?>> registrationsById){
+        this.registrationsByType = ImmutableMap.copyOf(registrationsByType);
+        this.registrationsById = ImmutableMap.copyOf(registrationsById);
+    }
+    
+    /**
+     * Creates a new TemplateSerializer only supporting the templates of {@link ExpressionTemplates} and
+     * {@link ConstantExpressionTemplate}.
+     * 
+     * @return New TemplateSerializer without any custom templates.
+     */
+    public static TemplateSerializer createDefault(){
+        return new Builder().build();
+    }
+    
+    /**
+     * Writes the provided {@link ExpressionTemplate} and all of its operands to the provided DataOutput.
+     * <br>The template may be null, as may be any of its operands.
+     * 
+     * @param  template
+     *         The ExpressionTemplate to write.
+     * @param  out
+     *         The DataOutput to write to.
+     * 
+     * @throws NotSerializableException
+     *         Should the template or any of its operands neither be a built-in template nor be registered.
+     * @throws IOException
+     *         Should writing to the DataOutput fail.
+     */
+    public void write(ExpressionTemplate template, DataOutput out) throws IOException{
+        template = CommonSubexpressionEliminator.original(template);
+        if(template == null){
+            out.writeByte(NULL);
+            return;
+        }
+        
+        if(template.getClass() == ConstantExpressionTemplate.class){
+            writeConstant(template, out);
+            return;
+        }
+        
+        Integer tag = TAGS.get(template.getClass());
+        if(tag != null){
+            out.writeByte(tag);
+            switch(tag){
+                case BOOLEAN_VARIABLE -> writeVarInt(out, ((ExpressionTemplates.BooleanVariable)template).slot);
+                case DOUBLE_VARIABLE -> writeVarInt(out, ((ExpressionTemplates.DoubleVariable)template).slot);
+                case STRING_VARIABLE -> writeVarInt(out, ((ExpressionTemplates.StringVariable)template).slot);
+                case CHAIN -> {
+                    // The type of each comparison, followed by the operands they share.
+                    List<ExpressionTemplate> links = ((ExpressionTemplates.Chain)template).links();
+                    writeVarInt(out, links.size());
+                    for(ExpressionTemplate link : links){
+                        out.writeByte(TAGS.get(link.getClass()));
+                    }
+                    for(ExpressionTemplate operand : ((ExpressionTemplates.Chain)template).operands()){
+                        write(operand, out);
+                    }
+                }
+                case INTERVAL -> {
+                    // Which bounds are inclusive, followed by the bounds and the operand.
+                    ExpressionTemplates.Interval interval = (ExpressionTemplates.Interval)template;
+                    out.writeByte((interval.lowerInclusive ? 1 : 0) | (interval.upperInclusive ? 2 : 0));
+                    writeDouble(out, interval.lower);
+                    writeDouble(out, interval.upper);
+                    write(interval.operands().get(0), out);
+                }
+                default -> {
+                    List<ExpressionTemplate> operands = ((ExpressionTemplates.Composite)template).operands();
+                    if(isList(tag))
+                        writeVarInt(out, operands.size());
+                    for(ExpressionTemplate operand : operands){
+                        write(operand, out);
+                    }
+                }
+            }
+            return;
+        }
+        
+        Registration<?> registration = registrationsByType.get(template.getClass());
+        if(registration == null)
+            throw new NotSerializableException(template.getClass().getName());
+        
+        out.writeByte(CUSTOM);
+        writeString(out, registration.id());
+        registration.write(template, out, this);
+    }
+    
+    /**
+     * Reads an {@link ExpressionTemplate} previously written through {@link #write(ExpressionTemplate, DataOutput)}
+     * from the provided DataInput.
+     * 
+     * @param  in
+     *         The DataInput to read from.
+     * 
+     * @return The read ExpressionTemplate. May be null, should a null template have been written.
+     * 
+     * @throws StreamCorruptedException
+     *         Should the data not be a template written by a TemplateSerializer with the same registered templates.
+     * @throws IOException
+     *         Should reading from the DataInput fail.
+     */
+    public ExpressionTemplate read(DataInput in) throws IOException{
+        int tag = in.readUnsignedByte();
+        return switch(tag){
+            case NULL -> null;
+            case CONSTANT -> new ConstantExpressionTemplate(in.readBoolean(), readDouble(in), readString(in));
+            case BOOLEAN_CONSTANT -> ConstantExpressionTemplate.of(in.readBoolean());
+            case NUMBER_CONSTANT -> ConstantExpressionTemplate.of(readDouble(in));
+            case STRING_CONSTANT -> ConstantExpressionTemplate.of(readString(in));
+            case BOOLEAN_VARIABLE -> ExpressionTemplates.booleanVariable(readVarInt(in));
+            case DOUBLE_VARIABLE -> ExpressionTemplates.doubleVariable(readVarInt(in));
+            case STRING_VARIABLE -> ExpressionTemplates.stringVariable(readVarInt(in));
+            case NEGATION -> ExpressionTemplates.negate(read(in));
+            case AND -> ExpressionTemplates.and(readOperands(in));
+            case OR -> ExpressionTemplates.or(readOperands(in));
+            case CONCATENATE -> ExpressionTemplates.concat(readOperands(in));
+            case EQUAL -> ExpressionTemplates.equal(read(in), read(in));
+            case NOT_EQUAL -> ExpressionTemplates.notEqual(read(in), read(in));
+            case EQUAL_IGNORE_CASE -> ExpressionTemplates.equalIgnoreCase(read(in), read(in));
+            case NOT_EQUAL_IGNORE_CASE -> ExpressionTemplates.notEqualIgnoreCase(read(in), read(in));
+            case STARTS_WITH -> ExpressionTemplates.startsWith(read(in), read(in));
+            case ENDS_WITH -> ExpressionTemplates.endsWith(read(in), read(in));
+            case CONTAINS -> ExpressionTemplates.contains(read(in), read(in));
+            case GREATER -> ExpressionTemplates.greater(read(in), read(in));
+            case GREATER_OR_EQUAL -> ExpressionTemplates.greaterOrEqual(read(in), read(in));
+            case LESS -> ExpressionTemplates.less(read(in), read(in));
+            case LESS_OR_EQUAL -> ExpressionTemplates.lessOrEqual(read(in), read(in));
+            case SUM -> ExpressionTemplates.sum(readOperands(in));
+            case PRODUCT -> ExpressionTemplates.product(readOperands(in));
+            case SUB -> ExpressionTemplates.sub(read(in), read(in));
+            case DIV -> ExpressionTemplates.div(read(in), read(in));
+            case NEGATION_NUMBER -> ExpressionTemplates.negateNumber(read(in));
+            case CHAIN -> readChain(in);
+            case INTERVAL -> readInterval(in);
+            case CUSTOM -> {
+                String id = readString(in);
+                Registration<?> registration = registrationsById.get(id);
+                if(registration == null)
+                    throw new StreamCorruptedException("No template registered with id \"" + id + "\".");
+                
+                yield registration.reader().read(in, this);
+            }
+            default -> throw new StreamCorruptedException("Unknown template type " + tag + ".");
+        };
+    }
+    
+    /**
+     * Writes the provided String as its length followed by its UTF-8 bytes.
+     * <br>Unlike {@link DataOutput#writeUTF(String)} are Strings of any length supported.
+     * 
+     * @param  out
+     *         The DataOutput to write to.
+     * @param  value
+     *         The String to write.
+     * 
+     * @throws IOException
+     *         Should writing to the DataOutput fail.
+     */
+    public static void writeString(DataOutput out, String value) throws IOException{
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+    
+    /**
+     * Reads a String previously written through {@link #writeString(DataOutput, String)}.
+     * 
+     * @param  in
+     *         The DataInput to read from.
+     * 
+     * @return The read String.
+     * 
+     * @throws IOException
+     *         Should reading from the DataInput fail.
+     */
+    public static String readString(DataInput in) throws IOException{
+        byte[] bytes = new byte[readVarInt(in)];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    // Constants created through one of the of methods only need the value they were created from.
+    private static void writeConstant(ExpressionTemplate template, DataOutput out) throws IOException{
+        boolean booleanValue = template.returnBooleanExpression().evaluate();
+        double doubleValue = template.returnDoubleExpression().evaluate();
+        String stringValue = template.returnStringExpression().evaluate();
+        
+        if(stringValue.equals(Boolean.toString(booleanValue)) && isSame(doubleValue, booleanValue ? 1 : 0)){
+            out.writeByte(BOOLEAN_CONSTANT);
+            out.writeBoolean(booleanValue);
+        }else
+        if(booleanValue == (doubleValue != 0) && stringValue.equals(NumberFormatter.toString(doubleValue))){
+            out.writeByte(NUMBER_CONSTANT);
+            writeDouble(out, doubleValue);
+        }else
+        if(!stringValue.isEmpty() && booleanValue == Boolean.parseBoolean(stringValue)
+            && isSame(doubleValue, NumberParser.parseDoubleOrDefault(stringValue, stringValue.length()))){
+            out.writeByte(STRING_CONSTANT);
+            writeString(out, stringValue);
+        }else{
+            out.writeByte(CONSTANT);
+            out.writeBoolean(booleanValue);
+            writeDouble(out, doubleValue);
+            writeString(out, stringValue);
+        }
+    }
+    
+    private List<ExpressionTemplate> readOperands(DataInput in) throws IOException{
+        int size = readVarInt(in);
+        List<ExpressionTemplate> operands = new ArrayList<>(Math.min(size, 16));
+        for(int i = 0; i < size; i++){
+            operands.add(read(in));
+        }
+        
+        return operands;
+    }
+    
+    private ExpressionTemplate readChain(DataInput in) throws IOException{
+        int size = readVarInt(in);
+        if(size < 2)
+            throw new StreamCorruptedException("Chain of " + size + " comparisons.");
+        
+        List<Integer> tags = new ArrayList<>(Math.min(size, 16));
+        for(int i = 0; i < size; i++){
+            tags.add(in.readUnsignedByte());
+        }
+        
+        List<ExpressionTemplate> links = new ArrayList<>(Math.min(size, 16));
+        ExpressionTemplate left = read(in);
+        for(int tag : tags){
+            ExpressionTemplate right = read(in);
+            links.add(switch(tag){
+                case EQUAL -> ExpressionTemplates.equal(left, right);
+                case NOT_EQUAL -> ExpressionTemplates.notEqual(left, right);
+                case EQUAL_IGNORE_CASE -> ExpressionTemplates.equalIgnoreCase(left, right);
+                case NOT_EQUAL_IGNORE_CASE -> ExpressionTemplates.notEqualIgnoreCase(left, right);
+                case STARTS_WITH -> ExpressionTemplates.startsWith(left, right);
+                case ENDS_WITH -> ExpressionTemplates.endsWith(left, right);
+                case CONTAINS -> ExpressionTemplates.contains(left, right);
+                case GREATER -> ExpressionTemplates.greater(left, right);
+                case GREATER_OR_EQUAL -> ExpressionTemplates.greaterOrEqual(left, right);
+                case LESS -> ExpressionTemplates.less(left, right);
+                case LESS_OR_EQUAL -> ExpressionTemplates.lessOrEqual(left, right);
+                default -> throw new StreamCorruptedException("Unknown comparison type " + tag + ".");
+            });
+            left = right;
+        }
+        
+        return ExpressionTemplates.chain(links);
+    }
+    
+    private ExpressionTemplate readInterval(DataInput in) throws IOException{
+        int inclusive = in.readUnsignedByte();
+        if((inclusive & ~3) != 0)
+            throw new StreamCorruptedException("Unknown bounds " + inclusive + ".");
+        
+        double lower = readDouble(in);
+        double upper = readDouble(in);
+        return ExpressionTemplates.interval(read(in), lower, (inclusive & 1) != 0, upper, (inclusive & 2) != 0);
+    }
+    
+    private static boolean isList(int tag){
+        return tag == AND || tag == OR || tag == CONCATENATE || tag == SUM || tag == PRODUCT;
+    }
+    
+    // Unlike DataOutput.writeDouble, NaN values are written as they are.
+    private static void writeDouble(DataOutput out, double value) throws IOException{
+        out.writeLong(Double.doubleToRawLongBits(value));
+    }
+    
+    private static double readDouble(DataInput in) throws IOException{
+        return Double.longBitsToDouble(in.readLong());
+    }
+    
+    private static boolean isSame(double a, double b){
+        return Double.doubleToRawLongBits(a) == Double.doubleToRawLongBits(b);
+    }
+    
+    private static void writeVarInt(DataOutput out, int value) throws IOException{
+        while((value & ~0x7F) != 0){
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+    
+    private static int readVarInt(DataInput in) throws IOException{
+        int value = 0;
+        for(int shift = 0; shift < 32; shift += 7){
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if((b & 0x80) == 0){
+                if(value < 0)
+                    throw new StreamCorruptedException("Negative length or slot.");
+                
+                return value;
+            }
+        }
+        
+        throw new StreamCorruptedException("Malformed length or slot.");
+    }
+    
+    /**
+     * Writes templates of a registered type.
+     * 
+     * @param <T>
+     *        The type of template written.
+     */
+    @FunctionalInterface
+    public interface TemplateWriter<T extends ExpressionTemplate>{
+        
+        /**
+         * Writes the values of the provided template to the provided DataOutput.
+         * <br>Operands of the template can be written through {@link TemplateSerializer#write(ExpressionTemplate, DataOutput)}.
+         * 
+         * @param  template
+         *         The template to write.
+         * @param  out
+         *         The DataOutput to write to.
+         * @param  serializer
+         *         The TemplateSerializer writing the template.
+         * 
+         * @throws IOException
+         *         Should writing to the DataOutput fail.
+         */
+        void write(T template, DataOutput out, TemplateSerializer serializer) throws IOException;
+    }
+    
+    /**
+     * Reads templates of a registered type.
+     * 
+     * @param <T>
+     *        The type of template read.
+     */
+    @FunctionalInterface
+    public interface TemplateReader<T extends ExpressionTemplate>{
+        
+        /**
+         * Reads a template previously written by the {@link TemplateWriter} of the same registration.
+         * <br>Operands of the template can be read through {@link TemplateSerializer#read(DataInput)}.
+         * 
+         * @param  in
+         *         The DataInput to read from.
+         * @param  serializer
+         *         The TemplateSerializer reading the template.
+         * 
+         * @return The read template.
+         * 
+         * @throws IOException
+         *         Should reading from the DataInput fail.
+         */
+        T read(DataInput in, TemplateSerializer serializer) throws IOException;
+    }
+    
+    private record Registration<T extends ExpressionTemplate>(String id, Class<T> type, TemplateWriter<T> writer, TemplateReader<T> reader){
+        
+        void write(ExpressionTemplate template, DataOutput out, TemplateSerializer serializer) throws IOException{
+            writer.write(type.cast(template), out, serializer);
+        }
+    }
+    
+    /**
+     * Builder to create a {@link TemplateSerializer} supporting custom {@link ExpressionTemplate ExpressionTemplates}.
+     */
+    public static class Builder{
+        
+        private final Map<Class<?>, Registration<?>> registrationsByType = new HashMap<>();
+        private final Map<String, Registration<?>> registrationsById = new HashMap<>();
+        
+        public Builder(){}
+        
+        /**
+         * Registers a custom type of {@link ExpressionTemplate} to write with the provided id.
+         * <br>Only templates of exactly the provided class are written with the provided {@link TemplateWriter}, not
+         * ones of any subclasses.
+         * 
+         * @param  <T>
+         *         The type of the template.
+         * @param  id
+         *         The id to write the templates with.
+         * @param  type
+         *         The class of the templates.
+         * @param  writer
+         *         The TemplateWriter to write the templates with.
+         * @param  reader
+         *         The TemplateReader to read the templates with.
+         * 
+         * @return This Builder instance. Useful for chaining.
+         * 
+         * @throws IllegalArgumentException
+         *         Should any of the arguments be null, the id be empty, or either the id or the class already be registered.
+         */
+        public <T extends ExpressionTemplate> Builder register(String id, Class<T> type, TemplateWriter<T> writer, TemplateReader<T> reader){
+            CheckUtil.notNullOrEmpty(id, TemplateSerializer.class, "Id");
+            CheckUtil.notNull(type, TemplateSerializer.class, "Type");
+            CheckUtil.notNull(writer, TemplateSerializer.class, "Writer");
+            CheckUtil.notNull(reader, TemplateSerializer.class, "Reader");
+            if(registrationsById.containsKey(id))
+                throw new IllegalArgumentException("[TemplateSerializer] Id \"" + id + "\" is already registered.");
+            if(registrationsByType.containsKey(type) || TAGS.containsKey(type) || type == ConstantExpressionTemplate.class)
+                throw new IllegalArgumentException("[TemplateSerializer] Type " + type.getName() + " is already registered.");
+            
+            Registration<T> registration = new Registration<>(id, type, writer, reader);
+            registrationsByType.put(type, registration);
+            registrationsById.put(id, registration);
+            return this;
+        }
+        
+        /**
+         * Creates a new {@link TemplateSerializer} with the registered templates.
+         * 
+         * @return New TemplateSerializer.
+         */
+        public TemplateSerializer build(){
+            return new TemplateSerializer(registrationsByType, registrationsById);
+        }
+    }
+}
@@ -0,0 +1,367 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser.templates;
+
+import ch.andre601.expressionparser.internal.CheckUtil;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.Hashing;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Read-only store of {@link ExpressionTemplate ExpressionTemplates} by id, backed by a memory-mapped file.
+ * <br>Opening a store only reads its header, no matter how many templates it holds. A template is only read from the
+ * file once its id is requested, and kept in a cache of limited size afterwards, so that only the templates in use
+ * take up heap memory.
+ * 
+ * <p>Stores are created through {@link #write(Path, Map, TemplateSerializer, long)} and opened through
+ * {@link #open(Path, TemplateSerializer, long, int)}, using a {@link TemplateSerializer} supporting the same templates.
+ * <br>The header of the file holds a checksum of the configuration the templates have been parsed with, such as the one
+ * returned by {@link ch.andre601.expressionparser.DefaultExpressionParserEngine#getConfigurationChecksum()
+ * DefaultExpressionParserEngine.getConfigurationChecksum}. Opening a store with another checksum fails, so that
+ * templates parsed with other operators or readers aren't mixed with the ones parsed now.
+ * <br>Templates are returned as read, evaluating their values through their tree of expressions. They can be
+ * prepared for another {@link ch.andre601.expressionparser.DefaultExpressionParserEngine.EvaluationMode EvaluationMode}
+ * through {@link ch.andre601.expressionparser.DefaultExpressionParserEngine#applyEvaluationMode(ExpressionTemplate) DefaultExpressionParserEngine.applyEvaluationMode}.
+ * 
+ * <p>The file holds a hash table of the ids, followed by the id, length and template of every entry. Files may not be larger
+ * than 2 GiB, and may not be changed while a store has them opened.
+ * <br>The file stays mapped until the store has been {@link #close() closed} and garbage collected, which on Windows
+ * keeps {@link #write(Path, Map, TemplateSerializer, long) write} from replacing it. Templates read before closing the
+ * store stay usable, as they don't refer to the file.
+ * <br>This class is safe to use from multiple threads at once.
+ * 
+ * <p>Example:
+ * <pre>{@code
+ * long checksum = engine.getConfigurationChecksum();
+ * TemplateStore.write(Path.of("conditions.bin"), templates, TemplateSerializer.createDefault(), checksum);
+ * 
+ * TemplateStore store = TemplateStore.open(Path.of("conditions.bin"), TemplateSerializer.createDefault(), checksum, 10_000);
+ * ExpressionTemplate template = store.get("tenant-42/low-health");
+ * }</pre>
+ */
+public class TemplateStore implements Closeable{
+    
+    private static final int MAGIC = 0x45585053;
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 24;
+    
+    // Null once the store has been closed, so that the mapping can be released.
+    private volatile ByteBuffer buffer;
+    private final TemplateSerializer serializer;
+    private final int size;
+    private final int tableSize;
+    private final Cache<String, ExpressionTemplate> cache;
+    
+    private TemplateStore(ByteBuffer buffer, TemplateSerializer serializer, int size, int tableSize, int maximumSize){
+        this.buffer = buffer;
+        this.serializer = serializer;
+        this.size = size;
+        this.tableSize = tableSize;
+        this.cache = CacheBuilder.newBuilder().maximumSize(maximumSize).build();
+    }
+    
+    /**
+     * Writes the provided {@link ExpressionTemplate ExpressionTemplates} into a new store file, replacing the file
+     * should it exist already.
+     * 
+     * @param  file
+     *         The file to write.
+     * @param  templates
+     *         Map of ids and the ExpressionTemplates to store.
+     * @param  serializer
+     *         The TemplateSerializer to write the ExpressionTemplates with.
+     * @param  checksum
+     *         Checksum of the configuration the ExpressionTemplates have been parsed with, required to open the store.
+     * 
+     * @throws IllegalArgumentException
+     *         Should any of the arguments be null, or the Map contain a null id or ExpressionTemplate.
+     * @throws java.io.NotSerializableException
+     *         Should the TemplateSerializer not support any of the ExpressionTemplates.
+     * @throws IOException
+     *         Should writing the file fail, or the file become larger than 2 GiB.
+     */
+    public static void write(Path file, Map<String, ExpressionTemplate> templates, TemplateSerializer serializer, long checksum) throws IOException{
+        CheckUtil.notNull(file, TemplateStore.class, "File");
+        CheckUtil.notNull(templates, TemplateStore.class, "Templates");
+        CheckUtil.notNull(serializer, TemplateStore.class, "Serializer");
+        for(Map.Entry<String, ExpressionTemplate> entry : templates.entrySet()){
+            CheckUtil.notNull(entry.getKey(), TemplateStore.class, "Id");
+            CheckUtil.notNull(entry.getValue(), TemplateStore.class, "Template");
+        }
+        
+        // At most half of the table is used, keeping the amount of slots probed per lookup low.
+        int tableSize = Integer.highestOneBit(Math.max(templates.size(), 1) * 2 - 1) << 1;
+        int recordsStart = HEADER_SIZE + tableSize * 4;
+        int[] table = new int[tableSize];
+        
+        ByteArrayOutputStream records = new ByteArrayOutputStream();
+        ByteArrayOutputStream template = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(records);
+        for(Map.Entry<String, ExpressionTemplate> entry : templates.entrySet()){
+            long offset = (long)recordsStart + records.size();
+            if(offset > Integer.MAX_VALUE)
+                throw new IOException("Store would be larger than 2 GiB.");
+            
+            byte[] id = entry.getKey().getBytes(StandardCharsets.UTF_8);
+            int slot = slot(id, tableSize);
+            while(table[slot] != 0){
+                slot = (slot + 1) & (tableSize - 1);
+            }
+            table[slot] = (int)offset;
+            
+            template.reset();
+            serializer.write(entry.getValue(), new DataOutputStream(template));
+            
+            out.writeInt(id.length);
+            out.write(id);
+            out.writeInt(template.size());
+            template.writeTo(out);
+        }
+        
+        if((long)recordsStart + records.size() > Integer.MAX_VALUE)
+            throw new IOException("Store would be larger than 2 GiB.");
+        
+        ByteArrayOutputStream data = new ByteArrayOutputStream(recordsStart + records.size());
+        DataOutputStream header = new DataOutputStream(data);
+        header.writeInt(MAGIC);
+        header.writeInt(FORMAT_VERSION);
+        header.writeLong(checksum);
+        header.writeInt(templates.size());
+        header.writeInt(tableSize);
+        for(int offset : table){
+            header.writeInt(offset);
+        }
+        records.writeTo(data);
+        
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        
+        // Written into a temporary file first, so that stores opened already keep their mapping of the old file.
+        Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try{
+            Files.write(temp, data.toByteArray());
+            try{
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }catch(AtomicMoveNotSupportedException ex){
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }finally{
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    /**
+     * Opens the store in the provided file, keeping up to the provided amount of read
+     * {@link ExpressionTemplate ExpressionTemplates} in memory.
+     * 
+     * @param  file
+     *         The file to open.
+     * @param  serializer
+     *         The TemplateSerializer to read the ExpressionTemplates with.
+     * @param  checksum
+     *         Checksum of the configuration the ExpressionTemplates are expected to have been parsed with.
+     * @param  maximumSize
+     *         The maximum amount of ExpressionTemplates to keep in memory.
+     * 
+     * @return The opened TemplateStore.
+     * 
+     * @throws IllegalArgumentException
+     *         Should the file or TemplateSerializer be null, or the maximum size be negative.
+     * @throws StreamCorruptedException
+     *         Should the file not be a store of this version, or have been written with another checksum.
+     * @throws IOException
+     *         Should the file not be readable.
+     */
+    public static TemplateStore open(Path file, TemplateSerializer serializer, long checksum, int maximumSize) throws IOException{
+        CheckUtil.notNull(file, TemplateStore.class, "File");
+        CheckUtil.notNull(serializer, TemplateStore.class, "Serializer");
+        if(maximumSize < 0)
+            throw new IllegalArgumentException("[TemplateStore] MaximumSize may not be negative.");
+        
+        MappedByteBuffer buffer;
+        try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+            if(channel.size() > Integer.MAX_VALUE)
+                throw new StreamCorruptedException("File is larger than 2 GiB.");
+            
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        
+        if(buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+            throw new StreamCorruptedException("File is not a template store.");
+        if(buffer.getInt(4) != FORMAT_VERSION)
+            throw new StreamCorruptedException("Template store has unsupported version " + buffer.getInt(4) + ".");
+        if(buffer.getLong(8) != checksum)
+            throw new StreamCorruptedException("Template store has been written with another configuration.");
+        
+        int size = buffer.getInt(16);
+        int tableSize = buffer.getInt(20);
+        if(size < 0 || tableSize <= size || Integer.bitCount(tableSize) != 1 || HEADER_SIZE + (long)tableSize * 4 > buffer.capacity())
+            throw new StreamCorruptedException("Template store has an invalid header.");
+        
+        return new TemplateStore(buffer, serializer, size, tableSize, maximumSize);
+    }
+    
+    /**
+     * Returns the {@link ExpressionTemplate} stored with the provided id, reading it from the file should it not be in
+     * memory.
+     * 
+     * @param  id
+     *         The id of the ExpressionTemplate.
+     * 
+     * @return The ExpressionTemplate with the provided id, or null if there is none.
+     * 
+     * @throws UncheckedIOException
+     *         Should the ExpressionTemplate or the hash table be corrupted in the file.
+     * @throws IllegalStateException
+     *         Should the store have been closed.
+     */
+    public ExpressionTemplate get(String id){
+        CheckUtil.notNull(id, TemplateStore.class, "Id");
+        
+        ByteBuffer buffer = buffer();
+        ExpressionTemplate template = cache.getIfPresent(id);
+        if(template != null)
+            return template;
+        
+        int offset = find(buffer, id);
+        if(offset < 0)
+            return null;
+        
+        try{
+            byte[] bytes = new byte[buffer.getInt(offset)];
+            buffer.get(offset + 4, bytes);
+            template = serializer.read(new DataInputStream(new ByteArrayInputStream(bytes)));
+        }catch(IOException | RuntimeException ex){
+            throw corrupted(id, ex);
+        }
+        
+        cache.put(id, template);
+        return template;
+    }
+    
+    /**
+     * Returns whether an {@link ExpressionTemplate} is stored with the provided id, without reading it.
+     * 
+     * @param  id
+     *         The id of the ExpressionTemplate.
+     * 
+     * @return true if an ExpressionTemplate is stored with the id, else false.
+     * 
+     * @throws UncheckedIOException
+     *         Should the hash table of the file be corrupted.
+     * @throws IllegalStateException
+     *         Should the store have been closed.
+     */
+    public boolean contains(String id){
+        CheckUtil.notNull(id, TemplateStore.class, "Id");
+        
+        ByteBuffer buffer = buffer();
+        return cache.getIfPresent(id) != null || find(buffer, id) >= 0;
+    }
+    
+    /**
+     * Returns the amount of {@link ExpressionTemplate ExpressionTemplates} stored in the file.
+     * 
+     * @return The amount of stored ExpressionTemplates.
+     */
+    public int size(){
+        return size;
+    }
+    
+    /**
+     * Closes this store, dropping its reference to the file and the cached {@link ExpressionTemplate ExpressionTemplates}.
+     * <br>The file is unmapped once the store is garbage collected, as Java offers no way to unmap it right away.
+     * Templates returned before stay usable. Closing a store again has no effect.
+     */
+    @Override
+    public void close(){
+        buffer = null;
+        cache.invalidateAll();
+    }
+    
+    private ByteBuffer buffer(){
+        ByteBuffer buffer = this.buffer;
+        if(buffer == null)
+            throw new IllegalStateException("[TemplateStore] Store has been closed.");
+        
+        return buffer;
+    }
+    
+    // Returns the offset of the length of the template with the provided id, or -1 if there is none.
+    private int find(ByteBuffer buffer, String id){
+        byte[] bytes = id.getBytes(StandardCharsets.UTF_8);
+        
+        try{
+            int slot = slot(bytes, tableSize);
+            for(int probes = 0; probes < tableSize; probes++){
+                int offset = buffer.getInt(HEADER_SIZE + slot * 4);
+                if(offset == 0)
+                    return -1;
+                
+                if(buffer.getInt(offset) == bytes.length && matches(buffer, offset + 4, bytes))
+                    return offset + 4 + bytes.length;
+                
+                slot = (slot + 1) & (tableSize - 1);
+            }
+        }catch(IndexOutOfBoundsException ex){
+            throw corrupted(id, ex);
+        }
+        
+        return -1;
+    }
+    
+    private static boolean matches(ByteBuffer buffer, int offset, byte[] bytes){
+        for(int i = 0; i < bytes.length; i++){
+            if(buffer.get(offset + i) != bytes[i])
+                return false;
+        }
+        
+        return true;
+    }
+    
+    private static UncheckedIOException corrupted(String id, Exception cause){
+        StreamCorruptedException ex = new StreamCorruptedException("Template of id \"" + id + "\" is corrupted.");
+        ex.initCause(cause);
+        return new UncheckedIOException(ex);
+    }
+    
+    private static int slot(byte[] id, int tableSize){
+        return Hashing.murmur3_32_fixed().hashBytes(id).asInt() & (tableSize - 1);
+    }
+}
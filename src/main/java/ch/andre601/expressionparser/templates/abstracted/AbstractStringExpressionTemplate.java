@@ -42,9 +42,9 @@ public abstract class AbstractStringExpressionTemplate implements ExpressionTemp
     }
     
     /**
-     * {@link ToDoubleExpression} holding the String value as double value using a {@link java.text.NumberFormat NumberFormatter}.
+     * {@link ToDoubleExpression} holding the String value as double value using {@link Conversions#toDouble(ch.andre601.expressionparser.expressions.ToStringExpression)}.
      * 
-     * @return ToDoubleExpression holding the String value as double value using a {@link java.text.NumberFormat NumberFormatter}.
+     * @return ToDoubleExpression holding the String value as double value using {@link Conversions#toDouble(ch.andre601.expressionparser.expressions.ToStringExpression)}.
      */
     @Override
     public ToDoubleExpression returnDoubleExpression(){
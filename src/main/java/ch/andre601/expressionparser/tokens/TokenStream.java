@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser.tokens;
+
+import ch.andre601.expressionparser.internal.CheckUtil;
+
+import java.util.AbstractList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Read-only cursor over a sequence of {@link Token Tokens}.
+ * <br>Consuming a Token only moves the cursor forward, leaving the underlying tokens untouched. This allows cheap
+ * lookahead, backtracking through {@link #mark()} and {@link #reset(int)}, as well as {@link #subStream(int, int) sub-streams}
+ * sharing the same tokens without copying them.
+ * 
+ * <p>Positions are absolute indexes into the tokens this stream was {@link #of(Collection) created from}, so a position
+ * obtained from a sub-stream can be used on its parent and vice versa.
+ */
+public class TokenStream{
+    
+    private final Token[] tokens;
+    private final int end;
+    private int position;
+    
+    private TokenStream(Token[] tokens, int start, int end){
+        this.tokens = tokens;
+        this.position = start;
+        this.end = end;
+    }
+    
+    /**
+     * Creates a new TokenStream containing the provided {@link Token Tokens}.
+     * <br>The Tokens are copied once, meaning later changes to the Collection are not reflected in the stream.
+     * 
+     * @param  tokens
+     *         Collection of Tokens to create a TokenStream from.
+     * 
+     * @return New TokenStream positioned at the first Token.
+     * 
+     * @throws IllegalArgumentException
+     *         Should the provided Collection be null.
+     */
+    public static TokenStream of(Collection<Token> tokens){
+        CheckUtil.notNull(tokens, TokenStream.class, "Tokens");
+        
+        Token[] array = tokens.toArray(new Token[0]);
+        return new TokenStream(array, 0, array.length);
+    }
+    
+    /**
+     * Returns the current position of this stream.
+     * 
+     * @return The current position of this stream.
+     */
+    public int position(){
+        return position;
+    }
+    
+    /**
+     * Returns the position right after the last Token of this stream.
+     * 
+     * @return The end position of this stream.
+     */
+    public int end(){
+        return end;
+    }
+    
+    /**
+     * Returns the number of Tokens left in this stream.
+     * 
+     * @return Number of Tokens left in this stream.
+     */
+    public int remaining(){
+        return end - position;
+    }
+    
+    /**
+     * Returns whether this stream has no more Tokens left.
+     * 
+     * @return True if no Tokens are left in this stream, else false.
+     */
+    public boolean isEmpty(){
+        return position >= end;
+    }
+    
+    /**
+     * Returns the current Token without consuming it.
+     * 
+     * @return The current Token.
+     * 
+     * @throws IndexOutOfBoundsException
+     *         Should no Tokens be left in this stream.
+     */
+    public Token peek(){
+        return peek(0);
+    }
+    
+    /**
+     * Returns the Token at the provided offset from the current position without consuming anything.
+     * 
+     * @param  offset
+     *         Offset from the current position. {@code 0} returns the current Token.
+     * 
+     * @return The Token at the provided offset.
+     * 
+     * @throws IndexOutOfBoundsException
+     *         Should the offset be negative or reach past the end of this stream.
+     */
+    public Token peek(int offset){
+        if(offset < 0 || offset >= end - position)
+            throw new IndexOutOfBoundsException("Offset " + offset + " out of bounds for " + remaining() + " remaining Tokens.");
+        
+        return tokens[position + offset];
+    }
+    
+    /**
+     * Consumes and returns the current Token.
+     * 
+     * @return The consumed Token.
+     * 
+     * @throws IndexOutOfBoundsException
+     *         Should no Tokens be left in this stream.
+     */
+    public Token advance(){
+        Token token = peek(0);
+        position++;
+        return token;
+    }
+    
+    /**
+     * Returns the current position, to later return to it using {@link #reset(int)}.
+     * 
+     * @return The current position of this stream.
+     */
+    public int mark(){
+        return position;
+    }
+    
+    /**
+     * Moves this stream to the provided position, usually one previously returned by {@link #mark()}.
+     * 
+     * @param position
+     *        The position to move to.
+     * 
+     * @throws IndexOutOfBoundsException
+     *         Should the position be outside this stream.
+     */
+    public void reset(int position){
+        if(position < 0 || position > end)
+            throw new IndexOutOfBoundsException("Position " + position + " out of bounds for length " + end + ".");
+        
+        this.position = position;
+    }
+    
+    /**
+     * Creates a new TokenStream over the Tokens between the provided positions, without copying them.
+     * <br>Consuming Tokens of the returned stream does not move the cursor of this stream.
+     * 
+     * @param  from
+     *         Position of the first Token (inclusive).
+     * @param  to
+     *         Position of the last Token (exclusive).
+     * 
+     * @return New TokenStream positioned at {@code from}.
+     * 
+     * @throws IndexOutOfBoundsException
+     *         Should the range not be within the current position and end of this stream.
+     */
+    public TokenStream subStream(int from, int to){
+        if(from < position || to > end || from > to)
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") out of bounds for [" + position + ", " + end + ").");
+        
+        return new TokenStream(tokens, from, to);
+    }
+    
+    /**
+     * Returns a List view of the remaining Tokens in this stream.
+     * <br>The view only supports removing its first entry, which consumes the current Token of this stream. It exists
+     * so that code written against a mutable {@code List<Token>} keeps working on top of a TokenStream.
+     * 
+     * @return List view of the remaining Tokens.
+     */
+    public List<Token> asList(){
+        return new ListView(this);
+    }
+    
+    /**
+     * Returns the TokenStream backing the provided List, should it be a view created through {@link #asList()}.
+     * 
+     * @param  tokens
+     *         The List to get the backing TokenStream of.
+     * 
+     * @return Possibly-null TokenStream backing the List.
+     */
+    public static TokenStream backing(List<Token> tokens){
+        return tokens instanceof ListView view ? view.stream : null;
+    }
+    
+    private static class ListView extends AbstractList<Token>{
+        
+        private final TokenStream stream;
+        
+        ListView(TokenStream stream){
+            this.stream = stream;
+        }
+        
+        @Override
+        public Token get(int index){
+            return stream.peek(index);
+        }
+        
+        @Override
+        public int size(){
+            return stream.remaining();
+        }
+        
+        @Override
+        public Token remove(int index){
+            if(index != 0)
+                throw new UnsupportedOperationException("Only the first Token can be removed from a TokenStream.");
+            
+            return stream.advance();
+        }
+    }
+}
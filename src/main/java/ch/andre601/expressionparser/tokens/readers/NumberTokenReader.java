@@ -20,6 +20,7 @@
 package ch.andre601.expressionparser.tokens.readers;
 
 import ch.andre601.expressionparser.ParseWarnCollector;
+import ch.andre601.expressionparser.internal.NumberParser;
 import ch.andre601.expressionparser.tokens.NumberToken;
 import ch.andre601.expressionparser.tokens.Token;
 
@@ -28,25 +29,38 @@ import java.text.ParsePosition;
 import java.util.Locale;
 
 /**
- * {@link TokenReader TokenReader instance} that reads the provided text by trying to parse it through a
- * {@link NumberFormat NumberFormatter} and creates a {@link NumberToken NumberToken instance} should a valid number
- * be found.
+ * {@link TokenReader TokenReader instance} that reads the provided text by trying to parse it the same way a
+ * {@link NumberFormat#getInstance(Locale) NumberFormatter} of {@link Locale#ROOT} would and creates a
+ * {@link NumberToken NumberToken instance} should a valid number be found.
+ * <br>Unlike a NumberFormatter does this reader hold no state, making it safe to use from multiple threads at once.
  */
 public class NumberTokenReader extends TokenReader{
     
-    private final NumberFormat format = NumberFormat.getInstance(Locale.ROOT);
-    
     public NumberTokenReader(int priority){
         super(priority);
     }
     
+    /**
+     * Returns true for digits, the minus sign, decimal and grouping separators, the start of {@code NaN} and any
+     * non-ASCII character, as those are the characters a NumberFormatter could start parsing a number on.
+     * 
+     * @param  c
+     *         The character at the current position of the text.
+     * 
+     * @return True if a number could start with the provided character, else false.
+     */
+    @Override
+    public boolean canStartWith(char c){
+        return (c >= '0' && c <= '9') || c == '-' || c == '.' || c == ',' || c == 'N' || c > 127;
+    }
+    
     @Override
     public Token read(String text, ParsePosition position, ParseWarnCollector collector){
         int previous = position.getIndex();
-        Number number = format.parse(text, position);
+        double number = NumberParser.parse(text, position, true);
         
         if(position.getIndex() != previous)
-            return new NumberToken(number.doubleValue());
+            return new NumberToken(number);
         
         return null;
     }
@@ -80,6 +80,38 @@ public class PatternTokenReader extends TokenReader{
         this.ignoreCase = ignoreCase;
     }
     
+    /**
+     * Returns the {@link Token} this PatternTokenReader returns when its pattern is found.
+     * 
+     * @return The Token of this PatternTokenReader.
+     */
+    public Token getToken(){
+        return token;
+    }
+    
+    /**
+     * Returns the pattern this PatternTokenReader looks for.
+     * 
+     * @return The pattern of this PatternTokenReader.
+     */
+    public String getPattern(){
+        return pattern;
+    }
+    
+    /**
+     * Returns whether this PatternTokenReader ignores casing when looking for its pattern.
+     * 
+     * @return True if casing is ignored, else false.
+     */
+    public boolean isIgnoreCase(){
+        return ignoreCase;
+    }
+    
+    @Override
+    public boolean canStartWith(char c){
+        return String.valueOf(c).regionMatches(ignoreCase, 0, pattern, 0, 1);
+    }
+    
     @Override
     public Token read(String text, ParsePosition position, ParseWarnCollector collector){
         if(text.regionMatches(ignoreCase, position.getIndex(), pattern, 0, pattern.length())){
@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser.tokens.readers;
+
+import ch.andre601.expressionparser.ParseWarnCollector;
+import ch.andre601.expressionparser.internal.CheckUtil;
+import ch.andre601.expressionparser.tokens.Token;
+
+import java.text.ParsePosition;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * {@link TokenReader TokenReader instance} combining multiple {@link PatternTokenReader PatternTokenReaders} into a
+ * single trie of their patterns, finding the longest matching pattern in one pass over the text.
+ * 
+ * <p>The result is the same as trying the PatternTokenReaders one after another in the order they were provided in,
+ * as long as that order is sorted by {@link TokenReader#getPriority() priority}. Since the priority of a
+ * PatternTokenReader is the length of its pattern, longer patterns win and patterns of equal length are tried in
+ * the provided order.
+ * 
+ * <p>The {@link ch.andre601.expressionparser.expressions.ExpressionTokenizer ExpressionTokenizer} creates instances
+ * of this class for every run of PatternTokenReaders not interrupted by any other TokenReader.
+ */
+public class PatternTrieTokenReader extends TokenReader{
+    
+    private final Node root;
+    
+    /**
+     * Creates a new PatternTrieTokenReader from the provided {@link PatternTokenReader PatternTokenReaders}.
+     * <br>The priority of this TokenReader is the highest priority among them.
+     * 
+     * @param readers
+     *        List of PatternTokenReaders, sorted by descending priority.
+     * 
+     * @throws IllegalArgumentException
+     *         Should the List be null or empty, or a pattern contain a surrogate character.
+     */
+    public PatternTrieTokenReader(List<PatternTokenReader> readers){
+        super(readers == null || readers.isEmpty() ? 0 : readers.get(0).getPriority());
+        
+        CheckUtil.notNullOrEmpty(readers, PatternTrieTokenReader.class, "Readers");
+        
+        NodeBuilder root = new NodeBuilder();
+        for(PatternTokenReader reader : readers){
+            if(!isSupported(reader))
+                throw new IllegalArgumentException("[PatternTrieTokenReader] Pattern '" + reader.getPattern() + "' may not contain surrogate characters.");
+            
+            NodeBuilder node = root;
+            for(int i = 0; i < reader.getPattern().length(); i++){
+                node = node.children.computeIfAbsent(fold(reader.getPattern().charAt(i)), c -> new NodeBuilder());
+            }
+            
+            node.readers.add(reader);
+        }
+        
+        this.root = root.build();
+    }
+    
+    /**
+     * Returns whether the provided {@link PatternTokenReader} can be part of a PatternTrieTokenReader.
+     * <br>This is the case if its pattern does not contain any surrogate characters, as those are compared as code
+     * points rather than chars when ignoring case.
+     * 
+     * @param  reader
+     *         The PatternTokenReader to check.
+     * 
+     * @return True if the PatternTokenReader can be part of a PatternTrieTokenReader, else false.
+     */
+    public static boolean isSupported(PatternTokenReader reader){
+        String pattern = reader.getPattern();
+        for(int i = 0; i < pattern.length(); i++){
+            if(Character.isSurrogate(pattern.charAt(i)))
+                return false;
+        }
+        
+        return true;
+    }
+    
+    @Override
+    public boolean canStartWith(char c){
+        return !Character.isSurrogate(c) && root.child(fold(c)) != null;
+    }
+    
+    @Override
+    public Token read(String text, ParsePosition position, ParseWarnCollector collector){
+        return read(root, text, position.getIndex(), position);
+    }
+    
+    // Descends as deep as the text allows first, so that the longest pattern is checked first.
+    private Token read(Node node, String text, int index, ParsePosition position){
+        if(index < text.length() && !Character.isSurrogate(text.charAt(index))){
+            Node child = node.child(fold(text.charAt(index)));
+            if(child != null){
+                Token token = read(child, text, index + 1, position);
+                if(token != null)
+                    return token;
+            }
+        }
+        
+        for(PatternTokenReader reader : node.readers){
+            String pattern = reader.getPattern();
+            
+            // Case-sensitive patterns are the only ones that can still fail to match at this point.
+            if(reader.isIgnoreCase() || text.regionMatches(false, index - pattern.length(), pattern, 0, pattern.length())){
+                position.setIndex(index);
+                return reader.getToken();
+            }
+        }
+        
+        return null;
+    }
+    
+    /*
+     * Two chars are equal according to String.regionMatches(true, ...) if and only if they fold to the same char,
+     * as long as neither of them is a surrogate.
+     */
+    private static char fold(char c){
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+    
+    private static class Node{
+        
+        private final char[] keys;
+        private final Node[] children;
+        private final PatternTokenReader[] readers;
+        
+        Node(char[] keys, Node[] children, PatternTokenReader[] readers){
+            this.keys = keys;
+            this.children = children;
+            this.readers = readers;
+        }
+        
+        Node child(char c){
+            int index = Arrays.binarySearch(keys, c);
+            return index < 0 ? null : children[index];
+        }
+    }
+    
+    private static class NodeBuilder{
+        
+        private final TreeMap<Character, NodeBuilder> children = new TreeMap<>();
+        private final List<PatternTokenReader> readers = new ArrayList<>();
+        
+        Node build(){
+            char[] keys = new char[children.size()];
+            Node[] nodes = new Node[children.size()];
+            
+            int i = 0;
+            for(var entry : children.entrySet()){
+                keys[i] = entry.getKey();
+                nodes[i] = entry.getValue().build();
+                i++;
+            }
+            
+            return new Node(keys, nodes, readers.toArray(new PatternTokenReader[0]));
+        }
+    }
+}
@@ -41,6 +41,20 @@ public class QuotedLiteralTokenReader extends TokenReader{
         this.character = character;
     }
     
+    /**
+     * Returns the character this QuotedLiteralTokenReader uses as quotes.
+     * 
+     * @return The character this QuotedLiteralTokenReader uses as quotes.
+     */
+    public char getCharacter(){
+        return character;
+    }
+    
+    @Override
+    public boolean canStartWith(char c){
+        return c == character;
+    }
+    
     @Override
     public Token read(String text, ParsePosition position, ParseWarnCollector collector){
         if(position.getIndex() < text.length() && text.charAt(position.getIndex()) == character){
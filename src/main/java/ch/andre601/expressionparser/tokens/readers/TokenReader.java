@@ -45,6 +45,24 @@ public abstract class TokenReader{
         return priority;
     }
     
+    /**
+     * Returns whether this TokenReader could read a Token starting with the provided character.
+     * <br>The {@link ch.andre601.expressionparser.expressions.ExpressionTokenizer ExpressionTokenizer} uses this to
+     * only call TokenReaders that could possibly match at the current position. Returning {@code true} for a character
+     * that {@link #read(String, ParsePosition, ParseWarnCollector) read} would reject is allowed, but returning
+     * {@code false} for a character it would accept causes the TokenReader to be skipped.
+     * 
+     * <p>The default implementation returns {@code true} for any character.
+     * 
+     * @param  c
+     *         The character at the current position of the text.
+     * 
+     * @return True if this TokenReader could read a Token starting with the provided character, else false.
+     */
+    public boolean canStartWith(char c){
+        return true;
+    }
+    
     /**
      * Abstract method that is called by the ExpressionparserEngine to turn the provided String into a token.
      * <br>The provided {@link ParsePosition ParsePosition instance} indicates the current position within the String
@@ -0,0 +1,60 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser.tokens.readers;
+
+import ch.andre601.expressionparser.ParseWarnCollector;
+import ch.andre601.expressionparser.tokens.Token;
+import ch.andre601.expressionparser.tokens.VariableToken;
+
+import java.text.ParsePosition;
+
+/**
+ * {@link TokenReader TokenReader instance} that parses variables written as {@code {name}} into a
+ * {@link VariableToken VariableToken instance}.
+ * <br>Should no closing bracket be found will everything until the end of the text be used as the name.
+ */
+public class VariableTokenReader extends TokenReader{
+    
+    public VariableTokenReader(int priority){
+        super(priority);
+    }
+    
+    @Override
+    public boolean canStartWith(char c){
+        return c == '{';
+    }
+    
+    @Override
+    public Token read(String text, ParsePosition position, ParseWarnCollector collector){
+        if(position.getIndex() < text.length() && text.charAt(position.getIndex()) == '{'){
+            int startIndex = position.getIndex();
+            int end = text.indexOf('}', startIndex + 1);
+            if(end == -1){
+                collector.appendWarning(startIndex, "Variable does not have any closing bracket.");
+                end = text.length();
+            }
+            
+            position.setIndex(Math.min(end + 1, text.length()));
+            
+            return new VariableToken(text.substring(startIndex + 1, end));
+        }
+        return null;
+    }
+}
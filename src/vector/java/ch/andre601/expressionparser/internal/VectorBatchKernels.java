@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2024 Andre601
+ *
+ * Original Copyright and License (C) 2020 Florian Stober
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ch.andre601.expressionparser.internal;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link BatchKernels} using the incubating Vector API where it is faster than the loops of the
+ * {@link ScalarBatchKernels}, processing as many values at once as the CPU supports.
+ * <br>The booleans of and and or are combined as masks of the preferred {@link ByteVector} species, while numbers
+ * compared by their String are processed as {@link DoubleVector DoubleVectors}. Elements after the last full vector
+ * are processed by scalar loops.
+ * 
+ * <p>Arithmetic and comparisons keep the scalar loops. The JIT already vectorizes the arithmetic ones, and storing the
+ * masks of comparisons into boolean arrays isn't any faster than the scalar comparisons.
+ * 
+ * <p>This class may only be loaded if the {@code jdk.incubator.vector} module is available. It is compiled by the
+ * {@code vector} profile of the build and created reflectively by {@link BatchKernels#get()}.
+ */
+class VectorBatchKernels extends ScalarBatchKernels{
+    
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Byte> BOOLEANS = ByteVector.SPECIES_PREFERRED;
+    
+    static boolean isSupported(){
+        return DOUBLES.length() > 1;
+    }
+    
+    @Override
+    public void sameString(double[] first, double[] second, boolean[] out, boolean negate, int size){
+        int i = 0;
+        for(; i < DOUBLES.loopBound(size); i += DOUBLES.length()){
+            DoubleVector a = DoubleVector.fromArray(DOUBLES, first, i);
+            DoubleVector b = DoubleVector.fromArray(DOUBLES, second, i);
+            VectorMask<Double> same = a.compare(VectorOperators.EQ, b).or(a.test(VectorOperators.IS_NAN).and(b.test(VectorOperators.IS_NAN)));
+            (negate ? same.not() : same).intoArray(out, i);
+        }
+        for(; i < size; i++){
+            out[i] = NumberFormatter.isSameString(first[i], second[i]) != negate;
+        }
+    }
+    
+    @Override
+    public void junction(boolean[] values, boolean[] undecided, boolean[] out, boolean decidingValue, int size){
+        int i = 0;
+        for(; i < BOOLEANS.loopBound(size); i += BOOLEANS.length()){
+            VectorMask<Byte> open = VectorMask.fromArray(BOOLEANS, undecided, i);
+            VectorMask<Byte> value = VectorMask.fromArray(BOOLEANS, values, i);
+            VectorMask<Byte> result = VectorMask.fromArray(BOOLEANS, out, i);
+            VectorMask<Byte> decided = decidingValue ? open.and(value) : open.andNot(value);
+            
+            (decidingValue ? result.or(decided) : result.andNot(decided)).intoArray(out, i);
+            open.andNot(decided).intoArray(undecided, i);
+        }
+        for(; i < size; i++){
+            boolean decided = undecided[i] & values[i] == decidingValue;
+            out[i] ^= decided;
+            undecided[i] &= !decided;
+        }
+    }
+}